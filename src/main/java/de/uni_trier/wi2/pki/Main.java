@@ -1,6 +1,9 @@
 package de.uni_trier.wi2.pki;
 
+import de.uni_trier.wi2.pki.data.Dataset;
 import de.uni_trier.wi2.pki.io.CSVReader;
+import de.uni_trier.wi2.pki.io.DatasetCache;
+import de.uni_trier.wi2.pki.io.ModelExporter;
 import de.uni_trier.wi2.pki.io.XMLWriter;
 import de.uni_trier.wi2.pki.postprocess.CrossValidator;
 import de.uni_trier.wi2.pki.postprocess.ReducedErrorPruner;
@@ -8,18 +11,31 @@ import de.uni_trier.wi2.pki.preprocess.BinningDiscretizer;
 import de.uni_trier.wi2.pki.preprocess.EqualFrequencyDiscretization;
 import de.uni_trier.wi2.pki.preprocess.EqualWidthDiscretization;
 import de.uni_trier.wi2.pki.preprocess.KMeansDiscretizer;
+import de.uni_trier.wi2.pki.preprocess.OptimalKMeansDiscretizer;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
 import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.MappedModel;
+import de.uni_trier.wi2.pki.tree.RandomForest;
+import de.uni_trier.wi2.pki.util.EntropyUtils;
+import de.uni_trier.wi2.pki.util.GainRatio;
+import de.uni_trier.wi2.pki.util.GiniImpurity;
 import de.uni_trier.wi2.pki.util.ID3Utils;
+import de.uni_trier.wi2.pki.util.InformationGain;
 import de.uni_trier.wi2.pki.settings.CSVSettings;
 import de.uni_trier.wi2.pki.settings.ID3Settings;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static de.uni_trier.wi2.pki.util.Helpers.convertToObjectList;
 import static de.uni_trier.wi2.pki.util.Helpers.printData;
 
 public class Main {
@@ -29,6 +45,10 @@ public class Main {
     public static final EqualFrequencyDiscretization EQUAL_FREQUENCY = new EqualFrequencyDiscretization();
     public static final EqualWidthDiscretization EQUAL_WIDTH = new EqualWidthDiscretization();
     public static final KMeansDiscretizer K_MEANS = new KMeansDiscretizer();
+    public static final OptimalKMeansDiscretizer OPTIMAL_K_MEANS = new OptimalKMeansDiscretizer();
+    public static final InformationGain INFORMATION_GAIN = new InformationGain();
+    public static final GainRatio GAIN_RATIO = new GainRatio();
+    public static final GiniImpurity GINI_IMPURITY = new GiniImpurity();
     public static final CSVSettings csvSettings = new CSVSettings();
     public static final ID3Settings id3Settings = new ID3Settings();
     public static final ReducedErrorPruner pruner = new ReducedErrorPruner();
@@ -45,23 +65,7 @@ public class Main {
         final String delim = csvSettings.getDelimiter();
         final int BINS = id3Settings.getBins();
         final int NUM_FOLDS = id3Settings.getNumFolds();
-
-        /* Parse the CSV file */
-        List<String[]> parsedLines = null;
-        try {
-            parsedLines = CSVReader.readCsvToArray("target/classes/" + FILE_NAME, delim, true);
-            HEADER = CSVReader.readCsvHeader("target/classes/" + FILE_NAME, delim);
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-        }
-
-        /* validate parsed data */
-        if (parsedLines == null) {
-            throw new RuntimeException("No data parsed");
-        }
-
-        System.out.println("Data parsed successfully.");
-        System.out.println("-----------------------------------------------------------------------------------------");
+        EntropyUtils.setLookupTableSize(id3Settings.getEntropyTableSize());
 
         // define data types of the dataset
         ArrayList<Boolean> attrIsContinuous = new ArrayList<>();
@@ -77,24 +81,87 @@ public class Main {
         attrIsContinuous.add(9, true);
         attrIsContinuous.add(10, false);
 
-        // Train model, evaluate model, write XML, ...
-        List<Object[]> data = convertToObjectList(parsedLines);
+        /* reuse the preprocessed data of an earlier run on the same file with the same settings */
+        final String cachePath = "target/classes/" + FILE_NAME + ".cache";
+        String cacheMetadata = describePreprocessing("target/classes/" + FILE_NAME, delim, LABEL_ATTR_INDEX, BINS, attrIsContinuous);
+        Dataset dataSmall = null;
+        if (csvSettings.isDatasetCache() && cacheMetadata != null) {
+            try {
+                DatasetCache cache = DatasetCache.read(cachePath);
+                if (cache != null && cache.getMetadata().equals(cacheMetadata)) {
+                    HEADER = cache.getHeader();
+                    dataSmall = cache.getDataset();
+                    System.out.println("Preprocessed data loaded from cache [" + cachePath + "].");
+                    System.out.println("-----------------------------------------------------------------------------------------");
+                }
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
 
-        System.out.println("Discretizing Data...");
+        if (dataSmall == null) {
+            /* Parse the CSV file, the rows are collected as they are decoded. Each row is copied into a real Object[], because the
+             * discretizers write bin names back into the rows, which a String[] would reject */
+            List<Object[]> data = null;
+            try (Stream<String[]> rows = CSVReader.streamCsv("target/classes/" + FILE_NAME, delim, true)) {
+                Stream<String[]> limitedRows = csvSettings.getRowLimit() > 0 ? rows.limit(csvSettings.getRowLimit()) : rows;
+                data = limitedRows.map(row -> Arrays.copyOf(row, row.length, Object[].class))
+                        .collect(Collectors.toCollection(ArrayList::new));
+                HEADER = CSVReader.readCsvHeader("target/classes/" + FILE_NAME, delim);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
 
-        performDiscretization(data, BINS, attrIsContinuous, K_MEANS);
+            /* validate parsed data */
+            if (data == null) {
+                throw new RuntimeException("No data parsed");
+            }
 
-        System.out.println("-----------------------------------------------------------------------------------------");
+            System.out.println("Data parsed successfully.");
+            System.out.println("-----------------------------------------------------------------------------------------");
+
+            if (id3Settings.isThresholdSplits()) {
+                /* continuous attributes are split on thresholds by the tree builder, only a continuous label still needs classes */
+                boolean[] isNumeric = new boolean[attrIsContinuous.size()];
+                for (int i = 0; i < isNumeric.length; i++) {
+                    isNumeric[i] = attrIsContinuous.get(i) && i != LABEL_ATTR_INDEX;
+                }
+                if (attrIsContinuous.get(LABEL_ATTR_INDEX)) {
+                    System.out.println("Discretizing Label...");
+                    id3Settings.getDiscretizingMethod().discretize(BINS, data, LABEL_ATTR_INDEX);
+                    System.out.println("-----------------------------------------------------------------------------------------");
+                }
+                dataSmall = Dataset.fromRows(data, isNumeric);
+            } else {
+                System.out.println("Discretizing Data...");
+
+                performDiscretization(data, BINS, attrIsContinuous, id3Settings.getDiscretizingMethod());
+
+                System.out.println("-----------------------------------------------------------------------------------------");
+
+                dataSmall = Dataset.fromRows(data);
+            }
 
-        List<Object[]> dataSmall = data.subList(0, 100);
-        List<Object[]>[] splittedData = splitData(dataSmall, id3Settings.getPruneSize());
+            if (csvSettings.isDatasetCache() && cacheMetadata != null) {
+                try {
+                    DatasetCache.write(cachePath, new DatasetCache(cacheMetadata, HEADER, dataSmall));
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+        }
+        Dataset[] splittedData = splitData(dataSmall, id3Settings.getPruneSize());
 
-        List<Object[]> pruningData = splittedData[0];
-        List<Object[]> trainingData = splittedData[1];
+        Dataset pruningData = splittedData[0];
+        Dataset trainingData = splittedData[1];
 
         System.out.println("Cross-Validation before Pruning:");
 
-        DecisionTree bestModel = CrossValidator.performCrossValidation(trainingData, LABEL_ATTR_INDEX, ID3Utils::createTree, NUM_FOLDS);
+        BiFunction<Dataset, Integer, DecisionTree> trainFunction = (trainingSet, labelAttribute) ->
+                ID3Utils.createTree(trainingSet, labelAttribute, -1, id3Settings);
+
+        DecisionTree bestModel = CrossValidator.performCrossValidation(trainingData, LABEL_ATTR_INDEX, trainFunction, NUM_FOLDS,
+                id3Settings.getPredictionChunkSize());
 
         System.out.println("-----------------------------------------------------------------------------------------");
         System.out.println("Writing best model to XML...");
@@ -109,13 +176,15 @@ public class Main {
         System.out.println("-----------------------------------------------------------------------------------------");
         System.out.println("Initialized Pruning...");
 
-        BiFunction<List<Object[]>, Integer, DecisionTree> function = (trainingSet, labelAttribute) -> {
-            DecisionTree tree = ID3Utils.createTree(trainingSet, labelAttribute);
+        /* the exports are written on a background thread, so the folds do not wait for the file system */
+        ModelExporter exporter = new ModelExporter();
+        BiFunction<Dataset, Integer, DecisionTree> function = (trainingSet, labelAttribute) -> {
+            DecisionTree tree = trainFunction.apply(trainingSet, labelAttribute);
 
             try {
-                XMLWriter.writeXML("target/classes/best_model_before_pruning.xml", tree);
+                exporter.submit("target/classes/best_model_before_pruning.xml", tree);
                 pruner.prune(tree, pruningData, labelAttribute);
-                XMLWriter.writeXML("target/classes/best_model_after_pruning.xml", tree);
+                exporter.submit("target/classes/best_model_after_pruning.xml", tree);
             } catch (IOException ioe) {
                 System.out.println(ioe.getMessage());
             }
@@ -124,8 +193,45 @@ public class Main {
         };
 
         System.out.println("Cross-Validation after Pruning:");
-        DecisionTree bestPrunedModel = CrossValidator.performCrossValidation(trainingData, LABEL_ATTR_INDEX, function, NUM_FOLDS);
+        try (exporter) {
+            DecisionTree bestPrunedModel = CrossValidator.performCrossValidation(trainingData, LABEL_ATTR_INDEX, function, NUM_FOLDS,
+                    id3Settings.getPredictionChunkSize());
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        }
         System.out.println("-----------------------------------------------------------------------------------------");
+
+        if (id3Settings.getNumTrees() > 0) {
+            System.out.println("Training random forest with " + id3Settings.getNumTrees() + " trees...");
+            RandomForest forest = ID3Utils.createForest(trainingData, LABEL_ATTR_INDEX, -1, id3Settings.getNumTrees(),
+                    ID3Utils.getDefaultAttributesPerSplit(trainingData), id3Settings.getSplitCriterion(), id3Settings.getForestSeed());
+
+            /* the pruning data was not used for training, so it serves as holdout set */
+            double accuracy = ID3Utils.getClassificationAccuracy(forest, pruningData, LABEL_ATTR_INDEX, id3Settings.getPredictionChunkSize());
+            System.out.printf("Classification accuracy of random forest on holdout data: %.2f%%\n", accuracy * 100);
+
+            try {
+                XMLWriter.writeXML("target/classes/random_forest.xml", forest);
+            } catch (IOException ioe) {
+                System.out.println(ioe.getMessage());
+            }
+
+            System.out.println("Successfully saved random forest to XML-File [random_forest.xml].");
+
+            /* the binary model is scored straight from a memory mapping, without parsing the XML */
+            try {
+                List<CompiledTree> compiledTrees = new ArrayList<>();
+                for (DecisionTree tree : forest.getTrees()) {
+                    compiledTrees.add(tree.compile(trainingData, LABEL_ATTR_INDEX));
+                }
+                MappedModel.write("target/classes/random_forest.bin", compiledTrees);
+            } catch (IOException ioe) {
+                System.out.println(ioe.getMessage());
+            }
+
+            System.out.println("Successfully saved random forest to binary file [random_forest.bin].");
+            System.out.println("-----------------------------------------------------------------------------------------");
+        }
     }
 
     /**
@@ -156,10 +262,22 @@ public class Main {
         String delim = sc.nextLine();
         csvSettings.setDelimiter(delim);
 
+        System.out.println("Cache the preprocessed data for later runs with the same settings? (y/n)");
+        boolean datasetCache = sc.nextLine().equals("y");
+        csvSettings.setDatasetCache(datasetCache);
+
+        System.out.println("Enter the maximum number of rows to read (0 for all rows):");
+        int rowLimit = Integer.parseInt(sc.nextLine());
+        csvSettings.setRowLimit(rowLimit);
+
         System.out.println("Enter the index of the label attribute:");
         int labelAttrIndex = Integer.parseInt(sc.nextLine());
         csvSettings.setLabelAttributeIndex(labelAttrIndex);
 
+        System.out.println("Split continuous attributes on thresholds instead of discretizing them? (y/n)");
+        boolean thresholdSplits = sc.nextLine().equals("y");
+        id3Settings.setThresholdSplits(thresholdSplits);
+
         System.out.println("Enter the number of bins for discretization:");
         int bins = Integer.parseInt(sc.nextLine());
         id3Settings.setBins(bins);
@@ -168,30 +286,78 @@ public class Main {
         int numFolds = Integer.parseInt(sc.nextLine());
         id3Settings.setNumFolds(numFolds);
 
-        System.out.println("Enter the discretization method (1: EqualFrequency, 2: EqualWidth, 3: KMeans):");
-        int method = Integer.parseInt(sc.nextLine());
-        switch (method) {
+        if (!thresholdSplits) {
+            System.out.println("Enter the discretization method (1: EqualFrequency, 2: EqualWidth, 3: KMeans, 4: OptimalKMeans):");
+            int method = Integer.parseInt(sc.nextLine());
+            switch (method) {
+                case 1:
+                    id3Settings.setDiscretizingMethod(EQUAL_FREQUENCY);
+                    break;
+                case 2:
+                    id3Settings.setDiscretizingMethod(EQUAL_WIDTH);
+                    break;
+                case 3:
+                    id3Settings.setDiscretizingMethod(K_MEANS);
+                    System.out.println("Enter the value of epsilon for KMeans-discretization:");
+                    double epsilon = Double.parseDouble(sc.nextLine());
+                    id3Settings.setEpsilon(epsilon);
+                    break;
+                case 4:
+                    id3Settings.setDiscretizingMethod(OPTIMAL_K_MEANS);
+                    break;
+                default:
+                    System.out.println("Invalid method. Using OptimalKMeans as default.");
+                    id3Settings.setDiscretizingMethod(OPTIMAL_K_MEANS);
+            }
+        }
+
+        System.out.println("Enter the split criterion (1: InformationGain, 2: GainRatio, 3: GiniImpurity):");
+        int criterion = Integer.parseInt(sc.nextLine());
+        switch (criterion) {
             case 1:
-                id3Settings.setDiscretizingMethod(EQUAL_FREQUENCY);
+                id3Settings.setSplitCriterion(INFORMATION_GAIN);
                 break;
             case 2:
-                id3Settings.setDiscretizingMethod(EQUAL_WIDTH);
+                id3Settings.setSplitCriterion(GAIN_RATIO);
                 break;
             case 3:
-                id3Settings.setDiscretizingMethod(K_MEANS);
-                System.out.println("Enter the value of epsilon for KMeans-discretization:");
-                double epsilon = Double.parseDouble(sc.nextLine());
-                id3Settings.setEpsilon(epsilon);
+                id3Settings.setSplitCriterion(GINI_IMPURITY);
                 break;
             default:
-                System.out.println("Invalid method. Using KMeans as default.");
-                id3Settings.setDiscretizingMethod(K_MEANS);
+                System.out.println("Invalid criterion. Using InformationGain as default.");
+                id3Settings.setSplitCriterion(INFORMATION_GAIN);
         }
 
+        System.out.println("Enter the number of counts whose n*log2(n) is precomputed for entropy calculations:");
+        int entropyTableSize = Integer.parseInt(sc.nextLine());
+        id3Settings.setEntropyTableSize(entropyTableSize);
+
         System.out.println("Enter the percentage of data to use for pruning:");
         double pruneSize = Double.parseDouble(sc.nextLine());
         id3Settings.setPruneSize(pruneSize);
 
+        System.out.println("Enter the minimum number of examples to build a subtree in parallel:");
+        int parallelThreshold = Integer.parseInt(sc.nextLine());
+        id3Settings.setParallelThreshold(parallelThreshold);
+
+        System.out.println("Enter the minimum number of examples to score the attributes of a node in parallel:");
+        int gainParallelThreshold = Integer.parseInt(sc.nextLine());
+        id3Settings.setGainParallelThreshold(gainParallelThreshold);
+
+        System.out.println("Enter the number of examples to predict per task when evaluating a model:");
+        int predictionChunkSize = Integer.parseInt(sc.nextLine());
+        id3Settings.setPredictionChunkSize(predictionChunkSize);
+
+        System.out.println("Enter the number of trees of the random forest (0 to skip):");
+        int numTrees = Integer.parseInt(sc.nextLine());
+        id3Settings.setNumTrees(numTrees);
+
+        if (numTrees > 0) {
+            System.out.println("Enter the seed of the random forest:");
+            long forestSeed = Long.parseLong(sc.nextLine());
+            id3Settings.setForestSeed(forestSeed);
+        }
+
         System.out.println("Settings saved.");
     }
 
@@ -213,34 +379,52 @@ public class Main {
         }
     }
 
+    /**
+     * Describes the source file and every setting that influences the preprocessing, so a cached dataset is only reused if it would be
+     * preprocessed the same way again.
+     *
+     * @param path             The path of the CSV file.
+     * @param delimiter        The delimiter of the CSV file.
+     * @param labelIndex       The index of the label attribute.
+     * @param bins             The number of bins for discretization.
+     * @param attrIsContinuous Whether each attribute is continuous.
+     * @return the description or null if the CSV file cannot be accessed.
+     */
+    private static String describePreprocessing(String path, String delimiter, int labelIndex, int bins, List<Boolean> attrIsContinuous) {
+        try {
+            Path file = Path.of(path);
+            return "file=" + file.toAbsolutePath() + ";size=" + Files.size(file) + ";modified=" + Files.getLastModifiedTime(file).toMillis()
+                    + ";delimiter=" + delimiter + ";rowLimit=" + csvSettings.getRowLimit() + ";label=" + labelIndex + ";continuous=" + attrIsContinuous
+                    + ";thresholdSplits=" + id3Settings.isThresholdSplits() + ";discretizer=" + id3Settings.getDiscretizingMethod().getClass().getSimpleName()
+                    + ";bins=" + bins + ";epsilon=" + id3Settings.getEpsilon();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     /**
      * Splits the data into training and pruning sets without overlap.
      *
      * @param data      The data to split.
      * @param pruneSize The percentage of the data to use for pruning.
-     * @return An array containing the training data and pruning data.
+     * @return An array containing the pruning data and training data.
      */
-    private static List<Object[]>[] splitData(List<Object[]> data, double pruneSize) {
+    private static Dataset[] splitData(Dataset data, double pruneSize) {
         if (pruneSize < 0 || pruneSize > 1) {
             throw new IllegalArgumentException("Prune percentage must be between 0 and 1.");
         }
 
-        ArrayList<Object[]> tmp = data.stream().collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        List<Object[]> pruningData = new ArrayList<>();
-        int dataSize = tmp.size();
-
-        for (int i = 0; i < dataSize; i++) {
-            int randomIndex = (int) (Math.random() * dataSize);
-            pruningData.add(tmp.get(randomIndex));
-            tmp.remove(randomIndex);
-
-            if (pruningData.size() >= dataSize * pruneSize) {
-                break;
-            }
-
-            dataSize--;
+        /* draw the pruning rows at random by shuffling the row order */
+        List<Integer> order = new ArrayList<>();
+        for (int row = 0; row < data.size(); row++) {
+            order.add(row);
         }
+        Collections.shuffle(order);
+
+        int pruningSize = (int) Math.ceil(data.size() * pruneSize);
+        int[] pruningRows = order.subList(0, pruningSize).stream().mapToInt(Integer::intValue).toArray();
+        int[] trainingRows = order.subList(pruningSize, order.size()).stream().mapToInt(Integer::intValue).toArray();
 
-        return new List[]{pruningData, tmp};
+        return new Dataset[]{data.subset(pruningRows), data.subset(trainingRows)};
     }
 }
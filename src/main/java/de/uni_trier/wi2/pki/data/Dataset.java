@@ -0,0 +1,328 @@
+package de.uni_trier.wi2.pki.data;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Column-oriented representation of categorical (or discretized) examples.
+ * Every column is stored as an array of dictionary codes, the symbols behind the codes are kept in one {@link SymbolTable} per column.
+ * Numeric columns additionally keep the parsed value of every row, so the tree builder can split them on thresholds.
+ */
+public class Dataset {
+
+    /**
+     * The dictionary codes of every column, indexed by [attribute][row].
+     */
+    private final int[][] columns;
+
+    /**
+     * The symbol table of every column.
+     */
+    private final SymbolTable[] symbolTables;
+
+    /**
+     * The values of every numeric column, indexed by [attribute][row]. The entries of categorical columns are null.
+     */
+    private final double[][] numericColumns;
+
+    /**
+     * The number of rows.
+     */
+    private final int size;
+
+    /**
+     * Constructor for a dataset. All columns must have the same length.
+     *
+     * @param columns      The dictionary codes of every column, indexed by [attribute][row].
+     * @param symbolTables The symbol table of every column.
+     */
+    public Dataset(int[][] columns, SymbolTable[] symbolTables) {
+        this(columns, symbolTables, new double[columns.length][]);
+    }
+
+    /**
+     * Constructor for a dataset with numeric columns. All columns must have the same length.
+     *
+     * @param columns        The dictionary codes of every column, indexed by [attribute][row].
+     * @param symbolTables   The symbol table of every column.
+     * @param numericColumns The values of every numeric column, indexed by [attribute][row], null for categorical columns.
+     */
+    public Dataset(int[][] columns, SymbolTable[] symbolTables, double[][] numericColumns) {
+        if (columns.length != symbolTables.length || columns.length != numericColumns.length) {
+            throw new IllegalArgumentException("Every column needs a symbol table.");
+        }
+        this.columns = columns;
+        this.symbolTables = symbolTables;
+        this.numericColumns = numericColumns;
+        this.size = columns.length == 0 ? 0 : columns[0].length;
+    }
+
+    /**
+     * Encodes a collection of examples. Each value is converted to its string representation before it is interned.
+     *
+     * @param rows the examples to encode, all of the same length.
+     * @return the encoded dataset.
+     */
+    public static Dataset fromRows(Collection<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return new Dataset(new int[0][], new SymbolTable[0]);
+        }
+        return fromRows(rows, new boolean[rows.iterator().next().length]);
+    }
+
+    /**
+     * Encodes a collection of examples with numeric columns. Each value is converted to its string representation before it is interned, the
+     * values of numeric columns are parsed as well.
+     *
+     * @param rows      the examples to encode, all of the same length.
+     * @param isNumeric whether each attribute is numeric.
+     * @return the encoded dataset.
+     * @throws NumberFormatException if a value of a numeric column is not a number.
+     */
+    public static Dataset fromRows(Collection<Object[]> rows, boolean[] isNumeric) {
+        int numAttributes = isNumeric.length;
+        int[][] columns = new int[numAttributes][rows.size()];
+        double[][] numericColumns = new double[numAttributes][];
+        SymbolTable[] symbolTables = new SymbolTable[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            symbolTables[attributeIndex] = new SymbolTable();
+            if (isNumeric[attributeIndex]) {
+                numericColumns[attributeIndex] = new double[rows.size()];
+            }
+        }
+
+        int row = 0;
+        for (Object[] example : rows) {
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                columns[attributeIndex][row] = symbolTables[attributeIndex].intern(example[attributeIndex].toString());
+                if (isNumeric[attributeIndex]) {
+                    numericColumns[attributeIndex][row] = toNumber(example[attributeIndex]);
+                }
+            }
+            row++;
+        }
+
+        return new Dataset(columns, symbolTables, numericColumns);
+    }
+
+    /**
+     * Converts the value of a numeric attribute to a number.
+     *
+     * @param value a {@link Number} or its string representation.
+     * @return the numeric value.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    public static double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString().trim());
+    }
+
+    /**
+     * Creates a dataset that contains the given rows in the given order. The symbol tables are shared with this dataset.
+     *
+     * @param rows the indices of the rows to copy.
+     * @return the subset of this dataset.
+     */
+    public Dataset subset(int[] rows) {
+        int[][] subsetColumns = new int[columns.length][rows.length];
+        double[][] subsetNumericColumns = new double[columns.length][];
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            int[] column = columns[attributeIndex];
+            int[] subsetColumn = subsetColumns[attributeIndex];
+            for (int i = 0; i < rows.length; i++) {
+                subsetColumn[i] = column[rows[i]];
+            }
+
+            double[] numericColumn = numericColumns[attributeIndex];
+            if (numericColumn != null) {
+                double[] subsetNumericColumn = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    subsetNumericColumn[i] = numericColumn[rows[i]];
+                }
+                subsetNumericColumns[attributeIndex] = subsetNumericColumn;
+            }
+        }
+        return new Dataset(subsetColumns, symbolTables, subsetNumericColumns);
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of attributes (columns).
+     *
+     * @return the number of attributes.
+     */
+    public int getNumAttributes() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the code of a single cell.
+     *
+     * @param row            the row index.
+     * @param attributeIndex the attribute index.
+     * @return the dictionary code of the cell.
+     */
+    public int getCode(int row, int attributeIndex) {
+        return columns[attributeIndex][row];
+    }
+
+    /**
+     * Returns the symbol of a single cell.
+     *
+     * @param row            the row index.
+     * @param attributeIndex the attribute index.
+     * @return the symbol of the cell.
+     */
+    public String getSymbol(int row, int attributeIndex) {
+        return symbolTables[attributeIndex].getSymbol(columns[attributeIndex][row]);
+    }
+
+    /**
+     * Returns the codes of a whole column. The returned array is not copied and must not be modified.
+     *
+     * @param attributeIndex the attribute index.
+     * @return the codes of the column.
+     */
+    public int[] getColumn(int attributeIndex) {
+        return columns[attributeIndex];
+    }
+
+    /**
+     * Checks whether an attribute is numeric.
+     *
+     * @param attributeIndex the attribute index.
+     * @return true if the column keeps numeric values.
+     */
+    public boolean isNumeric(int attributeIndex) {
+        return numericColumns[attributeIndex] != null;
+    }
+
+    /**
+     * Returns the numeric value of a single cell.
+     *
+     * @param row            the row index.
+     * @param attributeIndex the index of a numeric attribute.
+     * @return the value of the cell.
+     */
+    public double getValue(int row, int attributeIndex) {
+        return numericColumns[attributeIndex][row];
+    }
+
+    /**
+     * Returns the values of a whole numeric column. The returned array is not copied and must not be modified.
+     *
+     * @param attributeIndex the attribute index.
+     * @return the values of the column or null if the attribute is categorical.
+     */
+    public double[] getNumericColumn(int attributeIndex) {
+        return numericColumns[attributeIndex];
+    }
+
+    public SymbolTable getSymbolTable(int attributeIndex) {
+        return symbolTables[attributeIndex];
+    }
+
+    /**
+     * Returns the number of distinct symbols of a column.
+     *
+     * @param attributeIndex the attribute index.
+     * @return the size of the symbol table of the column.
+     */
+    public int getCardinality(int attributeIndex) {
+        return symbolTables[attributeIndex].size();
+    }
+
+    /**
+     * Decodes a single row.
+     *
+     * @param row the row index.
+     * @return the symbols of the row.
+     */
+    public Object[] getRow(int row) {
+        Object[] example = new Object[columns.length];
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            example[attributeIndex] = getSymbol(row, attributeIndex);
+        }
+        return example;
+    }
+
+    /**
+     * Copies the codes of a single row into the given array.
+     *
+     * @param row    the row index.
+     * @param target the array to fill, indexed by attribute.
+     * @return the filled array.
+     */
+    public int[] getCodes(int row, int[] target) {
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            target[attributeIndex] = columns[attributeIndex][row];
+        }
+        return target;
+    }
+
+    /**
+     * Encodes an example with the symbol tables of this dataset. Symbols that are unknown to a symbol table are encoded as -1.
+     *
+     * @param example the example to encode.
+     * @param target  the array to fill, indexed by attribute.
+     * @return the filled array.
+     */
+    public int[] encode(Object[] example, int[] target) {
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            target[attributeIndex] = symbolTables[attributeIndex].getCode(example[attributeIndex].toString());
+        }
+        return target;
+    }
+
+    /**
+     * Returns a read-only view on the given rows that decodes each row when it is accessed.
+     *
+     * @param rows the row indices.
+     * @param from the first position in rows (inclusive).
+     * @param to   the last position in rows (exclusive).
+     * @return the decoded view of the rows.
+     */
+    public List<Object[]> asRows(int[] rows, int from, int to) {
+        return new AbstractList<>() {
+            @Override
+            public Object[] get(int index) {
+                return getRow(rows[from + index]);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * Returns a read-only view on all rows that decodes each row when it is accessed.
+     *
+     * @return the decoded view of the dataset.
+     */
+    public List<Object[]> asRows() {
+        return new AbstractList<>() {
+            @Override
+            public Object[] get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
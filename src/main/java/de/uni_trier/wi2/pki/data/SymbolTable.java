@@ -0,0 +1,113 @@
+package de.uni_trier.wi2.pki.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the symbols of a single column to dense integer codes and back.
+ * Codes are assigned in the order in which the symbols are interned.
+ */
+public class SymbolTable {
+
+    /**
+     * The symbols indexed by their code.
+     */
+    private final List<String> symbols;
+
+    /**
+     * The codes of all known symbols. Tables created by {@link #of(String[])} build it on the first lookup.
+     */
+    private volatile Map<String, Integer> codes;
+
+    /**
+     * Constructor for an empty symbol table.
+     */
+    public SymbolTable() {
+        this.symbols = new ArrayList<>();
+        this.codes = new HashMap<>();
+    }
+
+    private SymbolTable(List<String> symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Creates a symbol table whose codes are the positions of the given distinct symbols. The map from symbols to codes is only built when
+     * a symbol is looked up or interned, so a table that is only used for decoding never pays for it.
+     *
+     * @param symbols the symbols in code order, all distinct.
+     * @return the symbol table.
+     */
+    public static SymbolTable of(String[] symbols) {
+        return new SymbolTable(new ArrayList<>(List.of(symbols)));
+    }
+
+    /**
+     * Returns the code of the given symbol and assigns a new code if the symbol is unknown.
+     *
+     * @param symbol the symbol to intern.
+     * @return the code of the symbol.
+     */
+    public int intern(String symbol) {
+        Map<String, Integer> codes = getCodes();
+        Integer code = codes.get(symbol);
+        if (code == null) {
+            code = symbols.size();
+            symbols.add(symbol);
+            codes.put(symbol, code);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of the given symbol.
+     *
+     * @param symbol the symbol to look up.
+     * @return the code of the symbol or -1 if the symbol is unknown.
+     */
+    public int getCode(String symbol) {
+        Integer code = getCodes().get(symbol);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the symbol of the given code.
+     *
+     * @param code the code to look up.
+     * @return the symbol of the code.
+     */
+    public String getSymbol(int code) {
+        return symbols.get(code);
+    }
+
+    /**
+     * Returns the number of distinct symbols.
+     *
+     * @return the number of interned symbols.
+     */
+    public int size() {
+        return symbols.size();
+    }
+
+    /**
+     * Returns the map from symbols to codes and builds it first if the table was created from an array of symbols.
+     */
+    private Map<String, Integer> getCodes() {
+        Map<String, Integer> map = codes;
+        if (map == null) {
+            synchronized (this) {
+                map = codes;
+                if (map == null) {
+                    map = new HashMap<>(symbols.size() * 4 / 3 + 1);
+                    for (int code = 0; code < symbols.size(); code++) {
+                        map.put(symbols.get(code), code);
+                    }
+                    codes = map;
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,247 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the fields of scanned CSV lines as dictionary-encoded columns. Every column has a dictionary that is keyed by the raw bytes of
+ * the values, so a value is only copied, decoded and, for numeric columns, parsed the first time it occurs. Codes are assigned in the order
+ * of first occurrence, like {@link Dataset#fromRows(java.util.Collection, boolean[])} does.
+ * A file that is parsed in chunks gets one builder per chunk; {@link #concat(List)} merges them into one dataset.
+ */
+class ColumnBuilder implements MappedCSVReader.LineVisitor {
+
+    private final ValueDictionary[] dictionaries;
+
+    /**
+     * The codes of every column, indexed by [column][row]. The arrays grow by doubling.
+     */
+    private int[][] columns;
+    private int size;
+
+    /**
+     * Constructor for an empty builder.
+     *
+     * @param isNumeric    whether each column is numeric; its length is the number of fields every line must have.
+     * @param expectedRows the initial capacity of the columns.
+     */
+    ColumnBuilder(boolean[] isNumeric, int expectedRows) {
+        this.dictionaries = new ValueDictionary[isNumeric.length];
+        this.columns = new int[isNumeric.length][Math.max(16, expectedRows)];
+        for (int column = 0; column < isNumeric.length; column++) {
+            dictionaries[column] = new ValueDictionary(isNumeric[column]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NumberFormatException if a new value of a numeric column is not a number.
+     */
+    @Override
+    public void visit(ByteBuffer buffer, int[] fieldStarts, int[] fieldEnds, int numFields) throws IOException {
+        if (numFields != columns.length) {
+            throw new IOException("A line has " + numFields + " fields, expected " + columns.length + ".");
+        }
+        if (size == columns[0].length) {
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], size * 2);
+            }
+        }
+        for (int column = 0; column < numFields; column++) {
+            columns[column][size] = dictionaries[column].intern(buffer, fieldStarts[column], fieldEnds[column]);
+        }
+        size++;
+    }
+
+    /**
+     * Creates one dataset from the builders of consecutive chunks. The dictionaries are merged in chunk order, so the codes are the same as if
+     * the whole file had been read by one builder.
+     *
+     * @param chunks the builders in file order, at least one.
+     * @return the encoded dataset.
+     */
+    static Dataset concat(List<ColumnBuilder> chunks) {
+        ColumnBuilder first = chunks.get(0);
+        int numColumns = first.columns.length;
+        int numRows = chunks.stream().mapToInt(chunk -> chunk.size).sum();
+        int[][] codes = new int[numColumns][numRows];
+        SymbolTable[] symbolTables = new SymbolTable[numColumns];
+        double[][] numericColumns = new double[numColumns][];
+        for (int column = 0; column < numColumns; column++) {
+            /* a single chunk keeps its dictionary, otherwise every chunk is translated into a merged one */
+            ValueDictionary merged = chunks.size() == 1 ? first.dictionaries[column] : new ValueDictionary(first.dictionaries[column].isNumeric());
+            double[] values = merged.isNumeric() ? new double[numRows] : null;
+            int offset = 0;
+            for (ColumnBuilder chunk : chunks) {
+                ValueDictionary dictionary = chunk.dictionaries[column];
+                int[] mergedCodes = dictionary == merged ? null : merged.internAll(dictionary);
+                int[] chunkCodes = chunk.columns[column];
+                for (int row = 0; row < chunk.size; row++) {
+                    int code = chunkCodes[row];
+                    codes[column][offset + row] = mergedCodes == null ? code : mergedCodes[code];
+                    if (values != null) {
+                        values[offset + row] = dictionary.numbers[code];
+                    }
+                }
+                offset += chunk.size;
+            }
+            symbolTables[column] = merged.toSymbolTable();
+            numericColumns[column] = values;
+        }
+        return new Dataset(codes, symbolTables, numericColumns);
+    }
+
+    /**
+     * Open addressing hash table from the bytes of a value to its code.
+     */
+    private static class ValueDictionary {
+
+        /**
+         * The code + 1 of the value in every slot, 0 for empty slots. The length is a power of two.
+         */
+        private int[] slots = new int[64];
+
+        /**
+         * The bytes, hashes, decoded strings and, for numeric columns, parsed numbers of the values indexed by code.
+         */
+        private byte[][] values = new byte[16][];
+        private int[] hashes = new int[16];
+        private String[] symbols = new String[16];
+        private double[] numbers;
+        private int size;
+
+        ValueDictionary(boolean numeric) {
+            this.numbers = numeric ? new double[16] : null;
+        }
+
+        boolean isNumeric() {
+            return numbers != null;
+        }
+
+        /**
+         * Returns the code of buffer[start, end) and assigns a new code if the value is unknown.
+         */
+        int intern(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int code = slots[slot] - 1;
+                if (code < 0) {
+                    byte[] value = new byte[end - start];
+                    buffer.get(start, value);
+                    String symbol = new String(value, StandardCharsets.UTF_8);
+                    return add(slot, value, hash, symbol, isNumeric() ? Dataset.toNumber(symbol) : 0);
+                }
+                if (hashes[code] == hash && equals(values[code], buffer, start, end)) {
+                    return code;
+                }
+            }
+        }
+
+        /**
+         * Interns all values of another dictionary in the order of their codes.
+         *
+         * @return the code in this dictionary of every code of the other dictionary.
+         */
+        int[] internAll(ValueDictionary other) {
+            int[] codes = new int[other.size];
+            for (int otherCode = 0; otherCode < other.size; otherCode++) {
+                int hash = other.hashes[otherCode];
+                int mask = slots.length - 1;
+                for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                    int code = slots[slot] - 1;
+                    if (code < 0) {
+                        code = add(slot, other.values[otherCode], hash, other.symbols[otherCode], isNumeric() ? other.numbers[otherCode] : 0);
+                    } else if (hashes[code] != hash || !Arrays.equals(values[code], other.values[otherCode])) {
+                        continue;
+                    }
+                    codes[otherCode] = code;
+                    break;
+                }
+            }
+            return codes;
+        }
+
+        /**
+         * Stores a new value in the given empty slot and returns its code.
+         */
+        private int add(int slot, byte[] value, int hash, String symbol, double number) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+                symbols = Arrays.copyOf(symbols, size * 2);
+                if (isNumeric()) {
+                    numbers = Arrays.copyOf(numbers, size * 2);
+                }
+            }
+            values[size] = value;
+            hashes[size] = hash;
+            symbols[size] = symbol;
+            if (isNumeric()) {
+                numbers[size] = number;
+            }
+            slots[slot] = size + 1;
+            int code = size++;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int code = 0; code < size; code++) {
+                int slot = mix(hashes[code]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = code + 1;
+            }
+        }
+
+        /**
+         * Spreads the bits of the polynomial hash, whose low bits are nearly sequential for values like numbers that only differ in the last
+         * digits and would form long probe chains.
+         */
+        private static int mix(int hash) {
+            /* finalizer of MurmurHash3, every input bit affects the low bits used as slot index */
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            hash *= 0xC2B2AE35;
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equals(byte[] value, ByteBuffer buffer, int start, int end) {
+            if (value.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (value[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        SymbolTable toSymbolTable() {
+            SymbolTable symbolTable = new SymbolTable();
+            for (int code = 0; code < size; code++) {
+                symbolTable.intern(symbols[code]);
+            }
+            return symbolTable;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Preprocessed dataset together with the header of its CSV file and a description of the preprocessing, stored in a binary columnar file.
+ * A later run that would preprocess the same file with the same settings reads the encoded columns back instead of parsing and discretizing
+ * the CSV file again.
+ * <p>
+ * The file starts with a magic number and a version, followed by the metadata, the header and the columns. Every column stores whether it
+ * is numeric, its symbols in code order, the codes of all rows and, for numeric columns, the values of all rows. Strings are stored as
+ * UTF-8 bytes behind their length. Every section is preceded by its length in bytes, so each one can be mapped on its own.
+ */
+public class DatasetCache {
+
+    /**
+     * The first four bytes of every cache file, "PKIC" in ASCII.
+     */
+    private static final int MAGIC = 0x504B4943;
+
+    /**
+     * The version of the file format, increased with every incompatible change.
+     */
+    private static final int VERSION = 1;
+
+    private final String metadata;
+    private final String[] header;
+    private final Dataset dataset;
+
+    /**
+     * Constructor for a cache entry.
+     *
+     * @param metadata describes the source file and the preprocessing; an entry is only reused if the metadata is unchanged.
+     * @param header   the header of the CSV file.
+     * @param dataset  the preprocessed dataset.
+     */
+    public DatasetCache(String metadata, String[] header, Dataset dataset) {
+        this.metadata = metadata;
+        this.header = header;
+        this.dataset = dataset;
+    }
+
+    public String getMetadata() {
+        return metadata;
+    }
+
+    public String[] getHeader() {
+        return header;
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Writes a cache entry. The file is written next to the target and moved into place afterwards, so an interrupted write never leaves a
+     * broken cache file behind.
+     *
+     * @param path  the path of the cache file.
+     * @param cache the entry to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(String path, DatasetCache cache) throws IOException {
+        Path target = Path.of(path);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Dataset dataset = cache.dataset;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, cache.metadata);
+            out.writeInt(cache.header.length);
+            for (String name : cache.header) {
+                writeString(out, name);
+            }
+
+            out.writeInt(dataset.getNumAttributes());
+            out.writeInt(dataset.size());
+            for (int attributeIndex = 0; attributeIndex < dataset.getNumAttributes(); attributeIndex++) {
+                SymbolTable symbolTable = dataset.getSymbolTable(attributeIndex);
+                byte[][] symbols = new byte[symbolTable.size()][];
+                long symbolBytes = Integer.BYTES;
+                for (int code = 0; code < symbols.length; code++) {
+                    symbols[code] = symbolTable.getSymbol(code).getBytes(StandardCharsets.UTF_8);
+                    symbolBytes += Integer.BYTES + symbols[code].length;
+                }
+                out.writeBoolean(dataset.isNumeric(attributeIndex));
+                out.writeLong(symbolBytes);
+                out.writeInt(symbols.length);
+                for (byte[] symbol : symbols) {
+                    out.writeInt(symbol.length);
+                    out.write(symbol);
+                }
+
+                for (int code : dataset.getColumn(attributeIndex)) {
+                    out.writeInt(code);
+                }
+                if (dataset.isNumeric(attributeIndex)) {
+                    for (double value : dataset.getNumericColumn(attributeIndex)) {
+                        out.writeDouble(value);
+                    }
+                }
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a cache entry. Every section of the file is memory-mapped and copied into the arrays of the dataset with bulk reads.
+     *
+     * @param path the path of the cache file.
+     * @return the entry or null if the file does not exist or was written in another format version.
+     * @throws IOException if the file cannot be read or is not a cache file.
+     */
+    public static DatasetCache read(String path) throws IOException {
+        if (!Files.exists(Path.of(path))) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long position = 0;
+            MappedByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(channel.size(), 2 * Integer.BYTES));
+            if (start.remaining() < 2 * Integer.BYTES || start.getInt() != MAGIC) {
+                throw new IOException(path + " is not a dataset cache file.");
+            }
+            if (start.getInt() != VERSION) {
+                return null;
+            }
+            position += 2 * Integer.BYTES;
+
+            /* metadata and header are small, they are mapped up to the column count */
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(channel.size() - position, Integer.MAX_VALUE));
+            String metadata = readString(buffer);
+            String[] header = new String[buffer.getInt()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = readString(buffer);
+            }
+            int numAttributes = buffer.getInt();
+            int numRows = buffer.getInt();
+            position += buffer.position();
+
+            int[][] columns = new int[numAttributes][];
+            SymbolTable[] symbolTables = new SymbolTable[numAttributes];
+            double[][] numericColumns = new double[numAttributes][];
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, 1 + Long.BYTES);
+                boolean numeric = buffer.get() != 0;
+                long symbolBytes = buffer.getLong();
+                position += 1 + Long.BYTES;
+
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, symbolBytes);
+                String[] symbols = new String[buffer.getInt()];
+                for (int code = 0; code < symbols.length; code++) {
+                    symbols[code] = readString(buffer);
+                }
+                symbolTables[attributeIndex] = SymbolTable.of(symbols);
+                position += symbolBytes;
+
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) numRows * Integer.BYTES);
+                columns[attributeIndex] = new int[numRows];
+                buffer.asIntBuffer().get(columns[attributeIndex]);
+                position += (long) numRows * Integer.BYTES;
+
+                if (numeric) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) numRows * Double.BYTES);
+                    numericColumns[attributeIndex] = new double[numRows];
+                    buffer.asDoubleBuffer().get(numericColumns[attributeIndex]);
+                    position += (long) numRows * Double.BYTES;
+                }
+            }
+            return new DatasetCache(metadata, header, new Dataset(columns, symbolTables, numericColumns));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
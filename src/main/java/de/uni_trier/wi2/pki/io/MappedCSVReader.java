@@ -0,0 +1,560 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads CSV files through a memory mapping of the file. The bytes are scanned for delimiters and line breaks directly, so no line is decoded
+ * before it is known to be kept, and lines with NA values are detected by comparing bytes with a precomputed table of NA tokens.
+ * The delimiter is taken literally, not as a regular expression. Lines may end with \n or \r\n and the file must be encoded in UTF-8.
+ */
+public class MappedCSVReader {
+
+    /**
+     * The field values that mark a missing value, compared ignoring the case of ASCII letters.
+     */
+    private static final String[] NA_VALUES = {"na", "n/a", "nan", "null", "nil", "none", "n.a.", "n.a", "n_a", ""};
+
+    /**
+     * The NA tokens as lower case bytes, indexed by [token length][token].
+     */
+    private static final byte[][][] NA_TOKENS_BY_LENGTH = groupByLength(NA_VALUES);
+
+    /**
+     * The maximum number of bytes that are mapped at once. A single mapping is limited to 2 GB, larger files are mapped chunk by chunk.
+     */
+    private static final int REGION_SIZE = 1 << 30;
+
+    /**
+     * The minimum number of bytes of a chunk that is scanned by a worker of its own, smaller chunks are not worth a task.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Receives the fields of every kept line.
+     */
+    interface LineVisitor {
+
+        /**
+         * Visits a line without NA values. The field bounds are only valid during the call.
+         *
+         * @param buffer      the mapped bytes of the chunk.
+         * @param fieldStarts the position of the first byte of every field.
+         * @param fieldEnds   the position after the last byte of every field.
+         * @param numFields   the number of fields of the line.
+         * @throws IOException if the line cannot be processed.
+         */
+        void visit(ByteBuffer buffer, int[] fieldStarts, int[] fieldEnds, int numFields) throws IOException;
+    }
+
+    /**
+     * Read a CSV file and return a list of string arrays, skipping lines with NA values.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @return the fields of every kept line.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<String[]> readRows(String path, String delimiter, boolean ignoreHeader) throws IOException {
+        return readRows(path, delimiter, ignoreHeader, 1);
+    }
+
+    /**
+     * Read a CSV file in parallel chunks and return a list of string arrays, skipping lines with NA values. Every chunk is scanned and decoded
+     * by its own worker, the rows are concatenated in file order.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @param numChunks    the number of chunks the file is split into, 1 reads it sequentially. Small files get fewer chunks.
+     * @return the fields of every kept line.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<String[]> readRows(String path, String delimiter, boolean ignoreHeader, int numChunks) throws IOException {
+        List<RowCollector> chunks = scan(path, delimiter, ignoreHeader, numChunks, length -> new RowCollector());
+        List<String[]> rows = new ArrayList<>(chunks.stream().mapToInt(chunk -> chunk.rows.size()).sum());
+        for (RowCollector chunk : chunks) {
+            rows.addAll(chunk.rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rows of a CSV file as a lazy stream, skipping lines with NA values. A line is only scanned and decoded when the stream
+     * requests it, so the rows never have to be held in memory at once. The stream can be split at line beginnings for parallel processing.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @return the fields of every kept line in file order.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static Stream<String[]> streamRows(String path, String delimiter, boolean ignoreHeader) throws IOException {
+        List<RowSpliterator> chunks = new ArrayList<>();
+        /* a mapping stays valid after its channel is closed */
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, 1);
+            for (int chunk = 0; chunk < bounds.length - 1; chunk++) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]);
+                int end = (int) (bounds[chunk + 1] - bounds[chunk]);
+                int start = ignoreHeader && chunk == 0 ? nextLine(buffer, 0, end) : 0;
+                chunks.add(new RowSpliterator(buffer, start, end, delimiter));
+            }
+        }
+        if (chunks.size() == 1) {
+            return StreamSupport.stream(chunks.get(0), false);
+        }
+        return chunks.stream().flatMap(chunk -> StreamSupport.stream(chunk, false));
+    }
+
+    /**
+     * Read a CSV file directly into an encoded dataset, skipping lines with NA values. Every distinct value of a column is decoded and, for
+     * numeric columns, parsed only once; all further occurrences are found in a byte-level dictionary.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @param isNumeric    whether each column is numeric; its length is the number of fields every line must have.
+     * @return the encoded dataset.
+     * @throws IOException           if the file cannot be read or a line has the wrong number of fields.
+     * @throws NumberFormatException if a value of a numeric column is not a number.
+     */
+    public static Dataset readDataset(String path, String delimiter, boolean ignoreHeader, boolean[] isNumeric) throws IOException {
+        return readDataset(path, delimiter, ignoreHeader, isNumeric, 1);
+    }
+
+    /**
+     * Read a CSV file in parallel chunks directly into an encoded dataset, skipping lines with NA values. Every chunk is scanned, filtered
+     * and encoded by its own worker with dictionaries of its own, which are merged in file order afterwards, so the codes are the same as
+     * with a sequential read.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @param isNumeric    whether each column is numeric; its length is the number of fields every line must have.
+     * @param numChunks    the number of chunks the file is split into, 1 reads it sequentially. Small files get fewer chunks.
+     * @return the encoded dataset.
+     * @throws IOException           if the file cannot be read or a line has the wrong number of fields.
+     * @throws NumberFormatException if a value of a numeric column is not a number.
+     */
+    public static Dataset readDataset(String path, String delimiter, boolean ignoreHeader, boolean[] isNumeric, int numChunks)
+            throws IOException {
+        return ColumnBuilder.concat(scan(path, delimiter, ignoreHeader, numChunks, length -> new ColumnBuilder(isNumeric, estimateRows(length))));
+    }
+
+    /**
+     * Splits a file into chunks that start at line beginnings and passes the lines without NA values of every chunk to a visitor of its own.
+     * With more than one chunk the chunks are scanned in parallel.
+     *
+     * @param path         the path of the CSV file.
+     * @param delimiter    the delimiter, taken literally.
+     * @param ignoreHeader whether the first line is skipped.
+     * @param numChunks    the requested number of chunks.
+     * @param newVisitor   creates the visitor of a chunk from its length in bytes.
+     * @param <V>          the type of the visitors.
+     * @return the visitors of the chunks in file order.
+     * @throws IOException if the file cannot be read or a visitor fails.
+     */
+    static <V extends LineVisitor> List<V> scan(String path, String delimiter, boolean ignoreHeader, int numChunks, LongFunction<V> newVisitor)
+            throws IOException {
+        if (numChunks < 1) {
+            throw new IllegalArgumentException("The number of chunks must be at least 1.");
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, numChunks);
+            List<V> visitors = new ArrayList<>(bounds.length - 1);
+            for (int chunk = 0; chunk < bounds.length - 1; chunk++) {
+                visitors.add(newVisitor.apply(bounds[chunk + 1] - bounds[chunk]));
+            }
+
+            IntStream chunks = IntStream.range(0, visitors.size());
+            if (numChunks > 1) {
+                chunks = chunks.parallel();
+            }
+            try {
+                chunks.forEach(chunk -> {
+                    try {
+                        scanChunk(channel, bounds[chunk], bounds[chunk + 1], delimiter, ignoreHeader && chunk == 0, visitors.get(chunk));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return visitors;
+        }
+    }
+
+    /**
+     * Maps a chunk of a file and scans its lines.
+     *
+     * @param channel   the channel of the file.
+     * @param from      the offset of the first byte of the chunk, the beginning of a line.
+     * @param to        the offset after the last byte of the chunk, the beginning of a line or the end of the file.
+     * @param delimiter the delimiter, taken literally.
+     * @param skipLine  whether the first line of the chunk is skipped.
+     * @param visitor   receives the kept lines in order.
+     * @throws IOException if the chunk cannot be mapped or the visitor fails.
+     */
+    private static void scanChunk(FileChannel channel, long from, long to, String delimiter, boolean skipLine, LineVisitor visitor)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int end = (int) (to - from);
+        int start = skipLine ? nextLine(buffer, 0, end) : 0;
+        new LineScanner(delimiter).scanLines(buffer, start, end, visitor);
+    }
+
+    /**
+     * Computes the bounds of the chunks of a file. The file is split into chunks of about equal size whose bounds are moved to the next line
+     * beginning. Chunks are not smaller than {@link #MIN_CHUNK_SIZE} unless the file is, and not larger than one mapping allows.
+     *
+     * @param channel   the channel of the file.
+     * @param numChunks the requested number of chunks.
+     * @return the offsets of the chunk beginnings followed by the file size; consecutive offsets differ unless the file is empty.
+     * @throws IOException if the file cannot be read or a line is too long to be mapped.
+     */
+    static long[] chunkBounds(FileChannel channel, int numChunks) throws IOException {
+        long size = channel.size();
+        long regions = (size + REGION_SIZE - 1) / REGION_SIZE;
+        int count = (int) Math.max(regions, Math.min(numChunks, Math.max(1, size / MIN_CHUNK_SIZE)));
+
+        long[] bounds = new long[count + 1];
+        int numBounds = 1;
+        for (int chunk = 1; chunk < count; chunk++) {
+            long bound = lineStart(channel, size / count * chunk);
+            if (bound > bounds[numBounds - 1] && bound < size) {
+                bounds[numBounds++] = bound;
+            }
+        }
+        bounds[numBounds++] = size;
+        bounds = Arrays.copyOf(bounds, numBounds);
+
+        for (int chunk = 1; chunk < bounds.length; chunk++) {
+            if (bounds[chunk] - bounds[chunk - 1] > Integer.MAX_VALUE) {
+                throw new IOException("Line longer than " + REGION_SIZE + " bytes after offset " + bounds[chunk - 1] + ".");
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the first line beginning at or after a position of a file.
+     *
+     * @return the offset after the first \n at or after position - 1, or the file size if there is none.
+     */
+    private static long lineStart(FileChannel channel, long position) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long offset = position - 1;
+        while (true) {
+            block.clear();
+            int read = channel.read(block, offset);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Estimates the number of lines of a chunk from its length, used to presize the columns.
+     */
+    private static int estimateRows(long length) {
+        return (int) Math.min(1 << 20, length / 64 + 16);
+    }
+
+    /**
+     * Returns the position after the first line break in buffer[from, to).
+     *
+     * @return the position after the first \n or to if the range has none.
+     */
+    static int nextLine(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Decodes buffer[start, end) as UTF-8.
+     */
+    static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the fields of a line as UTF-8.
+     */
+    static String[] decodeRow(ByteBuffer buffer, int[] fieldStarts, int[] fieldEnds, int numFields) {
+        String[] row = new String[numFields];
+        for (int field = 0; field < numFields; field++) {
+            row[field] = decode(buffer, fieldStarts[field], fieldEnds[field]);
+        }
+        return row;
+    }
+
+    /**
+     * Checks whether buffer[start, end) is an NA token. The check does not allocate.
+     *
+     * @return true if the field equals an NA token ignoring the case of ASCII letters.
+     */
+    static boolean isNaValue(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length >= NA_TOKENS_BY_LENGTH.length) {
+            return false;
+        }
+        for (byte[] token : NA_TOKENS_BY_LENGTH[length]) {
+            int i = 0;
+            while (i < length && toLowerCase(buffer.get(start + i)) == token[i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[][][] groupByLength(String[] tokens) {
+        int maxLength = Arrays.stream(tokens).mapToInt(String::length).max().orElse(0);
+        byte[][][] grouped = new byte[maxLength + 1][][];
+        for (int length = 0; length <= maxLength; length++) {
+            final int tokenLength = length;
+            grouped[length] = Arrays.stream(tokens)
+                    .filter(token -> token.length() == tokenLength)
+                    .map(token -> token.getBytes(StandardCharsets.US_ASCII))
+                    .toArray(byte[][]::new);
+        }
+        return grouped;
+    }
+
+    /**
+     * Decodes the kept lines of a chunk into string arrays.
+     */
+    private static class RowCollector implements LineVisitor {
+
+        private final List<String[]> rows = new ArrayList<>();
+
+        @Override
+        public void visit(ByteBuffer buffer, int[] fieldStarts, int[] fieldEnds, int numFields) {
+            rows.add(decodeRow(buffer, fieldStarts, fieldEnds, numFields));
+        }
+    }
+
+    /**
+     * Scans and decodes the lines of a mapped range one at a time. Splitting hands the first half of the remaining lines to a new
+     * spliterator.
+     */
+    private static class RowSpliterator implements Spliterator<String[]> {
+
+        private final ByteBuffer buffer;
+        private final String delimiter;
+        private final LineScanner scanner;
+        private int position;
+        private final int end;
+
+        RowSpliterator(ByteBuffer buffer, int position, int end, String delimiter) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+            this.delimiter = delimiter;
+            this.scanner = new LineScanner(delimiter);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String[]> action) {
+            while (position < end) {
+                int numFields = scanner.scanLine(buffer, position, end);
+                position = scanner.nextLineStart;
+                if (!scanner.containsNaValue(buffer, numFields)) {
+                    action.accept(scanner.decodeFields(buffer, numFields));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<String[]> trySplit() {
+            int middle = nextLine(buffer, position + (end - position) / 2, end);
+            if (middle <= position || middle >= end) {
+                return null;
+            }
+            Spliterator<String[]> prefix = new RowSpliterator(buffer, position, middle, delimiter);
+            position = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            /* every line has at least one byte, so the remaining bytes bound the remaining lines */
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Splits lines into fields. The field bound arrays are reused for every line.
+     */
+    static class LineScanner {
+
+        private final byte[] delimiter;
+        private int[] fieldStarts = new int[16];
+        private int[] fieldEnds = new int[16];
+
+        /**
+         * The beginning of the line after the last scanned line.
+         */
+        private int nextLineStart;
+
+        /**
+         * Constructor for a line scanner.
+         *
+         * @param delimiter the delimiter, taken literally.
+         */
+        LineScanner(String delimiter) {
+            this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+            if (this.delimiter.length == 0) {
+                throw new IllegalArgumentException("The delimiter must not be empty.");
+            }
+        }
+
+        /**
+         * Scans the lines in buffer[from, to) and passes the lines without NA values to the visitor. The range must start at the beginning of
+         * a line; its last line may lack the line break.
+         *
+         * @param buffer  the mapped bytes.
+         * @param from    the first position (inclusive).
+         * @param to      the last position (exclusive).
+         * @param visitor receives the kept lines in order.
+         * @throws IOException if the visitor fails.
+         */
+        void scanLines(ByteBuffer buffer, int from, int to, LineVisitor visitor) throws IOException {
+            int lineStart = from;
+            while (lineStart < to) {
+                int numFields = scanLine(buffer, lineStart, to);
+                if (!containsNaValue(buffer, numFields)) {
+                    visitor.visit(buffer, fieldStarts, fieldEnds, numFields);
+                }
+                lineStart = nextLineStart;
+            }
+        }
+
+        /**
+         * Splits the line that starts at lineStart into fields. The field bounds are stored in the reused bound arrays and the beginning of
+         * the following line in {@link #nextLineStart}.
+         *
+         * @param buffer    the mapped bytes.
+         * @param lineStart the position of the first byte of the line.
+         * @param to        the end of the range, the last line may lack the line break.
+         * @return the number of fields of the line.
+         */
+        int scanLine(ByteBuffer buffer, int lineStart, int to) {
+            byte first = delimiter[0];
+            int numFields = 0;
+            int fieldStart = lineStart;
+            int i = lineStart;
+            int lineEnd = to;
+            nextLineStart = to;
+            while (i < to) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    lineEnd = i;
+                    nextLineStart = i + 1;
+                    break;
+                }
+                if (b == first && matchesDelimiter(buffer, i, to)) {
+                    numFields = addField(numFields, fieldStart, i);
+                    i += delimiter.length;
+                    fieldStart = i;
+                } else {
+                    i++;
+                }
+            }
+            if (lineEnd > fieldStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            return addField(numFields, fieldStart, Math.max(fieldStart, lineEnd));
+        }
+
+        /**
+         * Decodes the fields of the last scanned line.
+         *
+         * @param buffer    the mapped bytes.
+         * @param numFields the number of fields of the line.
+         * @return the decoded fields.
+         */
+        String[] decodeFields(ByteBuffer buffer, int numFields) {
+            return decodeRow(buffer, fieldStarts, fieldEnds, numFields);
+        }
+
+        private boolean matchesDelimiter(ByteBuffer buffer, int position, int to) {
+            if (position + delimiter.length > to) {
+                return false;
+            }
+            for (int i = 1; i < delimiter.length; i++) {
+                if (buffer.get(position + i) != delimiter[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int addField(int numFields, int start, int end) {
+            if (numFields == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+            }
+            fieldStarts[numFields] = start;
+            fieldEnds[numFields] = end;
+            return numFields + 1;
+        }
+
+        boolean containsNaValue(ByteBuffer buffer, int numFields) {
+            for (int field = 0; field < numFields; field++) {
+                if (isNaValue(buffer, fieldStarts[field], fieldEnds[field])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.RandomForest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes XML exports of models on a dedicated writer thread, so training does not wait for the file system. A submitted model is serialized
+ * into an immutable byte snapshot right away, which makes it safe to keep modifying the model, e.g. to prune it, while the snapshot waits in
+ * the queue. The queue is bounded; if the writer falls behind, submitting blocks until there is room again.
+ * <p>
+ * Exports to the same path are written in submission order. Closing the exporter writes all pending exports and reports every failed export
+ * as one IOException.
+ */
+public class ModelExporter implements AutoCloseable {
+
+    /**
+     * The number of snapshots that may wait for the writer thread by default.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Marks the end of the queue for the writer thread.
+     */
+    private static final Export END = new Export(null, null);
+
+    private final BlockingQueue<Export> queue;
+    private final Thread writerThread;
+
+    /**
+     * The failures of the writer thread, reported on close.
+     */
+    private final List<IOException> failures = new ArrayList<>();
+
+    private boolean closed;
+
+    /**
+     * Constructor for an exporter with the default capacity.
+     */
+    public ModelExporter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for an exporter. Starts the writer thread.
+     *
+     * @param capacity the number of snapshots that may wait for the writer thread before submitting blocks.
+     */
+    public ModelExporter(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::writeExports, "model-exporter");
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the export of a decision tree.
+     *
+     * @param path         the path to write to.
+     * @param decisionTree the tree to export; later changes to it do not affect the export.
+     * @throws IOException if the exporter is closed, the tree cannot be serialized or the thread is interrupted while waiting for room.
+     */
+    public void submit(String path, DecisionTree decisionTree) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        XMLWriter.writeXML(snapshot, decisionTree);
+        enqueue(new Export(path, snapshot.toByteArray()));
+    }
+
+    /**
+     * Queues the export of a random forest.
+     *
+     * @param path         the path to write to.
+     * @param randomForest the forest to export; later changes to it do not affect the export.
+     * @throws IOException if the exporter is closed, the forest cannot be serialized or the thread is interrupted while waiting for room.
+     */
+    public void submit(String path, RandomForest randomForest) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        XMLWriter.writeXML(snapshot, randomForest);
+        enqueue(new Export(path, snapshot.toByteArray()));
+    }
+
+    /**
+     * Writes all pending exports and stops the writer thread.
+     *
+     * @throws IOException if an export failed; further failures are attached as suppressed exceptions.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                putUninterruptibly(END);
+            }
+        }
+        boolean interrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                IOException failure = new IOException(failures.size() + " model export(s) failed, first: " + failures.get(0).getMessage(),
+                        failures.get(0));
+                for (int i = 1; i < failures.size(); i++) {
+                    failure.addSuppressed(failures.get(i));
+                }
+                failures.clear();
+                throw failure;
+            }
+        }
+    }
+
+    private synchronized void enqueue(Export export) throws IOException {
+        if (closed) {
+            throw new IOException("The model exporter is closed.");
+        }
+        try {
+            queue.put(export);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to export " + export.path + ".");
+        }
+    }
+
+    /**
+     * Waits for room in the queue even if the thread is interrupted, so the writer thread always receives the end marker.
+     */
+    private void putUninterruptibly(Export export) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(export);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The loop of the writer thread. A failed export is recorded and does not stop the following ones.
+     */
+    private void writeExports() {
+        while (true) {
+            Export export;
+            try {
+                export = queue.take();
+            } catch (InterruptedException e) {
+                /* only close ends the writer thread, so pending exports are never lost */
+                continue;
+            }
+            if (export == END) {
+                return;
+            }
+            try {
+                Files.write(Path.of(export.path), export.bytes);
+            } catch (IOException | RuntimeException e) {
+                synchronized (failures) {
+                    failures.add(e instanceof IOException ? (IOException) e : new IOException(export.path + ": " + e.getMessage(), e));
+                }
+            }
+        }
+    }
+
+    /**
+     * A serialized model and its target path.
+     */
+    private static class Export {
+
+        private final String path;
+        private final byte[] bytes;
+
+        Export(String path, byte[] bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+}
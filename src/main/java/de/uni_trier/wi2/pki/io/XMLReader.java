@@ -0,0 +1,344 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.data.SymbolTable;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static de.uni_trier.wi2.pki.io.XMLWriter.A_ATTRIBUTE;
+import static de.uni_trier.wi2.pki.io.XMLWriter.A_CLASS;
+import static de.uni_trier.wi2.pki.io.XMLWriter.A_THRESHOLD;
+import static de.uni_trier.wi2.pki.io.XMLWriter.A_VALUE;
+import static de.uni_trier.wi2.pki.io.XMLWriter.N_DECISION_TREE;
+import static de.uni_trier.wi2.pki.io.XMLWriter.N_IF;
+import static de.uni_trier.wi2.pki.io.XMLWriter.N_LEAF_NODE;
+import static de.uni_trier.wi2.pki.io.XMLWriter.N_NODE;
+import static de.uni_trier.wi2.pki.io.XMLWriter.N_RANDOM_FOREST;
+
+/**
+ * Loads decision trees written by {@link XMLWriter} directly into {@link CompiledTree}s. The XML is read with a streaming parser and every
+ * element is translated into the node arrays when it is read, so no document or object tree is built.
+ * <p>
+ * The attribute names of the file are resolved against the header of the CSV file. Split values and class labels are interned in symbol
+ * tables that are shared by all trees of a file, so the trees of a forest use the same codes and label ids. The file does not contain the
+ * values of a numeric attribute, only the thresholds it is split on. The sorted thresholds of all trees therefore divide its values into
+ * intervals, and the intervals are its codes: code i stands for the values above threshold i - 1 up to threshold i, the last code for the
+ * values above all thresholds. Every threshold split decides an interval as a whole, so encoded rows are predicted like examples.
+ */
+public class XMLReader {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    /**
+     * Load a single decision tree from the specified path.
+     *
+     * @param path   the path to read from.
+     * @param header the attribute names, the index of a name is its attribute index.
+     * @return the compiled tree.
+     * @throws IOException if the file cannot be read or does not contain exactly one decision tree.
+     */
+    public static CompiledTree readTree(String path, String[] header) throws IOException {
+        List<CompiledTree> trees = readTrees(path, header);
+        if (trees.size() != 1) {
+            throw new IOException(path + " contains " + trees.size() + " decision trees, expected one.");
+        }
+        return trees.get(0);
+    }
+
+    /**
+     * Load all decision trees of a single tree or a random forest from the specified path.
+     *
+     * @param path   the path to read from.
+     * @param header the attribute names, the index of a name is its attribute index.
+     * @return the compiled trees in file order.
+     * @throws IOException if the file cannot be read or does not follow the schema of {@link XMLWriter}.
+     */
+    public static List<CompiledTree> readTrees(String path, String[] header) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(Path.of(path))) {
+            return readTrees(inputStream, header);
+        }
+    }
+
+    /**
+     * Load all decision trees of a single tree or a random forest from the specified input stream.
+     *
+     * @param inputStream the stream to read from.
+     * @param header      the attribute names, the index of a name is its attribute index.
+     * @return the compiled trees in stream order.
+     * @throws IOException if the stream cannot be read or does not follow the schema of {@link XMLWriter}.
+     */
+    public static List<CompiledTree> readTrees(InputStream inputStream, String[] header) throws IOException {
+        Map<String, Integer> attributeIndices = new HashMap<>();
+        for (int attributeIndex = header.length - 1; attributeIndex >= 0; attributeIndex--) {
+            attributeIndices.put(header[attributeIndex], attributeIndex);
+        }
+
+        SymbolTable[] symbolTables = new SymbolTable[header.length];
+        for (int attributeIndex = 0; attributeIndex < symbolTables.length; attributeIndex++) {
+            symbolTables[attributeIndex] = new SymbolTable();
+        }
+        SymbolTable labelTable = new SymbolTable();
+        Map<Integer, TreeSet<Double>> thresholdsByAttribute = new TreeMap<>();
+
+        /* the trees are built at the end, when the intervals of the numeric attributes are known from all trees */
+        List<TreeBuilder> builders = new ArrayList<>();
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+            TreeBuilder builder = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals(N_DECISION_TREE)) {
+                        builder = new TreeBuilder(symbolTables, labelTable);
+                    } else if (name.equals(N_RANDOM_FOREST)) {
+                        continue;
+                    } else if (builder == null) {
+                        throw new IOException("Element " + name + " outside of a " + N_DECISION_TREE + " element.");
+                    } else if (name.equals(N_NODE)) {
+                        String attributeName = requireAttribute(reader, A_ATTRIBUTE);
+                        Integer attributeIndex = attributeIndices.get(attributeName);
+                        if (attributeIndex == null) {
+                            throw new IOException("Unknown attribute " + attributeName + " at line " + reader.getLocation().getLineNumber() + ".");
+                        }
+                        String threshold = reader.getAttributeValue(null, A_THRESHOLD);
+                        double thresholdValue = threshold == null ? Double.NaN : Double.parseDouble(threshold);
+                        if (threshold != null) {
+                            thresholdsByAttribute.computeIfAbsent(attributeIndex, index -> new TreeSet<>()).add(thresholdValue);
+                        }
+                        builder.startNode(attributeIndex, thresholdValue);
+                    } else if (name.equals(N_IF)) {
+                        builder.startBranch(requireAttribute(reader, A_VALUE));
+                    } else if (name.equals(N_LEAF_NODE)) {
+                        builder.addLeaf(requireAttribute(reader, A_CLASS));
+                    } else {
+                        throw new IOException("Unknown element " + name + " at line " + reader.getLocation().getLineNumber() + ".");
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals(N_NODE)) {
+                        builder.endNode();
+                    } else if (name.equals(N_DECISION_TREE)) {
+                        builder.checkComplete();
+                        builders.add(builder);
+                        builder = null;
+                    }
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        double[][] intervalBounds = new double[header.length][];
+        for (Map.Entry<Integer, TreeSet<Double>> entry : thresholdsByAttribute.entrySet()) {
+            int attributeIndex = entry.getKey();
+            if (symbolTables[attributeIndex].size() > 0) {
+                throw new IOException("Attribute " + header[attributeIndex] + " is split both by values and by thresholds.");
+            }
+            double[] bounds = new double[entry.getValue().size() + 1];
+            int interval = 0;
+            for (double threshold : entry.getValue()) {
+                bounds[interval++] = threshold;
+            }
+            bounds[interval] = Double.POSITIVE_INFINITY;
+
+            /* the symbol of an interval names its upper bound */
+            for (double bound : bounds) {
+                symbolTables[attributeIndex].intern(DecisionTreeNode.lessOrEqualKey(bound));
+            }
+            intervalBounds[attributeIndex] = bounds;
+        }
+
+        List<CompiledTree> trees = new ArrayList<>(builders.size());
+        for (TreeBuilder treeBuilder : builders) {
+            trees.add(treeBuilder.build(intervalBounds));
+        }
+        return trees;
+    }
+
+    private static String requireAttribute(XMLStreamReader reader, String name) throws IOException {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IOException("Element " + reader.getLocalName() + " at line " + reader.getLocation().getLineNumber() + " has no "
+                    + name + " attribute.");
+        }
+        return value;
+    }
+
+    /**
+     * Collects the node arrays of one tree while its elements are read. Node ids are assigned in document order, which is the depth-first
+     * order of the tree. The child table slice of an inner node is allocated when the node is closed, because only then all its branches
+     * are known.
+     */
+    private static class TreeBuilder {
+
+        private final SymbolTable[] symbolTables;
+        private final SymbolTable labelTable;
+
+        private int[] attributeIndices = new int[64];
+        private int[] childOffsets = new int[64];
+        private int[] childCounts = new int[64];
+        private int[] labelIds = new int[64];
+        private double[] thresholds = new double[64];
+        private int numNodes;
+
+        private int[] children = new int[64];
+        private int numChildren;
+
+        /**
+         * The inner nodes whose elements are not closed yet, the innermost first.
+         */
+        private final Deque<OpenNode> openNodes = new ArrayDeque<>();
+
+        TreeBuilder(SymbolTable[] symbolTables, SymbolTable labelTable) {
+            this.symbolTables = symbolTables;
+            this.labelTable = labelTable;
+        }
+
+        void startNode(int attributeIndex, double threshold) {
+            int id = addNode(attributeIndex, -1, threshold);
+            openNodes.push(new OpenNode(id, attributeIndex, threshold));
+        }
+
+        void startBranch(String value) {
+            OpenNode parent = openNodes.peek();
+            if (parent == null) {
+                throw new IllegalArgumentException("Branch " + value + " outside of a node.");
+            }
+            if (Double.isNaN(parent.threshold)) {
+                parent.branchCode = symbolTables[parent.attributeIndex].intern(value);
+            } else if (value.equals(DecisionTreeNode.lessOrEqualKey(parent.threshold))) {
+                parent.branchCode = 0;
+            } else if (value.equals(DecisionTreeNode.greaterKey(parent.threshold))) {
+                parent.branchCode = 1;
+            } else {
+                throw new IllegalArgumentException("Branch " + value + " does not match the threshold " + parent.threshold + ".");
+            }
+        }
+
+        void addLeaf(String labelClass) {
+            addNode(-1, labelTable.intern(labelClass), Double.NaN);
+        }
+
+        void endNode() {
+            OpenNode node = openNodes.pop();
+            int count = Double.isNaN(node.threshold) ? node.maxCode + 1 : 2;
+            if (numChildren + count > children.length) {
+                children = Arrays.copyOf(children, Math.max(children.length * 2, numChildren + count));
+            }
+            Arrays.fill(children, numChildren, numChildren + count, -1);
+            for (int branch = 0; branch < node.numBranches; branch++) {
+                children[numChildren + node.codes[branch]] = node.nodes[branch];
+            }
+            childOffsets[node.id] = numChildren;
+            childCounts[node.id] = count;
+            numChildren += count;
+        }
+
+        void checkComplete() {
+            if (numNodes == 0 || !openNodes.isEmpty()) {
+                throw new IllegalArgumentException("Incomplete decision tree.");
+            }
+        }
+
+        /**
+         * Builds the compiled tree. The upper bound of an interval is its value for threshold splits on encoded rows.
+         *
+         * @param intervalBounds the ascending upper bounds of the intervals of each numeric attribute, null for categorical attributes.
+         * @return the compiled tree.
+         */
+        CompiledTree build(double[][] intervalBounds) {
+            String[] labels = new String[labelTable.size()];
+            for (int labelId = 0; labelId < labels.length; labelId++) {
+                labels[labelId] = labelTable.getSymbol(labelId);
+            }
+            return new CompiledTree(Arrays.copyOf(attributeIndices, numNodes), Arrays.copyOf(childOffsets, numNodes),
+                    Arrays.copyOf(childCounts, numNodes), Arrays.copyOf(children, numChildren), Arrays.copyOf(labelIds, numNodes),
+                    Arrays.copyOf(thresholds, numNodes), intervalBounds.clone(), labels, symbolTables.clone(), intervalBounds.clone());
+        }
+
+        /**
+         * Appends a node and links it to the pending branch of its parent.
+         */
+        private int addNode(int attributeIndex, int labelId, double threshold) {
+            if (numNodes == attributeIndices.length) {
+                attributeIndices = Arrays.copyOf(attributeIndices, numNodes * 2);
+                childOffsets = Arrays.copyOf(childOffsets, numNodes * 2);
+                childCounts = Arrays.copyOf(childCounts, numNodes * 2);
+                labelIds = Arrays.copyOf(labelIds, numNodes * 2);
+                thresholds = Arrays.copyOf(thresholds, numNodes * 2);
+            }
+            int id = numNodes++;
+            attributeIndices[id] = attributeIndex;
+            labelIds[id] = labelId;
+            thresholds[id] = threshold;
+
+            OpenNode parent = openNodes.peek();
+            if (parent != null) {
+                if (parent.branchCode < 0) {
+                    throw new IllegalArgumentException("Node without a branch of its parent.");
+                }
+                parent.addBranch(parent.branchCode, id);
+                parent.branchCode = -1;
+            } else if (id != 0) {
+                throw new IllegalArgumentException("A decision tree has more than one root node.");
+            }
+            return id;
+        }
+    }
+
+    /**
+     * An inner node whose branches are still being read.
+     */
+    private static class OpenNode {
+
+        private final int id;
+        private final int attributeIndex;
+        private final double threshold;
+
+        /**
+         * The code of the branch whose child comes next, -1 if no branch is open.
+         */
+        private int branchCode = -1;
+
+        private int[] codes = new int[4];
+        private int[] nodes = new int[4];
+        private int numBranches;
+        private int maxCode = -1;
+
+        OpenNode(int id, int attributeIndex, double threshold) {
+            this.id = id;
+            this.attributeIndex = attributeIndex;
+            this.threshold = threshold;
+        }
+
+        void addBranch(int code, int node) {
+            if (numBranches == codes.length) {
+                codes = Arrays.copyOf(codes, numBranches * 2);
+                nodes = Arrays.copyOf(nodes, numBranches * 2);
+            }
+            codes[numBranches] = code;
+            nodes[numBranches] = node;
+            numBranches++;
+            maxCode = Math.max(maxCode, code);
+        }
+    }
+}
@@ -4,23 +4,26 @@ import de.uni_trier.wi2.pki.Main;
 import de.uni_trier.wi2.pki.tree.DecisionTree;
 import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
 import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
+import de.uni_trier.wi2.pki.tree.RandomForest;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
 /**
- * Serializes the decision tree in form of an XML structure.
+ * Serializes the decision tree in form of an XML structure. The XML is streamed while the tree is traversed.
  */
 public class XMLWriter {
 
+    public static final String N_RANDOM_FOREST = "RandomForest";
     public static final String N_DECISION_TREE = "DecisionTree";
     public static final String N_NODE = "Node";
     public static final String N_IF = "IF";
@@ -29,6 +32,9 @@ public class XMLWriter {
     public static final String A_ATTRIBUTE = "attributeIndex";
     public static final String A_VALUE = "value";
     public static final String A_CLASS = "class";
+    public static final String A_THRESHOLD = "threshold";
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
 
     /**
      * Serialize decision tree to specified path.
@@ -44,48 +50,180 @@ public class XMLWriter {
     }
 
     /**
-     * Serialize decision tree to the specified output stream.
+     * Serialize decision tree pretty-printed to the specified output stream.
      *
      * @param outputStream the stream to write to.
      * @param decisionTree the tree to serialize.
+     * @throws IOException if something goes wrong.
      */
-    public static void writeXML(OutputStream outputStream, DecisionTree decisionTree) {
-        Document doc = new Document();
-        Element rootElement = new Element(N_DECISION_TREE);
-        doc.setRootElement(rootElement);
+    public static void writeXML(OutputStream outputStream, DecisionTree decisionTree) throws IOException {
+        writeXML(outputStream, decisionTree, true);
+    }
 
-        addNode(decisionTree, rootElement);
+    /**
+     * Serialize decision tree to the specified output stream. The elements are streamed during a depth-first traversal of the tree, so no
+     * document is built in memory.
+     *
+     * @param outputStream the stream to write to.
+     * @param decisionTree the tree to serialize.
+     * @param pretty       whether every element is written on a line of its own and indented by its depth.
+     * @throws IOException if something goes wrong.
+     */
+    public static void writeXML(OutputStream outputStream, DecisionTree decisionTree, boolean pretty) throws IOException {
+        try {
+            IndentingWriter writer = new IndentingWriter(outputStream, pretty);
+            writer.startElement(N_DECISION_TREE);
+            addNode(decisionTree.getRoot(), writer);
+            writer.endElement();
+            writer.finish();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
 
-        XMLOutputter xmlOutputter = new XMLOutputter();
-        xmlOutputter.setFormat(Format.getPrettyFormat());
+    /**
+     * Serialize random forest to specified path.
+     *
+     * @param path         the path to write to.
+     * @param randomForest the forest to serialize.
+     * @throws IOException if something goes wrong.
+     */
+    public static void writeXML(String path, RandomForest randomForest) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(Path.of(path))) {
+            writeXML(outputStream, randomForest);
+        }
+    }
+
+    /**
+     * Serialize random forest pretty-printed to the specified output stream.
+     *
+     * @param outputStream the stream to write to.
+     * @param randomForest the forest to serialize.
+     * @throws IOException if something goes wrong.
+     */
+    public static void writeXML(OutputStream outputStream, RandomForest randomForest) throws IOException {
+        writeXML(outputStream, randomForest, true);
+    }
+
+    /**
+     * Serialize random forest to the specified output stream. Every tree is written as a DecisionTree element in the same format as a single
+     * decision tree.
+     *
+     * @param outputStream the stream to write to.
+     * @param randomForest the forest to serialize.
+     * @param pretty       whether every element is written on a line of its own and indented by its depth.
+     * @throws IOException if something goes wrong.
+     */
+    public static void writeXML(OutputStream outputStream, RandomForest randomForest, boolean pretty) throws IOException {
         try {
-            xmlOutputter.output(doc, outputStream);
-        } catch (IOException ioe) {
-            System.out.println(ioe.getMessage());
+            IndentingWriter writer = new IndentingWriter(outputStream, pretty);
+            writer.startElement(N_RANDOM_FOREST);
+            for (DecisionTree decisionTree : randomForest.getTrees()) {
+                writer.startElement(N_DECISION_TREE);
+                addNode(decisionTree.getRoot(), writer);
+                writer.endElement();
+            }
+            writer.endElement();
+            writer.finish();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
         }
     }
 
     /**
-     * Recursively adds nodes to the tree by being called for every subtree.
+     * Recursively writes the nodes of the tree by being called for every subtree.
      *
-     * @param decTreeNode   the decision tree node representing a subtree.
-     * @param xmlParentElem the parent element in the XML to append to.
+     * @param decTreeNode the decision tree node representing a subtree.
+     * @param writer      the writer whose current element is the parent of the subtree.
+     * @throws XMLStreamException if the subtree cannot be written.
      */
-    private static void addNode(DecisionTreeNode decTreeNode, Element xmlParentElem) {
+    private static void addNode(DecisionTreeNode decTreeNode, IndentingWriter writer) throws XMLStreamException {
         if (decTreeNode instanceof DecisionTreeLeafNode) {
-            Element leafElem = new Element(N_LEAF_NODE);
-            leafElem.setAttribute(A_CLASS, ((DecisionTreeLeafNode) decTreeNode).getLabelClass());
-            xmlParentElem.addContent(leafElem);
+            writer.emptyElement(N_LEAF_NODE);
+            writer.attribute(A_CLASS, ((DecisionTreeLeafNode) decTreeNode).getLabelClass());
         } else {
-            Element nodeElem = new Element(N_NODE);
-            nodeElem.setAttribute(A_ATTRIBUTE, String.valueOf(Main.HEADER[decTreeNode.getAttributeIndex()]));
-            xmlParentElem.addContent(nodeElem);
+            writer.startElement(N_NODE);
+            writer.attribute(A_ATTRIBUTE, String.valueOf(Main.HEADER[decTreeNode.getAttributeIndex()]));
+            /* the IF values of a threshold split are "<= t" and "> t" */
+            if (decTreeNode.isThresholdSplit()) {
+                writer.attribute(A_THRESHOLD, String.valueOf(decTreeNode.getThreshold()));
+            }
 
             for (Map.Entry<String, DecisionTreeNode> entry : decTreeNode.getSplits().entrySet()) {
-                Element ifElem = new Element(N_IF);
-                ifElem.setAttribute(A_VALUE, entry.getKey());
-                nodeElem.addContent(ifElem);
-                addNode(entry.getValue(), ifElem);
+                writer.startElement(N_IF);
+                writer.attribute(A_VALUE, entry.getKey());
+                addNode(entry.getValue(), writer);
+                writer.endElement();
+            }
+            writer.endElement();
+        }
+    }
+
+    /**
+     * Writes elements to an XML stream and, if pretty-printing is enabled, puts every element on a line of its own that is indented by two
+     * spaces per level, the layout of the former JDOM pretty format.
+     */
+    private static class IndentingWriter {
+
+        private static final String LINE_SEPARATOR = "\r\n";
+        private static final int INDENT = 2;
+
+        private final XMLStreamWriter writer;
+        private final boolean pretty;
+        private int depth;
+
+        /**
+         * The line separator followed by the indentation of the deepest level so far, written in one call per line.
+         */
+        private char[] lineStart = (LINE_SEPARATOR + " ".repeat(16 * INDENT)).toCharArray();
+
+        IndentingWriter(OutputStream outputStream, boolean pretty) throws XMLStreamException {
+            /* an OutputStreamWriter buffers the encoded bytes, the writer created for a plain byte stream would pass on every byte on its own */
+            this.writer = OUTPUT_FACTORY.createXMLStreamWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            this.pretty = pretty;
+            writer.writeStartDocument("UTF-8", "1.0");
+        }
+
+        void startElement(String name) throws XMLStreamException {
+            newLine();
+            writer.writeStartElement(name);
+            depth++;
+        }
+
+        void emptyElement(String name) throws XMLStreamException {
+            newLine();
+            writer.writeEmptyElement(name);
+        }
+
+        void attribute(String name, String value) throws XMLStreamException {
+            writer.writeAttribute(name, value);
+        }
+
+        void endElement() throws XMLStreamException {
+            depth--;
+            newLine();
+            writer.writeEndElement();
+        }
+
+        /**
+         * Ends the document and flushes the stream, which stays open.
+         */
+        void finish() throws XMLStreamException {
+            if (pretty) {
+                writer.writeCharacters(LINE_SEPARATOR);
+            }
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        }
+
+        private void newLine() throws XMLStreamException {
+            if (pretty) {
+                int length = LINE_SEPARATOR.length() + depth * INDENT;
+                if (length > lineStart.length) {
+                    lineStart = (LINE_SEPARATOR + " ".repeat(2 * depth * INDENT)).toCharArray();
+                }
+                writer.writeCharacters(lineStart, 0, length);
             }
         }
     }
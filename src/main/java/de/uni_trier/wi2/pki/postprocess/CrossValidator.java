@@ -1,6 +1,8 @@
 package de.uni_trier.wi2.pki.postprocess;
 
+import de.uni_trier.wi2.pki.data.Dataset;
 import de.uni_trier.wi2.pki.io.XMLWriter;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
 import de.uni_trier.wi2.pki.tree.DecisionTree;
 import de.uni_trier.wi2.pki.util.ID3Utils;
 
@@ -63,4 +65,73 @@ public class CrossValidator {
         System.out.printf("Classification accuracy of best model: %.2f%%\n", bestAccuracy * 100);
         return bestModel;
     }
-}
\ No newline at end of file
+
+    /**
+     * Performs a cross-validation with the specified encoded dataset and the function to train the model.
+     *
+     * @param dataset        the complete encoded dataset to use.
+     * @param labelAttribute the label attribute.
+     * @param trainFunction  the function to train the model with.
+     * @param numFolds       the number of data folds.
+     */
+    public static DecisionTree performCrossValidation(Dataset dataset, int labelAttribute, BiFunction<Dataset, Integer, DecisionTree> trainFunction,
+                                                      int numFolds) {
+        return performCrossValidation(dataset, labelAttribute, trainFunction, numFolds, CompiledTree.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Performs a cross-validation with the specified encoded dataset and the function to train the model. Each validation fold is predicted as
+     * one batch.
+     *
+     * @param dataset        the complete encoded dataset to use.
+     * @param labelAttribute the label attribute.
+     * @param trainFunction  the function to train the model with.
+     * @param numFolds       the number of data folds.
+     * @param chunkSize      the number of validation examples predicted by one task.
+     */
+    public static DecisionTree performCrossValidation(Dataset dataset, int labelAttribute, BiFunction<Dataset, Integer, DecisionTree> trainFunction,
+                                                      int numFolds, int chunkSize) {
+        List<Integer> order = new ArrayList<>();
+        int foldSize = dataset.size() / numFolds;
+        DecisionTree bestModel = null;
+        double bestAccuracy = 0.0;
+
+        /* Logging */
+        System.out.println("Performing cross-validation with " + numFolds + " folds...");
+
+        /* Shuffle the row order of the dataset */
+        for (int row = 0; row < dataset.size(); row++) {
+            order.add(row);
+        }
+        Collections.shuffle(order);
+
+        /* Split the dataset into training and validation sets */
+        for (int i = 0; i < numFolds; i++) {
+            int[] trainingRows = new int[dataset.size() - foldSize];
+            int[] validationRows = new int[foldSize];
+            int trainingSize = 0;
+            int validationSize = 0;
+
+            for (int j = 0; j < dataset.size(); j++) {
+                if (j >= i * foldSize && j < (i + 1) * foldSize) {
+                    validationRows[validationSize++] = order.get(j);
+                } else {
+                    trainingRows[trainingSize++] = order.get(j);
+                }
+            }
+
+            /* Train the model and evaluate it */
+            DecisionTree model = trainFunction.apply(dataset.subset(trainingRows), labelAttribute);
+            double accuracy = ID3Utils.getClassificationAccuracy(model, dataset.subset(validationRows), labelAttribute, chunkSize);
+
+            if (accuracy > bestAccuracy) {
+                bestAccuracy = accuracy;
+                bestModel = model;
+            }
+        }
+
+        System.out.println("Cross-validation finished.");
+        System.out.printf("Classification accuracy of best model: %.2f%%\n", bestAccuracy * 100);
+        return bestModel;
+    }
+}
@@ -1,27 +1,27 @@
 package de.uni_trier.wi2.pki.postprocess;
 
+import de.uni_trier.wi2.pki.data.Dataset;
 import de.uni_trier.wi2.pki.tree.DecisionTree;
 import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
 import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
 import de.uni_trier.wi2.pki.util.ID3Utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Prunes a trained decision tree in a post-pruning way.
+ * <p>
+ * The validation examples are routed down the tree once. Replacing a node by a leaf only changes the predictions of the examples that reach
+ * the node, so the accuracy of the whole tree does not decrease exactly if the leaf classifies at least as many of these examples correctly
+ * as the subtree. The nodes are therefore scored bottom-up on their own examples, which takes a single pass over the tree instead of one
+ * evaluation of the whole tree per node.
  */
 public class ReducedErrorPruner {
-    /**
-     * The starting classification accuracy.
-     */
-    private double classificationAccuracy;
-
-    /**
-     * The decision tree along the pruning procedure.
-     */
-    private DecisionTree decisionTree;
 
     /**
      * Prunes the given decision tree in-place.
@@ -31,101 +31,288 @@ public class ReducedErrorPruner {
      * @param labelAttributeId    The label attribute.
      */
     public void prune(DecisionTree trainedDecisionTree, Collection<Object[]> validationExamples, int labelAttributeId) {
-        this.decisionTree = trainedDecisionTree;
         pruneTree(trainedDecisionTree, validationExamples, labelAttributeId);
     }
 
     /**
-     * Recursive method for pruning the tree along certain paths.
+     * Prunes the given decision tree in-place using encoded validation examples.
+     *
+     * @param trainedDecisionTree The decision tree to prune.
+     * @param validationExamples  the encoded examples to validate the pruning with.
+     * @param labelAttributeId    The label attribute.
+     */
+    public void prune(DecisionTree trainedDecisionTree, Dataset validationExamples, int labelAttributeId) {
+        pruneTree(trainedDecisionTree, validationExamples, labelAttributeId);
+    }
+
+    /**
+     * Prunes the subtree of the given node. The node itself is replaced by a leaf if it has a parent and the leaf is at least as accurate.
      *
      * @param currentDecisionTreeNode the current tree node to start from.
      * @param validationExamples      the validation examples.
      * @param labelAttributeIndex     the label attribute index
      */
-
     public void pruneTree(DecisionTreeNode currentDecisionTreeNode, Collection<Object[]> validationExamples, int labelAttributeIndex) {
         if (currentDecisionTreeNode == null || currentDecisionTreeNode.isLeafNode()) {
             return;
         }
+        List<Object[]> examples = new ArrayList<>(validationExamples);
+        pruneNode(currentDecisionTreeNode, allRows(examples.size()), 0, examples.size(), new ExampleRows(examples, labelAttributeIndex),
+                labelAttributeIndex);
+    }
 
-        // Collect child nodes into a temporary list to avoid concurrent modification
-        List<DecisionTreeNode> childNodesSet = new ArrayList<>(currentDecisionTreeNode.getSplits().values());
-
-        // Recursively prune each child node
-        for (DecisionTreeNode childNode : childNodesSet) {
-            pruneTree(childNode, validationExamples, labelAttributeIndex);
+    /**
+     * Prunes the subtree of the given node using encoded validation examples. The node itself is replaced by a leaf if it has a parent and
+     * the leaf is at least as accurate.
+     *
+     * @param currentDecisionTreeNode the current tree node to start from.
+     * @param validationExamples      the encoded validation examples.
+     * @param labelAttributeIndex     the label attribute index
+     */
+    public void pruneTree(DecisionTreeNode currentDecisionTreeNode, Dataset validationExamples, int labelAttributeIndex) {
+        if (currentDecisionTreeNode == null || currentDecisionTreeNode.isLeafNode()) {
+            return;
         }
+        pruneNode(currentDecisionTreeNode, allRows(validationExamples.size()), 0, validationExamples.size(),
+                new EncodedRows(validationExamples, labelAttributeIndex), labelAttributeIndex);
+    }
 
-        // Attempt to prune this node
-        classificationAccuracy = ID3Utils.getClassificationAccuracy(decisionTree, validationExamples, labelAttributeIndex);
+    /**
+     * Prunes a subtree bottom-up. The rows in rows[from, to) are the validation examples that reach the node; they are reordered so that the
+     * rows of every child form a contiguous range.
+     *
+     * @param node                the root of the subtree.
+     * @param rows                the row indices of the validation examples.
+     * @param from                the first position of the rows of the node.
+     * @param to                  the position after the last row of the node.
+     * @param validation          the validation examples.
+     * @param labelAttributeIndex the label attribute index
+     * @return the number of rows that the pruned subtree classifies correctly.
+     */
+    private int pruneNode(DecisionTreeNode node, int[] rows, int from, int to, ValidationRows validation, int labelAttributeIndex) {
+        if (node.isLeafNode()) {
+            return validation.countLabel(((DecisionTreeLeafNode) node).getLabelClass(), rows, from, to);
+        }
 
-        String dominantClass = ID3Utils.getDominantClass(currentDecisionTreeNode.getElements(), labelAttributeIndex);
-        DecisionTreeLeafNode prunedLeafNode = new DecisionTreeLeafNode(currentDecisionTreeNode.getParent(), currentDecisionTreeNode.getElements(), dominantClass);
+        /* group the rows by child; rows without a branch are not classified and stay at the end */
+        List<DecisionTreeNode> children = new ArrayList<>(node.getSplits().values());
+        int[] childOfRow = validation.route(node, children, rows, from, to);
+        int[] starts = new int[children.size() + 1];
+        for (int child : childOfRow) {
+            if (child >= 0) {
+                starts[child + 1]++;
+            }
+        }
+        for (int child = 0; child < children.size(); child++) {
+            starts[child + 1] += starts[child];
+        }
+        int[] nodeRows = Arrays.copyOfRange(rows, from, to);
+        int[] next = Arrays.copyOf(starts, children.size());
+        int unrouted = to;
+        for (int i = nodeRows.length - 1; i >= 0; i--) {
+            if (childOfRow[i] < 0) {
+                rows[--unrouted] = nodeRows[i];
+            }
+        }
+        for (int i = 0; i < nodeRows.length; i++) {
+            if (childOfRow[i] >= 0) {
+                rows[from + next[childOfRow[i]]++] = nodeRows[i];
+            }
+        }
 
-        double prunedAccuracy = getTreeAccuracyAfterPruning(currentDecisionTreeNode, prunedLeafNode, validationExamples, labelAttributeIndex);
+        int correct = 0;
+        for (int child = 0; child < children.size(); child++) {
+            correct += pruneNode(children.get(child), rows, from + starts[child], from + starts[child + 1], validation, labelAttributeIndex);
+        }
 
-        if (prunedAccuracy >= classificationAccuracy) {
-            if (currentDecisionTreeNode.getParent() != null) {
-                currentDecisionTreeNode.getParent().addSplit(currentDecisionTreeNode.getAttributeIndex() + "", prunedLeafNode);
-            } /*else {
-                System.err.println("***********Warning: Attempted to prune root node.");
+        if (node.getParent() == null) {
+            return correct;
+        }
+        String dominantClass = getDominantClass(node, labelAttributeIndex);
+        int prunedCorrect = validation.countLabel(dominantClass, rows, from, to);
+        if (prunedCorrect >= correct) {
+            replaceChild(node, new DecisionTreeLeafNode(node.getParent(), node.getClassHistogram(), node.getElements(), dominantClass));
+            return prunedCorrect;
+        }
+        return correct;
+    }
 
+    /**
+     * Replaces a node by a leaf under the split key that leads from its parent to the node. The root node has no parent and is never
+     * replaced.
+     *
+     * @param node the node to replace.
+     * @param leaf the leaf that takes the place of the node.
+     */
+    private void replaceChild(DecisionTreeNode node, DecisionTreeLeafNode leaf) {
+        DecisionTreeNode parent = node.getParent();
+        if (parent == null) {
+            return;
+        }
+        for (Map.Entry<String, DecisionTreeNode> split : parent.getSplits().entrySet()) {
+            if (split.getValue() == node) {
+                split.setValue(leaf);
+                return;
             }
-            */
         }
+        throw new IllegalStateException("The node is not a child of its parent.");
+    }
+
+    /**
+     * Determines the dominant class of a node. Nodes with a class histogram answer in constant time, the elements are only counted for nodes
+     * that were created without one.
+     *
+     * @param node                the node to evaluate.
+     * @param labelAttributeIndex the label attribute index
+     * @return the class name of the dominant class.
+     */
+    private String getDominantClass(DecisionTreeNode node, int labelAttributeIndex) {
+        if (node.getClassHistogram() != null) {
+            return node.getClassHistogram().getMajorityLabel();
+        }
+        return ID3Utils.getDominantClass(node.getElements(), labelAttributeIndex);
     }
 
+    private static int[] allRows(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * The validation examples as seen by the pruner.
+     */
+    private interface ValidationRows {
 
-    private double getTreeAccuracy(DecisionTreeNode node, Collection<Object[]> validationExamples, int labelAttributeId) {
-        int correctPredictions = 0;
+        /**
+         * Finds the child of a node that each row is routed to.
+         *
+         * @param node     the inner node.
+         * @param children the children of the node.
+         * @param rows     the row indices.
+         * @param from     the first position of the rows of the node.
+         * @param to       the position after the last row of the node.
+         * @return the index of the child in children for every row from position from on, -1 if the node has no branch for the row.
+         */
+        int[] route(DecisionTreeNode node, List<DecisionTreeNode> children, int[] rows, int from, int to);
 
-        for (Object[] example : validationExamples) {
-            DecisionTreeNode currentNode = node;
+        /**
+         * Counts the rows of a class.
+         *
+         * @param label the class label.
+         * @param rows  the row indices.
+         * @param from  the first position to count.
+         * @param to    the position after the last row to count.
+         * @return the number of rows whose label is the given class.
+         */
+        int countLabel(String label, int[] rows, int from, int to);
+    }
 
-            // Traverse the tree for this example
-            while (currentNode != null && !currentNode.isLeafNode()) {
-                String attributeValue = example[currentNode.getAttributeIndex()].toString();
+    /**
+     * Validation examples given as attribute arrays.
+     */
+    private static class ExampleRows implements ValidationRows {
 
-                // Handle case where no split exists for the attribute value
-                if (!currentNode.getSplits().containsKey(attributeValue)) {
-                    System.err.println("----Warning: Missing split for attribute value: " + attributeValue);
-                    currentNode = null; // Break out of the loop
-                    break;
-                }
+        private final List<Object[]> examples;
+        private final int labelIndex;
 
-                currentNode = currentNode.getSplits().get(attributeValue);
-            }
+        ExampleRows(List<Object[]> examples, int labelIndex) {
+            this.examples = examples;
+            this.labelIndex = labelIndex;
+        }
 
-            // If we successfully reached a leaf node, check the prediction
-            if (currentNode != null && currentNode.isLeafNode()) {
-                String predictedLabel = currentNode.getElements().iterator().next()[labelAttributeId].toString();
-                String actualLabel = example[labelAttributeId].toString();
-                if (predictedLabel.equals(actualLabel)) {
-                    correctPredictions++;
+        @Override
+        public int[] route(DecisionTreeNode node, List<DecisionTreeNode> children, int[] rows, int from, int to) {
+            Map<DecisionTreeNode, Integer> childIndices = new IdentityHashMap<>();
+            for (int child = 0; child < children.size(); child++) {
+                childIndices.put(children.get(child), child);
+            }
+            int[] childOfRow = new int[to - from];
+            for (int i = from; i < to; i++) {
+                Object value = examples.get(rows[i])[node.getAttributeIndex()];
+                DecisionTreeNode child;
+                if (node.isThresholdSplit()) {
+                    try {
+                        child = node.getThresholdChild(Dataset.toNumber(value));
+                    } catch (NumberFormatException e) {
+                        child = null;
+                    }
+                } else {
+                    child = node.getSplits().get(value.toString());
                 }
-            } else {
-                System.err.println("Warning: Could not classify example due to incomplete tree traversal.");
+                childOfRow[i - from] = child == null ? -1 : childIndices.get(child);
             }
+            return childOfRow;
         }
 
-        return (double) correctPredictions / validationExamples.size();
+        @Override
+        public int countLabel(String label, int[] rows, int from, int to) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (label.equals(examples.get(rows[i])[labelIndex].toString())) {
+                    count++;
+                }
+            }
+            return count;
+        }
     }
 
-
-
     /**
-     * Calculate the accuracy of the tree if we prune the given node.
-     * This will simulate the pruning by checking how the accuracy changes with the pruned leaf node.
+     * Validation examples given as an encoded dataset. Split values and labels are resolved to codes once per node, the rows are compared by
+     * their codes.
      */
-    private double getTreeAccuracyAfterPruning(DecisionTreeNode node, DecisionTreeLeafNode prunedLeafNode, Collection<Object[]> validationExamples, int labelAttributeId) {
-        int correctPredictions = 0;
-        for (Object[] example : validationExamples) {
-            String predictedLabel = prunedLeafNode.getElements().iterator().next()[labelAttributeId].toString();
-            String actualLabel = example[labelAttributeId].toString();
-            if (predictedLabel.equals(actualLabel)) {
-                correctPredictions++;
+    private static class EncodedRows implements ValidationRows {
+
+        private final Dataset dataset;
+        private final int labelIndex;
+
+        EncodedRows(Dataset dataset, int labelIndex) {
+            this.dataset = dataset;
+            this.labelIndex = labelIndex;
+        }
+
+        @Override
+        public int[] route(DecisionTreeNode node, List<DecisionTreeNode> children, int[] rows, int from, int to) {
+            int attributeIndex = node.getAttributeIndex();
+            int[] childOfRow = new int[to - from];
+            if (node.isThresholdSplit()) {
+                int lessOrEqual = children.indexOf(node.getSplits().get(DecisionTreeNode.lessOrEqualKey(node.getThreshold())));
+                int greater = children.indexOf(node.getSplits().get(DecisionTreeNode.greaterKey(node.getThreshold())));
+                for (int i = from; i < to; i++) {
+                    double value = dataset.getValue(rows[i], attributeIndex);
+                    childOfRow[i - from] = value <= node.getThreshold() ? lessOrEqual : Double.isNaN(value) ? -1 : greater;
+                }
+                return childOfRow;
+            }
+
+            int[] childOfCode = new int[dataset.getCardinality(attributeIndex)];
+            Arrays.fill(childOfCode, -1);
+            for (Map.Entry<String, DecisionTreeNode> split : node.getSplits().entrySet()) {
+                int code = dataset.getSymbolTable(attributeIndex).getCode(split.getKey());
+                if (code >= 0) {
+                    childOfCode[code] = children.indexOf(split.getValue());
+                }
+            }
+            int[] column = dataset.getColumn(attributeIndex);
+            for (int i = from; i < to; i++) {
+                childOfRow[i - from] = childOfCode[column[rows[i]]];
+            }
+            return childOfRow;
+        }
+
+        @Override
+        public int countLabel(String label, int[] rows, int from, int to) {
+            int labelId = dataset.getSymbolTable(labelIndex).getCode(label);
+            int[] column = dataset.getColumn(labelIndex);
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (column[rows[i]] == labelId) {
+                    count++;
+                }
             }
+            return count;
         }
-        return (double) correctPredictions / validationExamples.size();
     }
-}
\ No newline at end of file
+}
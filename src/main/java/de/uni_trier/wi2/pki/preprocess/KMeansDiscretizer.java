@@ -2,18 +2,44 @@ package de.uni_trier.wi2.pki.preprocess;
 
 import de.uni_trier.wi2.pki.Main;
 
-import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.DoubleStream;
-import java.util.stream.IntStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static de.uni_trier.wi2.pki.Main.id3Settings;
 
 /**
  * Class that holds logic for discretizing values using K-means clustering.
+ * <p>
+ * The centroids are initialized with k-means++ from a seeded random generator, so the bins are reproducible. Every Lloyd iteration makes a
+ * single pass over the values that assigns each value to its nearest centroid and accumulates the sum, the size and the squared error of
+ * every cluster at the same time. All working arrays are allocated once per attribute.
  */
 public class KMeansDiscretizer extends BinningDiscretizer {
 
+    /**
+     * The seed used by the default constructor.
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    private final long seed;
+
+    /**
+     * Constructor for a discretizer with the default seed.
+     */
+    public KMeansDiscretizer() {
+        this(DEFAULT_SEED);
+    }
+
+    /**
+     * Constructor for a discretizer.
+     *
+     * @param seed The seed for the k-means++ initialization; equal seeds give equal bins for equal data.
+     */
+    public KMeansDiscretizer(long seed) {
+        this.seed = seed;
+    }
+
     /**
      * Discretizes a collection of examples according to the number of bins (clusters) and the respective attribute ID.
      *
@@ -23,36 +49,38 @@ public class KMeansDiscretizer extends BinningDiscretizer {
      * @return the list of discretized examples.
      */
     public List<Object[]> discretize(int numberOfBins, List<Object[]> examples, int attributeId) {
-        ArrayList<Object[]> examplesList = new ArrayList<>(examples);
-        double[] values = parseNumericValues(examplesList, attributeId);
-        double[] centroids = initializeCentroids(values, numberOfBins);
+        if (examples.isEmpty()) {
+            return examples;
+        }
+        double[] values = parseNumericValues(examples, attributeId);
+        double[] centroids = initializeCentroids(values, numberOfBins, new Random(seed));
 
         int[] clusters = runKMeansClustering(values, centroids, numberOfBins);
 
-        String [] binNames = createBinNames(numberOfBins, values, clusters, attributeId);
+        String[] binNames = createBinNames(numberOfBins, values, clusters, attributeId);
 
         printBinNames(binNames);
 
-        return assignBinNamesToExamples(examplesList, clusters, binNames, attributeId);
+        return assignBinNamesToExamples(examples, clusters, binNames, attributeId);
     }
 
     /**
-     * Assigns the bin names to the examples.
+     * Assigns the bin names to the examples. The cluster of an example is found by its index, the examples are modified in place.
      *
-     * @param examples The examples to assign the bin names to.
-     * @param clusters The cluster assignments.
-     * @param binNames The bin names.
+     * @param examples    The examples to assign the bin names to.
+     * @param clusters    The cluster assignments, indexed like the examples.
+     * @param binNames    The bin names.
      * @param attributeId The ID of the attribute to assign the bin names to.
      * @return The examples with the bin names assigned.
      */
     private List<Object[]> assignBinNamesToExamples(List<Object[]> examples, int[] clusters, String[] binNames, int attributeId) {
-        return examples.stream().peek(e -> {
-            int clusterIndex = clusters[examples.indexOf(e)];
-            e[attributeId] = binNames[clusterIndex];
-        }).toList();
+        int index = 0;
+        for (Object[] example : examples) {
+            example[attributeId] = binNames[clusters[index++]];
+        }
+        return examples;
     }
 
-
     /**
      * Parses the numeric values from the examples.
      *
@@ -61,79 +89,72 @@ public class KMeansDiscretizer extends BinningDiscretizer {
      * @return An array of parsed numeric values.
      */
     private double[] parseNumericValues(List<Object[]> examples, int attributeId) {
+        double[] values = new double[examples.size()];
+        int index = 0;
         try {
-            return examples.stream()
-                    .mapToDouble(e -> Double.parseDouble((String) e[attributeId]))
-                    .toArray();
+            for (Object[] example : examples) {
+                values[index++] = Double.parseDouble(example[attributeId].toString());
+            }
         } catch (NumberFormatException nfe) {
             throw new IllegalArgumentException("Attribute must be numeric! " + nfe.getMessage());
         }
+        return values;
     }
 
     /**
-     * Assigns each value to the nearest centroid.
+     * Runs Lloyd iterations until the quality changes by less than epsilon or no value changes its cluster.
      *
-     * @param values    The values to cluster.
-     * @param centroids The current centroids.
+     * @param values       The values to cluster.
+     * @param centroids    The initial centroids, updated in place.
+     * @param numberOfBins The number of clusters.
      * @return An array of cluster assignments.
      */
     private int[] runKMeansClustering(double[] values, double[] centroids, int numberOfBins) {
         int[] clusters = new int[values.length];
-        double qualityOld = 0;
+        Arrays.fill(clusters, -1);
+        double[] sums = new double[numberOfBins];
+        int[] counts = new int[numberOfBins];
+        double qualityOld;
         double qualityNew = Double.MAX_VALUE;
         final double epsilon = id3Settings.getEpsilon();
 
-        while (Math.abs(qualityOld - qualityNew) >= epsilon) {
-            clusters = assignClusters(values, centroids);
-            centroids = recalculateCentroids(values, clusters, numberOfBins);
+        boolean changed = true;
+        while (changed) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            changed = false;
+            double quality = 0;
+
+            /* one pass assigns every value and accumulates the statistics of its cluster */
+            for (int i = 0; i < values.length; i++) {
+                int cluster = findNearestCentroid(values[i], centroids);
+                if (clusters[i] != cluster) {
+                    clusters[i] = cluster;
+                    changed = true;
+                }
+                double distance = values[i] - centroids[cluster];
+                quality += distance * distance;
+                sums[cluster] += values[i];
+                counts[cluster]++;
+            }
+
+            /* an empty cluster keeps its centroid */
+            for (int cluster = 0; cluster < numberOfBins; cluster++) {
+                if (counts[cluster] > 0) {
+                    centroids[cluster] = sums[cluster] / counts[cluster];
+                }
+            }
 
             qualityOld = qualityNew;
-            qualityNew = calculateQuality(values, centroids, clusters);
+            qualityNew = quality;
+            if (Math.abs(qualityOld - qualityNew) < epsilon) {
+                break;
+            }
         }
 
         return clusters;
     }
 
-    /**
-     * Calculates the mean of all values assigned to a cluster.
-     *
-     * @param values The original values.
-     * @param clusters The current cluster assignments.
-     * @param clusters The index of the cluster to calculate.
-     * @return The mean of all values assigned to the given cluster.
-     */
-    private double[] recalculateCentroids(double[] values, int[] clusters, int numberOfBins) {
-        return IntStream.range(0, numberOfBins)
-                .mapToDouble(cluster -> calculateClusterMean(values, clusters, cluster))
-                .toArray();
-    }
-
-    /**
-     * Calculates the mean of all values assigned to a cluster.
-     *
-     * @param values The original values.
-     * @param clusters The current cluster assignments.
-     * @param clusterIndex The index of the cluster to calculate.
-     * @return The mean of all values assigned to the given cluster.
-     */
-    private double calculateClusterMean(double[] values, int[] clusters, int clusterIndex) {
-        double clusterSum = calculateClusterSum(values, clusters, clusterIndex);
-        long clusterSize = Arrays.stream(clusters).filter(c -> c == clusterIndex).count();
-        return clusterSize == 0 ? 0 : clusterSum / clusterSize;
-    }
-
-    /**
-     * Assigns each value to the nearest centroid.
-     *
-     * @param values The values to cluster.
-     * @param centroids The current centroids.
-     * @return An array of cluster assignments.
-     */
-    private int[] assignClusters(double[] values, double[] centroids) {
-        return Arrays.stream(values).mapToInt(value -> findNearestCentroid(value, centroids))
-                .toArray();
-    }
-
     /**
      * Creates bin names based on the cluster assignments.
      *
@@ -151,24 +172,59 @@ public class KMeansDiscretizer extends BinningDiscretizer {
 
         updateMinMaxValues(values, clusters, minValues, maxValues);
 
-        return IntStream.range(0, numberOfBins)
-                .mapToObj(i -> formatBinName(Main.HEADER[attributeId], minValues[i], maxValues[i]))
-                .toArray(String[]::new);
+        String[] binNames = new String[numberOfBins];
+        for (int i = 0; i < numberOfBins; i++) {
+            binNames[i] = formatBinName(Main.HEADER[attributeId], minValues[i], maxValues[i]);
+        }
+        return binNames;
     }
 
     /**
-     * Initializes the centroids for the K-means algorithm.
+     * Initializes the centroids with k-means++: the first centroid is a random value, every further centroid is drawn with a probability
+     * proportional to the squared distance of a value to its nearest centroid so far.
      *
-     * @param values The values to be clustered.
+     * @param values       The values to be clustered.
      * @param numberOfBins The number of clusters (centroids).
+     * @param random       The random generator to draw from.
      * @return An array of initial centroids.
      */
-    private double[] initializeCentroids(double[] values, int numberOfBins) {
-        List<Double> shuffledValues = DoubleStream.of(values).boxed().collect(Collectors.toList());
-        Collections.shuffle(shuffledValues);
-        return IntStream.range(0, numberOfBins)
-                .mapToDouble(shuffledValues::get)
-                .toArray();
+    private double[] initializeCentroids(double[] values, int numberOfBins, Random random) {
+        double[] centroids = new double[numberOfBins];
+        double[] distances = new double[values.length];
+        centroids[0] = values[random.nextInt(values.length)];
+
+        double total = 0;
+        for (int i = 0; i < values.length; i++) {
+            double distance = values[i] - centroids[0];
+            distances[i] = distance * distance;
+            total += distances[i];
+        }
+
+        for (int cluster = 1; cluster < numberOfBins; cluster++) {
+            int chosen = values.length - 1;
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < values.length; i++) {
+                    target -= distances[i];
+                    if (target < 0) {
+                        chosen = i;
+                        break;
+                    }
+                }
+            } else {
+                /* fewer distinct values than clusters, the remaining clusters stay empty */
+                chosen = random.nextInt(values.length);
+            }
+            centroids[cluster] = values[chosen];
+
+            total = 0;
+            for (int i = 0; i < values.length; i++) {
+                double distance = values[i] - centroids[cluster];
+                distances[i] = Math.min(distances[i], distance * distance);
+                total += distances[i];
+            }
+        }
+        return centroids;
     }
 
     /**
@@ -195,64 +251,6 @@ public class KMeansDiscretizer extends BinningDiscretizer {
         return index;
     }
 
-    /**
-     * Calculates the quality of the current clustering.
-     *
-     * @param values             The values to cluster.
-     * @param centroids          The current centroids.
-     * @param clusters           The current cluster assignments.
-     * @return The quality of the clustering.
-     */
-    private double calculateQuality(double[] values, double[] centroids, int[] clusters) {
-        double quality = 0;
-
-        for (int i = 0; i < centroids.length; i++) {
-            quality += calculateDistanceSumToCentroid(values, centroids, clusters, i);
-        }
-
-        return quality;
-    }
-
-    /**
-     * Calculates the sum of all values assigned to a cluster.
-     *
-     * @param values       The original values.
-     * @param clusters     The current cluster assignments.
-     * @param clusterIndex The index of the cluster to calculate.
-     * @return The sum of all values assigned to the given cluster.
-     */
-    private double calculateClusterSum(double[] values, int[] clusters, int clusterIndex) {
-        /* create a int range for all values */
-        return IntStream.range(0, values.length)
-                /* filter for examples assigned to clusterIndex */
-                .filter(c -> clusters[c] == clusterIndex)
-                /* extract and sum the values from value array */
-                .mapToDouble(v -> values[v])
-                .sum();
-    }
-
-    /**
-     * Calculates the sum of all squared distances of values assigned to a cluster to the centroid of that cluster.
-     *
-     * @param values       The original values.
-     * @param centroids    The current centroids.
-     * @param clusters     The current cluster assignments.
-     * @param clusterIndex The index of the cluster to calculate.
-     * @return The sum of all squared distances of values assigned to the given cluster to the centroid of that cluster.
-     */
-    private double calculateDistanceSumToCentroid (double[] values, double[] centroids, int[] clusters, int clusterIndex) {
-
-        /* create a int range for all values */
-        return IntStream.range(0, values.length)
-                /* filter for examples assigned to clusterIndex */
-                .filter(c -> clusters[c] == clusterIndex)
-                /* calculate the distance of each value to the centroid */
-                .mapToDouble(v -> Math.abs(values[v] - centroids[clusterIndex]))
-                .map(d -> Math.pow(d, 2))
-                /* sum up all distances */
-                .sum();
-    }
-
     /**
      * Updates the min and max values for each cluster
      *
@@ -262,12 +260,12 @@ public class KMeansDiscretizer extends BinningDiscretizer {
      * @param maxValues The current maximum values for each cluster
      */
     private void updateMinMaxValues(double[] values, int[] clusters, double[] minValues, double[] maxValues) {
-        IntStream.range(0, values.length).forEach(i -> {
+        for (int i = 0; i < values.length; i++) {
             int cluster = clusters[i];
             double value = values[i];
             minValues[cluster] = Math.min(minValues[cluster], value);
             maxValues[cluster] = Math.max(maxValues[cluster], value);
-        });
+        }
     }
 
     /**
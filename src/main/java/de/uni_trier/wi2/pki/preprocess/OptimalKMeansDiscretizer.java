@@ -0,0 +1,216 @@
+package de.uni_trier.wi2.pki.preprocess;
+
+import de.uni_trier.wi2.pki.Main;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that holds logic for discretizing values using an optimal one-dimensional K-means clustering.
+ * <p>
+ * In one dimension every optimal cluster is a contiguous range of the sorted values, so the clustering with the minimal sum of squared
+ * distances can be computed exactly by dynamic programming instead of Lloyd iterations. The values are sorted once and equal values are
+ * merged into weighted points, then the costs of all ranges are derived from prefix sums. Because the best start of the last cluster grows
+ * monotonically with the end of the range, every row of the dynamic program is filled by divide and conquer in O(n log n), which makes
+ * O(k n log n) in total. The result does not depend on any random initialization, so the bins are the same in every run.
+ */
+public class OptimalKMeansDiscretizer extends BinningDiscretizer {
+
+    /**
+     * Discretizes a collection of examples according to the number of bins (clusters) and the respective attribute ID. If the attribute has
+     * fewer distinct values than bins, every distinct value gets a bin of its own.
+     *
+     * @param numberOfBins Specifies the number of numeric clusters that the data will be split up in.
+     * @param examples     The list of examples to discretize.
+     * @param attributeId  The ID of the attribute to discretize.
+     * @return the list of discretized examples.
+     */
+    public List<Object[]> discretize(int numberOfBins, List<Object[]> examples, int attributeId) {
+        if (examples.isEmpty()) {
+            return examples;
+        }
+        double[] values = parseNumericValues(examples, attributeId);
+
+        /* sort once and merge equal values, so equal values always end up in the same bin */
+        double[] points = values.clone();
+        Arrays.sort(points);
+        int[] weights = new int[points.length];
+        int numPoints = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (numPoints == 0 || points[i] != points[numPoints - 1]) {
+                points[numPoints++] = points[i];
+            }
+            weights[numPoints - 1]++;
+        }
+
+        int numberOfClusters = Math.min(numberOfBins, numPoints);
+        int[] clusterStarts = computeClusterStarts(points, weights, numPoints, numberOfClusters);
+
+        int[] clusterOfPoint = new int[numPoints];
+        String[] binNames = new String[numberOfClusters];
+        for (int cluster = 0; cluster < numberOfClusters; cluster++) {
+            int end = cluster + 1 < numberOfClusters ? clusterStarts[cluster + 1] : numPoints;
+            Arrays.fill(clusterOfPoint, clusterStarts[cluster], end, cluster);
+            binNames[cluster] = String.format("%s: [%s; %s]", Main.HEADER[attributeId], points[clusterStarts[cluster]], points[end - 1]);
+        }
+
+        printBinNames(binNames);
+
+        /* the examples are discretized in place, like by the other discretizers */
+        for (int i = 0; i < values.length; i++) {
+            int point = Arrays.binarySearch(points, 0, numPoints, values[i]);
+            examples.get(i)[attributeId] = binNames[clusterOfPoint[point]];
+        }
+        return examples;
+    }
+
+    /**
+     * Parses the numeric values from the examples.
+     *
+     * @param examples    The examples to parse.
+     * @param attributeId The ID of the attribute to parse.
+     * @return An array of parsed numeric values.
+     */
+    private double[] parseNumericValues(List<Object[]> examples, int attributeId) {
+        double[] values = new double[examples.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.parseDouble(examples.get(i)[attributeId].toString());
+            }
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Attribute must be numeric! " + nfe.getMessage());
+        }
+        return values;
+    }
+
+    /**
+     * Computes the optimal clustering of sorted, distinct weighted points.
+     *
+     * @param points           The distinct values in ascending order.
+     * @param weights          The number of occurrences of each point.
+     * @param numPoints        The number of points.
+     * @param numberOfClusters The number of clusters, at most the number of points.
+     * @return the index of the first point of every cluster.
+     */
+    private int[] computeClusterStarts(double[] points, int[] weights, int numPoints, int numberOfClusters) {
+        ClusterCosts costs = new ClusterCosts(points, weights, numPoints);
+
+        /* cost[j] holds the minimal cost of clustering the points 0..j into the clusters of the current row */
+        double[] cost = new double[numPoints];
+        for (int j = 0; j < numPoints; j++) {
+            cost[j] = costs.of(0, j);
+        }
+
+        /* starts[c][j] is the first point of cluster c in the optimal clustering of the points 0..j into c + 1 clusters */
+        int[][] starts = new int[numberOfClusters][];
+        for (int cluster = 1; cluster < numberOfClusters; cluster++) {
+            double[] nextCost = new double[numPoints];
+            Arrays.fill(nextCost, Double.POSITIVE_INFINITY);
+            starts[cluster] = new int[numPoints];
+            fillRow(costs, cost, nextCost, starts[cluster], cluster, numPoints - 1, cluster, numPoints - 1);
+            cost = nextCost;
+        }
+
+        int[] clusterStarts = new int[numberOfClusters];
+        int end = numPoints - 1;
+        for (int cluster = numberOfClusters - 1; cluster > 0; cluster--) {
+            clusterStarts[cluster] = starts[cluster][end];
+            end = clusterStarts[cluster] - 1;
+        }
+        return clusterStarts;
+    }
+
+    /**
+     * Fills the entries from to to of a row of the dynamic program. The optimal start of the last cluster for an end point lies between the
+     * optimal starts of any smaller and any larger end point, so the middle entry is solved first and bounds the search of both halves.
+     *
+     * @param costs    The costs of the point ranges.
+     * @param cost     The previous row, the minimal costs with one cluster less.
+     * @param nextCost The row to fill.
+     * @param start    Receives the optimal start of the last cluster for each end point.
+     * @param from     The first end point to fill.
+     * @param to       The last end point to fill.
+     * @param startMin The smallest start of the last cluster to consider.
+     * @param startMax The largest start of the last cluster to consider.
+     */
+    private void fillRow(ClusterCosts costs, double[] cost, double[] nextCost, int[] start, int from, int to, int startMin, int startMax) {
+        if (from > to) {
+            return;
+        }
+        int end = (from + to) >>> 1;
+        int bestStart = startMin;
+        double bestCost = Double.POSITIVE_INFINITY;
+
+        /* ties keep the smallest start, so the result is deterministic */
+        for (int first = startMin; first <= Math.min(end, startMax); first++) {
+            double candidate = cost[first - 1] + costs.of(first, end);
+            if (candidate < bestCost) {
+                bestCost = candidate;
+                bestStart = first;
+            }
+        }
+        nextCost[end] = bestCost;
+        start[end] = bestStart;
+
+        fillRow(costs, cost, nextCost, start, from, end - 1, startMin, bestStart);
+        fillRow(costs, cost, nextCost, start, end + 1, to, bestStart, startMax);
+    }
+
+    /**
+     * Prints the bin names
+     *
+     * @param binNames The bin names to print
+     */
+    private void printBinNames(String[] binNames) {
+        System.out.println("Final bins with their bounds:");
+        for (String binName : binNames) {
+            System.out.println(binName);
+        }
+        System.out.println();
+    }
+
+    /**
+     * The sum of squared distances to the mean of every range of points, answered in constant time from prefix sums.
+     */
+    private static class ClusterCosts {
+
+        private final double[] weightSums;
+        private final double[] valueSums;
+        private final double[] squareSums;
+
+        /**
+         * Builds the prefix sums. The values are shifted by their median first, which keeps the sums small and the differences of prefix
+         * sums accurate.
+         *
+         * @param points    The distinct values in ascending order.
+         * @param weights   The number of occurrences of each point.
+         * @param numPoints The number of points.
+         */
+        ClusterCosts(double[] points, int[] weights, int numPoints) {
+            double shift = points[numPoints / 2];
+            weightSums = new double[numPoints + 1];
+            valueSums = new double[numPoints + 1];
+            squareSums = new double[numPoints + 1];
+            for (int i = 0; i < numPoints; i++) {
+                double value = points[i] - shift;
+                weightSums[i + 1] = weightSums[i] + weights[i];
+                valueSums[i + 1] = valueSums[i] + weights[i] * value;
+                squareSums[i + 1] = squareSums[i] + weights[i] * value * value;
+            }
+        }
+
+        /**
+         * Returns the cost of a range of points as a single cluster.
+         *
+         * @param first The first point of the range.
+         * @param last  The last point of the range.
+         * @return the sum of squared distances of the points to their mean.
+         */
+        double of(int first, int last) {
+            double weight = weightSums[last + 1] - weightSums[first];
+            double sum = valueSums[last + 1] - valueSums[first];
+            double squares = squareSums[last + 1] - squareSums[first];
+            return Math.max(0, squares - sum * sum / weight);
+        }
+    }
+}
@@ -7,6 +7,8 @@ public class CSVSettings extends Settings {
     private String fileName;
     private int labelAttributeIndex;
     private String delimiter;
+    private boolean datasetCache;
+    private int rowLimit;
 
     /* Default settings */
     public CSVSettings() {
@@ -38,12 +40,30 @@ public class CSVSettings extends Settings {
         this.delimiter = delimiter;
     }
 
+    public boolean isDatasetCache() {
+        return datasetCache;
+    }
+
+    public void setDatasetCache(boolean datasetCache) {
+        this.datasetCache = datasetCache;
+    }
+
+    public int getRowLimit() {
+        return rowLimit;
+    }
+
+    public void setRowLimit(int rowLimit) {
+        this.rowLimit = rowLimit;
+    }
+
     @Override
     public void printDefaultSettings() {
         System.out.println("Default CSV settings:");
         System.out.println("- Filename: " + this.fileName);
         System.out.println("- Label Attribute Index: " + this.labelAttributeIndex);
         System.out.println("- Delimiter: " + this.delimiter);
+        System.out.println("- Cache Preprocessed Data: " + this.datasetCache);
+        System.out.println("- Row Limit: " + (this.rowLimit > 0 ? String.valueOf(this.rowLimit) : "all rows"));
     }
 
     @Override
@@ -51,5 +71,7 @@ public class CSVSettings extends Settings {
         this.fileName = "churn_data.csv";
         this.labelAttributeIndex = 9;
         this.delimiter = ";";
+        this.datasetCache = true;
+        this.rowLimit = 0;
     }
 }
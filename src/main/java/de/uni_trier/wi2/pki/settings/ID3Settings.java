@@ -1,8 +1,12 @@
 package de.uni_trier.wi2.pki.settings;
 
 import de.uni_trier.wi2.pki.preprocess.BinningDiscretizer;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
+import de.uni_trier.wi2.pki.util.EntropyUtils;
+import de.uni_trier.wi2.pki.util.SplitCriterion;
 
-import static de.uni_trier.wi2.pki.Main.K_MEANS;
+import static de.uni_trier.wi2.pki.Main.INFORMATION_GAIN;
+import static de.uni_trier.wi2.pki.Main.OPTIMAL_K_MEANS;
 
 /**
  * Settings for the ID3 algorithm.
@@ -12,6 +16,15 @@ public class ID3Settings extends Settings {
     private int numFolds;
     private double epsilon;
     private double pruneSize;
+    private int parallelThreshold;
+    private int gainParallelThreshold;
+    private boolean retainRows;
+    private int predictionChunkSize;
+    private boolean thresholdSplits;
+    private int numTrees;
+    private long forestSeed;
+    private SplitCriterion splitCriterion;
+    private int entropyTableSize;
     private BinningDiscretizer discretizingMethod;
 
     /* Default settings */
@@ -52,6 +65,78 @@ public class ID3Settings extends Settings {
         this.pruneSize = pruneSize;
     }
 
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getGainParallelThreshold() {
+        return gainParallelThreshold;
+    }
+
+    public void setGainParallelThreshold(int gainParallelThreshold) {
+        this.gainParallelThreshold = gainParallelThreshold;
+    }
+
+    public boolean isRetainRows() {
+        return retainRows;
+    }
+
+    public void setRetainRows(boolean retainRows) {
+        this.retainRows = retainRows;
+    }
+
+    public int getPredictionChunkSize() {
+        return predictionChunkSize;
+    }
+
+    public void setPredictionChunkSize(int predictionChunkSize) {
+        this.predictionChunkSize = predictionChunkSize;
+    }
+
+    public boolean isThresholdSplits() {
+        return thresholdSplits;
+    }
+
+    public void setThresholdSplits(boolean thresholdSplits) {
+        this.thresholdSplits = thresholdSplits;
+    }
+
+    public int getNumTrees() {
+        return numTrees;
+    }
+
+    public void setNumTrees(int numTrees) {
+        this.numTrees = numTrees;
+    }
+
+    public long getForestSeed() {
+        return forestSeed;
+    }
+
+    public void setForestSeed(long forestSeed) {
+        this.forestSeed = forestSeed;
+    }
+
+    public SplitCriterion getSplitCriterion() {
+        return splitCriterion;
+    }
+
+    public void setSplitCriterion(SplitCriterion splitCriterion) {
+        this.splitCriterion = splitCriterion;
+    }
+
+    public int getEntropyTableSize() {
+        return entropyTableSize;
+    }
+
+    public void setEntropyTableSize(int entropyTableSize) {
+        this.entropyTableSize = entropyTableSize;
+    }
+
     public BinningDiscretizer getDiscretizingMethod() {
         return discretizingMethod;
     }
@@ -67,6 +152,15 @@ public class ID3Settings extends Settings {
         System.out.println("- Number of Folds: " + this.numFolds);
         System.out.println("- Epsilon: " + this.epsilon);
         System.out.println("- Prune Size: " + this.pruneSize);
+        System.out.println("- Parallel Threshold: " + this.parallelThreshold);
+        System.out.println("- Gain Parallel Threshold: " + this.gainParallelThreshold);
+        System.out.println("- Retain Training Rows: " + this.retainRows);
+        System.out.println("- Prediction Chunk Size: " + this.predictionChunkSize);
+        System.out.println("- Threshold Splits on Continuous Attributes: " + this.thresholdSplits);
+        System.out.println("- Number of Trees in Random Forest: " + this.numTrees);
+        System.out.println("- Random Forest Seed: " + this.forestSeed);
+        System.out.println("- Split Criterion: " + this.splitCriterion.getClass().getSimpleName());
+        System.out.println("- Entropy Lookup Table Size: " + this.entropyTableSize);
         System.out.println("- Discretizing Method: " + this.discretizingMethod.getClass().getSimpleName());
     }
 
@@ -76,6 +170,15 @@ public class ID3Settings extends Settings {
         this.numFolds = 5;
         this.epsilon = 0.1;
         this.pruneSize = 0.2;
-        this.discretizingMethod = K_MEANS;
+        this.parallelThreshold = 1000;
+        this.gainParallelThreshold = 10000;
+        this.retainRows = false;
+        this.predictionChunkSize = CompiledTree.DEFAULT_CHUNK_SIZE;
+        this.thresholdSplits = true;
+        this.numTrees = 0;
+        this.forestSeed = 42;
+        this.splitCriterion = INFORMATION_GAIN;
+        this.entropyTableSize = EntropyUtils.DEFAULT_LOOKUP_TABLE_SIZE;
+        this.discretizingMethod = OPTIMAL_K_MEANS;
     }
 }
@@ -0,0 +1,56 @@
+package de.uni_trier.wi2.pki.tree;
+
+import java.util.stream.IntStream;
+
+/**
+ * Splits batch predictions into chunks of consecutive rows that are predicted in parallel on the common fork/join pool.
+ */
+final class BatchPrediction {
+
+    /**
+     * Predicts the rows [from, to) of a batch.
+     */
+    interface ChunkTask {
+        void predict(int from, int to);
+    }
+
+    private BatchPrediction() {
+    }
+
+    /**
+     * Runs a task for every chunk of a batch. Batches of a single chunk are predicted on the calling thread.
+     *
+     * @param size      the number of rows of the batch.
+     * @param chunkSize the maximum number of rows per chunk.
+     * @param task      the task that predicts one chunk.
+     */
+    static void forEachChunk(int size, int chunkSize, ChunkTask task) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+
+        int numChunks = (int) (((long) size + chunkSize - 1) / chunkSize);
+        if (numChunks <= 1) {
+            task.predict(0, size);
+            return;
+        }
+
+        /* the chunks write disjoint ranges of the result array, so no synchronization is needed */
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            int from = chunk * chunkSize;
+            task.predict(from, Math.min(size, from + chunkSize));
+        });
+    }
+
+    /**
+     * Checks that the result array can hold the label ids of the whole batch.
+     *
+     * @param size     the number of rows of the batch.
+     * @param labelIds the result array.
+     */
+    static void checkCapacity(int size, int[] labelIds) {
+        if (labelIds.length < size) {
+            throw new IllegalArgumentException("The label id array holds " + labelIds.length + " entries, but the batch has " + size + " rows.");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.uni_trier.wi2.pki.tree;
+
+/**
+ * The number of training examples per class that reached a node of the decision tree.
+ */
+public class ClassHistogram {
+
+    /**
+     * The class labels indexed by their code. The array is shared by all histograms of a tree and must not be modified.
+     */
+    private final String[] labels;
+
+    /**
+     * The number of examples per class code.
+     */
+    private final int[] counts;
+
+    /**
+     * The total number of examples.
+     */
+    private final int total;
+
+    /**
+     * The code of the most frequent class or -1 if the histogram is empty.
+     */
+    private final int majority;
+
+    /**
+     * Constructor for a class histogram. On ties the class with the lowest code is the majority class.
+     *
+     * @param labels The class labels indexed by their code.
+     * @param counts The number of examples per class code.
+     */
+    public ClassHistogram(String[] labels, int[] counts) {
+        this.labels = labels;
+        this.counts = counts;
+
+        int sum = 0;
+        int best = -1;
+        for (int label = 0; label < counts.length; label++) {
+            sum += counts[label];
+            if (counts[label] > 0 && (best == -1 || counts[label] > counts[best])) {
+                best = label;
+            }
+        }
+        this.total = sum;
+        this.majority = best;
+    }
+
+    /**
+     * Returns the most frequent class.
+     *
+     * @return the label of the majority class or null if the histogram is empty.
+     */
+    public String getMajorityLabel() {
+        return majority == -1 ? null : labels[majority];
+    }
+
+    /**
+     * Returns the code of the most frequent class.
+     *
+     * @return the code of the majority class or -1 if the histogram is empty.
+     */
+    public int getMajorityCode() {
+        return majority;
+    }
+
+    /**
+     * Checks whether all examples belong to the same class.
+     *
+     * @return true if the histogram is not empty and only one class has examples.
+     */
+    public boolean isPure() {
+        return majority != -1 && counts[majority] == total;
+    }
+
+    /**
+     * Returns the number of examples of a class.
+     *
+     * @param label the class code.
+     * @return the number of examples of the class.
+     */
+    public int getCount(int label) {
+        return counts[label];
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+}
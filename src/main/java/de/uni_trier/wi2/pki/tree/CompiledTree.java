@@ -0,0 +1,519 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Flat-array representation of a trained decision tree for fast prediction on dictionary-encoded rows.
+ * The nodes are numbered in depth-first order, the root is node 0. Every inner node owns a slice of the child table with one entry per
+ * dictionary code of its attribute, so choosing a branch is a single array access instead of a map lookup. Threshold splits on numeric
+ * attributes own a slice of two entries, the child for values less than or equal to the threshold and the child for greater values.
+ */
+public class CompiledTree implements Predictor, EncodedPredictor {
+
+    /**
+     * The default number of rows predicted by one task of a batch prediction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * The attribute index checked by each node, -1 for leaf nodes.
+     */
+    private final int[] attributeIndices;
+
+    /**
+     * The start of the child table slice of each inner node.
+     */
+    private final int[] childOffsets;
+
+    /**
+     * The number of entries in the child table slice of each inner node, i.e. the number of codes of its attribute.
+     */
+    private final int[] childCounts;
+
+    /**
+     * The child node of every (inner node, code) pair, -1 if the tree has no branch for the code.
+     */
+    private final int[] children;
+
+    /**
+     * The label id of each leaf node, -1 for inner nodes.
+     */
+    private final int[] labelIds;
+
+    /**
+     * The threshold of each threshold split, NaN for all other nodes.
+     */
+    private final double[] thresholds;
+
+    /**
+     * The numeric value of every dictionary code of each numeric attribute, null for categorical attributes. Used to evaluate threshold splits
+     * on encoded rows.
+     */
+    private final double[][] codeValues;
+
+    /**
+     * The ascending upper bounds of the value intervals that the codes of a numeric attribute stand for, null for attributes whose symbols
+     * are the values themselves. Trees read from XML only know the thresholds of a numeric attribute, so code i stands for the values above
+     * bound i - 1 up to bound i.
+     */
+    private final double[][] intervalBounds;
+
+    /**
+     * The class labels indexed by their label id.
+     */
+    private final String[] labels;
+
+    /**
+     * The symbol tables that define the codes of every attribute.
+     */
+    private final SymbolTable[] symbolTables;
+
+    /**
+     * Constructor for a compiled tree. Use {@link #compile(DecisionTree, Dataset, int)} to create one from a trained tree.
+     *
+     * @param attributeIndices The attribute index checked by each node, -1 for leaf nodes.
+     * @param childOffsets     The start of the child table slice of each inner node.
+     * @param childCounts      The number of entries in the child table slice of each inner node.
+     * @param children         The child node of every (inner node, code) pair, -1 for missing branches.
+     * @param labelIds         The label id of each leaf node, -1 for inner nodes.
+     * @param labels           The class labels indexed by their label id.
+     * @param symbolTables     The symbol tables that define the codes of every attribute.
+     */
+    public CompiledTree(int[] attributeIndices, int[] childOffsets, int[] childCounts, int[] children, int[] labelIds, String[] labels,
+                        SymbolTable[] symbolTables) {
+        this(attributeIndices, childOffsets, childCounts, children, labelIds, noThresholds(attributeIndices.length), new double[symbolTables.length][],
+                labels, symbolTables);
+    }
+
+    /**
+     * Constructor for a compiled tree with threshold splits. Use {@link #compile(DecisionTree, Dataset, int)} to create one from a trained tree.
+     *
+     * @param attributeIndices The attribute index checked by each node, -1 for leaf nodes.
+     * @param childOffsets     The start of the child table slice of each inner node.
+     * @param childCounts      The number of entries in the child table slice of each inner node.
+     * @param children         The child node of every (inner node, code) pair, -1 for missing branches.
+     * @param labelIds         The label id of each leaf node, -1 for inner nodes.
+     * @param thresholds       The threshold of each threshold split, NaN for all other nodes.
+     * @param codeValues       The numeric value of every dictionary code of each numeric attribute, null for categorical attributes.
+     * @param labels           The class labels indexed by their label id.
+     * @param symbolTables     The symbol tables that define the codes of every attribute.
+     */
+    public CompiledTree(int[] attributeIndices, int[] childOffsets, int[] childCounts, int[] children, int[] labelIds, double[] thresholds,
+                        double[][] codeValues, String[] labels, SymbolTable[] symbolTables) {
+        this(attributeIndices, childOffsets, childCounts, children, labelIds, thresholds, codeValues, labels, symbolTables,
+                new double[symbolTables.length][]);
+    }
+
+    /**
+     * Constructor for a compiled tree whose numeric attributes may be encoded by value intervals instead of values.
+     *
+     * @param attributeIndices The attribute index checked by each node, -1 for leaf nodes.
+     * @param childOffsets     The start of the child table slice of each inner node.
+     * @param childCounts      The number of entries in the child table slice of each inner node.
+     * @param children         The child node of every (inner node, code) pair, -1 for missing branches.
+     * @param labelIds         The label id of each leaf node, -1 for inner nodes.
+     * @param thresholds       The threshold of each threshold split, NaN for all other nodes.
+     * @param codeValues       The numeric value of every dictionary code of each numeric attribute, null for categorical attributes.
+     * @param labels           The class labels indexed by their label id.
+     * @param symbolTables     The symbol tables that define the codes of every attribute.
+     * @param intervalBounds   The ascending upper bounds of the intervals that the codes of each interval encoded attribute stand for, the last
+     *                         one positive infinity; null for all other attributes.
+     */
+    public CompiledTree(int[] attributeIndices, int[] childOffsets, int[] childCounts, int[] children, int[] labelIds, double[] thresholds,
+                        double[][] codeValues, String[] labels, SymbolTable[] symbolTables, double[][] intervalBounds) {
+        this.attributeIndices = attributeIndices;
+        this.childOffsets = childOffsets;
+        this.childCounts = childCounts;
+        this.children = children;
+        this.labelIds = labelIds;
+        this.thresholds = thresholds;
+        this.codeValues = codeValues;
+        this.labels = labels;
+        this.symbolTables = symbolTables;
+        this.intervalBounds = intervalBounds;
+    }
+
+    /**
+     * Compiles a trained decision tree. The split values are translated to the dictionary codes of the given dataset and the label ids are the
+     * codes of the label column, so the compiled tree can predict every dataset that shares these symbol tables. Split values that are unknown to
+     * the dictionary can never be reached by an encoded row and are dropped.
+     *
+     * @param decisionTree the tree to compile.
+     * @param dataset      the dataset whose symbol tables define the codes.
+     * @param labelIndex   the index of the label attribute.
+     * @return the compiled tree.
+     */
+    public static CompiledTree compile(DecisionTree decisionTree, Dataset dataset, int labelIndex) {
+        SymbolTable labelTable = dataset.getSymbolTable(labelIndex);
+        String[] labels = new String[labelTable.size()];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = labelTable.getSymbol(code);
+        }
+
+        /* count the nodes and child table entries first, so all arrays can be allocated with their final size */
+        int[] sizes = new int[2];
+        countNodes(decisionTree.getRoot(), dataset, sizes);
+
+        Compiler compiler = new Compiler(dataset, labelTable, sizes[0], sizes[1]);
+        compiler.addNode(decisionTree.getRoot());
+
+        SymbolTable[] symbolTables = new SymbolTable[dataset.getNumAttributes()];
+        double[][] codeValues = new double[dataset.getNumAttributes()][];
+        for (int attributeIndex = 0; attributeIndex < symbolTables.length; attributeIndex++) {
+            symbolTables[attributeIndex] = dataset.getSymbolTable(attributeIndex);
+            if (dataset.isNumeric(attributeIndex)) {
+                /* the symbols of a numeric column are the string representations of its values */
+                codeValues[attributeIndex] = new double[symbolTables[attributeIndex].size()];
+                for (int code = 0; code < codeValues[attributeIndex].length; code++) {
+                    codeValues[attributeIndex][code] = Dataset.toNumber(symbolTables[attributeIndex].getSymbol(code));
+                }
+            }
+        }
+
+        return new CompiledTree(compiler.attributeIndices, compiler.childOffsets, compiler.childCounts, compiler.children, compiler.labelIds,
+                compiler.thresholds, codeValues, labels, symbolTables);
+    }
+
+    /**
+     * Predicts the label id of a dictionary-encoded row. The method does not allocate.
+     *
+     * @param row the codes of the row, indexed by attribute.
+     * @return the predicted label id or -1 if the row reaches a missing branch.
+     */
+    @Override
+    public int predict(int[] row) {
+        int node = 0;
+        while (attributeIndices[node] >= 0) {
+            int code = row[attributeIndices[node]];
+            if (!Double.isNaN(thresholds[node])) {
+                double[] values = codeValues[attributeIndices[node]];
+                if (code < 0 || code >= values.length) {
+                    return -1;
+                }
+                code = values[code] <= thresholds[node] ? 0 : 1;
+            }
+            if (code < 0 || code >= childCounts[node]) {
+                return -1;
+            }
+            node = children[childOffsets[node] + code];
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return labelIds[node];
+    }
+
+    /**
+     * Predicts the label id of a row of an encoded dataset. The method does not allocate.
+     *
+     * @param dataset the encoded examples, sharing the symbol tables the tree was compiled with.
+     * @param row     the index of the row to predict.
+     * @return the predicted label id or -1 if the row reaches a missing branch.
+     */
+    public int predict(Dataset dataset, int row) {
+        int node = 0;
+        while (attributeIndices[node] >= 0) {
+            int code = Double.isNaN(thresholds[node]) ? dataset.getCode(row, attributeIndices[node])
+                    : dataset.getValue(row, attributeIndices[node]) <= thresholds[node] ? 0 : 1;
+            if (code < 0 || code >= childCounts[node]) {
+                return -1;
+            }
+            node = children[childOffsets[node] + code];
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return labelIds[node];
+    }
+
+    /**
+     * Predicts the label ids of all rows of an encoded dataset. Datasets with more than chunkSize rows are split into chunks that are predicted
+     * in parallel.
+     *
+     * @param dataset   the encoded examples, sharing the symbol tables the tree was compiled with.
+     * @param labelIds  receives the predicted label id of every row, -1 for rows that reach a missing branch. Must hold at least dataset.size()
+     *                  entries.
+     * @param chunkSize the number of rows predicted by one task.
+     * @return the filled label id array.
+     */
+    public int[] predictAll(Dataset dataset, int[] labelIds, int chunkSize) {
+        BatchPrediction.checkCapacity(dataset.size(), labelIds);
+        BatchPrediction.forEachChunk(dataset.size(), chunkSize, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                labelIds[row] = predict(dataset, row);
+            }
+        });
+        return labelIds;
+    }
+
+    /**
+     * Predict the class of a single example. The example is encoded with the symbol tables the tree was compiled with.
+     *
+     * @param example the attribute array of the example to predict.
+     * @return the predicted class as a string
+     */
+    @Override
+    public String predict(Object[] example) {
+        int node = 0;
+        while (attributeIndices[node] >= 0) {
+            int attributeIndex = attributeIndices[node];
+            int code;
+            if (Double.isNaN(thresholds[node])) {
+                code = symbolTables[attributeIndex].getCode(example[attributeIndex].toString());
+            } else {
+                /* numeric values are compared directly, so values that did not occur in the training data are handled as well */
+                try {
+                    code = Dataset.toNumber(example[attributeIndex]) <= thresholds[node] ? 0 : 1;
+                } catch (NumberFormatException e) {
+                    return DecisionTree.NO_LEAF_NODE;
+                }
+            }
+            if (code < 0 || code >= childCounts[node]) {
+                return DecisionTree.NO_LEAF_NODE;
+            }
+            node = children[childOffsets[node] + code];
+            if (node < 0) {
+                return DecisionTree.NO_LEAF_NODE;
+            }
+        }
+        return labels[labelIds[node]];
+    }
+
+    /**
+     * Encodes an example with the symbol tables the tree was compiled with. Interval encoded attributes get the code of the interval that
+     * contains their value. Unknown symbols and values that are not numbers are encoded as -1.
+     *
+     * @param example the example to encode.
+     * @return the codes of the example, indexed by attribute.
+     */
+    public int[] encode(Object[] example) {
+        int[] row = new int[symbolTables.length];
+        for (int attributeIndex = 0; attributeIndex < row.length; attributeIndex++) {
+            if (intervalBounds[attributeIndex] != null) {
+                row[attributeIndex] = encodeInterval(intervalBounds[attributeIndex], example[attributeIndex]);
+            } else {
+                row[attributeIndex] = symbolTables[attributeIndex].getCode(example[attributeIndex].toString());
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Finds the interval of a numeric value, the first one whose upper bound is not less than the value.
+     *
+     * @param bounds the ascending upper bounds of the intervals, the last one positive infinity.
+     * @param value  the value to encode.
+     * @return the code of the interval or -1 if the value is not a number.
+     */
+    private static int encodeInterval(double[] bounds, Object value) {
+        double number;
+        try {
+            number = Dataset.toNumber(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (Double.isNaN(number)) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(bounds, number);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the class label of a label id.
+     *
+     * @param labelId the label id.
+     * @return the class label.
+     */
+    @Override
+    public String getLabel(int labelId) {
+        return labels[labelId];
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes.
+     */
+    public int getNumNodes() {
+        return attributeIndices.length;
+    }
+
+    int getAttributeIndex(int node) {
+        return attributeIndices[node];
+    }
+
+    int getChildCount(int node) {
+        return childCounts[node];
+    }
+
+    /**
+     * Returns the child of an inner node for a code.
+     *
+     * @param node the inner node.
+     * @param code the dictionary code of the attribute of the node.
+     * @return the child node or -1 if the tree has no branch for the code.
+     */
+    int getChild(int node, int code) {
+        return children[childOffsets[node] + code];
+    }
+
+    double getThreshold(int node) {
+        return thresholds[node];
+    }
+
+    double[][] getCodeValues() {
+        return codeValues;
+    }
+
+    double[][] getIntervalBounds() {
+        return intervalBounds;
+    }
+
+    int getLabelId(int node) {
+        return labelIds[node];
+    }
+
+    int getNumLabels() {
+        return labels.length;
+    }
+
+    int getNumAttributes() {
+        return symbolTables.length;
+    }
+
+    SymbolTable getSymbolTable(int attributeIndex) {
+        return symbolTables[attributeIndex];
+    }
+
+    /**
+     * Counts the nodes and child table entries of a subtree.
+     *
+     * @param node    the root of the subtree.
+     * @param dataset the dataset whose symbol tables define the codes.
+     * @param sizes   receives the number of nodes at index 0 and the number of child table entries at index 1.
+     */
+    private static void countNodes(DecisionTreeNode node, Dataset dataset, int[] sizes) {
+        sizes[0]++;
+        if (node.isLeafNode()) {
+            return;
+        }
+        if (node.isThresholdSplit()) {
+            sizes[1] += 2;
+            for (DecisionTreeNode child : thresholdChildren(node)) {
+                if (child != null) {
+                    countNodes(child, dataset, sizes);
+                }
+            }
+            return;
+        }
+        sizes[1] += dataset.getCardinality(node.getAttributeIndex());
+        for (DecisionTreeNode child : node.getSplits().values()) {
+            countNodes(child, dataset, sizes);
+        }
+    }
+
+    /**
+     * Returns the two children of a threshold split.
+     *
+     * @param node the threshold split.
+     * @return the child for values less than or equal to the threshold and the child for greater values, null if missing.
+     */
+    private static DecisionTreeNode[] thresholdChildren(DecisionTreeNode node) {
+        return new DecisionTreeNode[]{
+                node.getSplits().get(DecisionTreeNode.lessOrEqualKey(node.getThreshold())),
+                node.getSplits().get(DecisionTreeNode.greaterKey(node.getThreshold()))
+        };
+    }
+
+    private static double[] noThresholds(int numNodes) {
+        double[] thresholds = new double[numNodes];
+        Arrays.fill(thresholds, Double.NaN);
+        return thresholds;
+    }
+
+    /**
+     * Fills the node arrays in depth-first order.
+     */
+    private static class Compiler {
+        private final Dataset dataset;
+        private final SymbolTable labelTable;
+        private final int[] attributeIndices;
+        private final int[] childOffsets;
+        private final int[] childCounts;
+        private final int[] children;
+        private final int[] labelIds;
+        private final double[] thresholds;
+        private int nextNode = 0;
+        private int nextChild = 0;
+
+        Compiler(Dataset dataset, SymbolTable labelTable, int numNodes, int numChildren) {
+            this.dataset = dataset;
+            this.labelTable = labelTable;
+            this.attributeIndices = new int[numNodes];
+            this.childOffsets = new int[numNodes];
+            this.childCounts = new int[numNodes];
+            this.children = new int[numChildren];
+            this.labelIds = new int[numNodes];
+            this.thresholds = noThresholds(numNodes);
+            Arrays.fill(children, -1);
+        }
+
+        /**
+         * Adds a node and its subtree.
+         *
+         * @param node the node to add.
+         * @return the id of the node.
+         */
+        int addNode(DecisionTreeNode node) {
+            int id = nextNode++;
+
+            if (node.isLeafNode()) {
+                String labelClass = ((DecisionTreeLeafNode) node).getLabelClass();
+                int labelId = labelTable.getCode(labelClass);
+                if (labelId == -1) {
+                    throw new IllegalArgumentException("Unknown class label: " + labelClass);
+                }
+                attributeIndices[id] = -1;
+                labelIds[id] = labelId;
+                return id;
+            }
+
+            attributeIndices[id] = node.getAttributeIndex();
+            labelIds[id] = -1;
+
+            if (node.isThresholdSplit()) {
+                thresholds[id] = node.getThreshold();
+                childOffsets[id] = nextChild;
+                childCounts[id] = 2;
+                nextChild += 2;
+
+                DecisionTreeNode[] thresholdChildren = thresholdChildren(node);
+                for (int branch = 0; branch < 2; branch++) {
+                    if (thresholdChildren[branch] != null) {
+                        children[childOffsets[id] + branch] = addNode(thresholdChildren[branch]);
+                    }
+                }
+                return id;
+            }
+
+            SymbolTable symbolTable = dataset.getSymbolTable(node.getAttributeIndex());
+            childOffsets[id] = nextChild;
+            childCounts[id] = symbolTable.size();
+            nextChild += symbolTable.size();
+
+            for (Map.Entry<String, DecisionTreeNode> entry : node.getSplits().entrySet()) {
+                int code = symbolTable.getCode(entry.getKey());
+                int child = addNode(entry.getValue());
+                if (code != -1) {
+                    children[childOffsets[id] + code] = child;
+                }
+            }
+            return id;
+        }
+    }
+}
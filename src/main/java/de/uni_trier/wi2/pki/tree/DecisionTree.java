@@ -1,8 +1,15 @@
 package de.uni_trier.wi2.pki.tree;
 
+import de.uni_trier.wi2.pki.data.Dataset;
+
 import java.util.*;
 
-public class DecisionTree extends DecisionTreeNode {
+public class DecisionTree extends DecisionTreeNode implements Predictor {
+
+    /**
+     * The prediction for examples that do not reach a leaf node.
+     */
+    public static final String NO_LEAF_NODE = "No leaf node found";
 
     /**
      * Constructor for decision tree.
@@ -14,22 +21,123 @@ public class DecisionTree extends DecisionTreeNode {
         super(null, elements, attributeIndex);
     }
 
+    /**
+     * Constructor for decision tree that keeps the class counts of its training examples.
+     *
+     * @param attributeIndex Index for current attribute.
+     * @param classHistogram Class counts of the training examples.
+     * @param elements       Elements for current node, may be null if the training examples are not retained.
+     */
+    public DecisionTree(int attributeIndex, ClassHistogram classHistogram, Collection<Object[]> elements) {
+        super(null, classHistogram, elements, attributeIndex);
+    }
+
+    /**
+     * Constructor for decision tree whose root splits a numeric attribute on a threshold.
+     *
+     * @param attributeIndex Index for current attribute.
+     * @param threshold      The split threshold, NaN for a split on the attribute values.
+     * @param classHistogram Class counts of the training examples.
+     * @param elements       Elements for current node, may be null if the training examples are not retained.
+     */
+    public DecisionTree(int attributeIndex, double threshold, ClassHistogram classHistogram, Collection<Object[]> elements) {
+        super(null, classHistogram, elements, attributeIndex, threshold);
+    }
+
+    /**
+     * Constructor for decision tree that consists of a single leaf node, e.g. for training data of a single class or without attributes to
+     * split on. Every example is predicted as the class of the leaf.
+     *
+     * @param leaf The leaf node that forms the whole tree.
+     */
+    public DecisionTree(DecisionTreeLeafNode leaf) {
+        super(null, leaf.getClassHistogram(), leaf.getElements(), -1);
+        this.rootLeaf = leaf;
+    }
+
+    /**
+     * The leaf node of a tree that consists of a single leaf, null for trees whose root splits.
+     */
+    private DecisionTreeLeafNode rootLeaf;
+
+    /**
+     * Returns the root node of the tree, which is the tree itself unless the tree consists of a single leaf node.
+     *
+     * @return the root node.
+     */
+    public DecisionTreeNode getRoot() {
+        return rootLeaf != null ? rootLeaf : this;
+    }
+
+    @Override
+    protected DecisionTreeNode getClassificationNode(Object[] example) {
+        return rootLeaf != null ? rootLeaf : super.getClassificationNode(example);
+    }
+
+    @Override
+    protected DecisionTreeNode getClassificationNode(Dataset dataset, int row) {
+        return rootLeaf != null ? rootLeaf : super.getClassificationNode(dataset, row);
+    }
+
     /**
      * Predict the class of a single example.
      *
      * @param example the attribute array of the example to predict.
      * @return the predicted class as a string
      */
+    @Override
     public String predict(Object[] example) {
         DecisionTreeNode currentNode = getClassificationNode(example);
         if (currentNode instanceof DecisionTreeLeafNode) {
             return ((DecisionTreeLeafNode) currentNode).getLabelClass();
         }
         else {
-            return "No leaf node found";
+            return NO_LEAF_NODE;
         }
     }
 
+    /**
+     * Predict the class of a single row of an encoded dataset.
+     *
+     * @param dataset the encoded examples.
+     * @param row     the index of the row to predict.
+     * @return the predicted class as a string
+     */
+    public String predict(Dataset dataset, int row) {
+        DecisionTreeNode currentNode = getClassificationNode(dataset, row);
+        if (currentNode instanceof DecisionTreeLeafNode) {
+            return ((DecisionTreeLeafNode) currentNode).getLabelClass();
+        }
+        else {
+            return NO_LEAF_NODE;
+        }
+    }
+
+    /**
+     * Compiles this tree into its flat-array representation for the codes of the given dataset.
+     *
+     * @param dataset    the dataset whose symbol tables define the codes.
+     * @param labelIndex the index of the label attribute.
+     * @return the compiled tree.
+     */
+    public CompiledTree compile(Dataset dataset, int labelIndex) {
+        return CompiledTree.compile(this, dataset, labelIndex);
+    }
+
+    /**
+     * Predict the label ids of all rows of an encoded dataset. The tree is compiled once and the rows are predicted in parallel chunks, see
+     * {@link CompiledTree#predictAll(Dataset, int[], int)}.
+     *
+     * @param dataset    the encoded examples.
+     * @param labelIndex the index of the label attribute, the label ids are the codes of its symbol table.
+     * @param labelIds   receives the predicted label id of every row, -1 for rows that do not reach a leaf node.
+     * @param chunkSize  the number of rows predicted by one task.
+     * @return the filled label id array.
+     */
+    public int[] predictAll(Dataset dataset, int labelIndex, int[] labelIds, int chunkSize) {
+        return compile(dataset, labelIndex).predictAll(dataset, labelIds, chunkSize);
+    }
+
     /**
      * Predict the class of multiple examples.
      *
@@ -1,5 +1,7 @@
 package de.uni_trier.wi2.pki.tree;
 
+import de.uni_trier.wi2.pki.data.Dataset;
+
 import java.util.Collection;
 
 /**
@@ -25,6 +27,19 @@ public class DecisionTreeLeafNode extends DecisionTreeNode {
         this.labelClass = labelClass;
     }
 
+    /**
+     * Constructor for decision tree leaf node that keeps the class counts of its training examples.
+     *
+     * @param parent         Parent node of current node.
+     * @param classHistogram Class counts of the training examples of the current node.
+     * @param elements       Elements for current node, may be null if the training examples are not retained.
+     * @param labelClass     Class label for current node.
+     */
+    public DecisionTreeLeafNode(DecisionTreeNode parent, ClassHistogram classHistogram, Collection<Object[]> elements, String labelClass) {
+        super(parent, classHistogram, elements, -1);
+        this.labelClass = labelClass;
+    }
+
     @Override
     public boolean isLeafNode() {
         return true;
@@ -40,6 +55,11 @@ public class DecisionTreeLeafNode extends DecisionTreeNode {
         return this;
     }
 
+    @Override
+    protected DecisionTreeNode getClassificationNode(Dataset dataset, int row) {
+        return this;
+    }
+
     public String getLabelClass() {
         return labelClass;
     }
@@ -1,5 +1,7 @@
 package de.uni_trier.wi2.pki.tree;
 
+import de.uni_trier.wi2.pki.data.Dataset;
+
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,14 +21,48 @@ public class DecisionTreeNode {
      */
 
     public DecisionTreeNode(DecisionTreeNode parent, Collection<Object[]> elements, int attributeIndex) {
+        this(parent, null, elements, attributeIndex);
+    }
+
+    /**
+     * Constructor for decision tree node that keeps the class counts of its training examples.
+     *
+     * @param parent         Parent node of current node.
+     * @param classHistogram Class counts of the training examples of the current node.
+     * @param elements       Elements for current node, may be null if the training examples are not retained.
+     * @param attributeIndex Index for current attribute.
+     */
+    public DecisionTreeNode(DecisionTreeNode parent, ClassHistogram classHistogram, Collection<Object[]> elements, int attributeIndex) {
+        this(parent, classHistogram, elements, attributeIndex, Double.NaN);
+    }
+
+    /**
+     * Constructor for decision tree node that splits a numeric attribute into the examples with a value less than or equal to a threshold and
+     * the examples with a greater value. The two children are added with {@link #addThresholdSplits(DecisionTreeNode, DecisionTreeNode)}.
+     *
+     * @param parent         Parent node of current node.
+     * @param classHistogram Class counts of the training examples of the current node.
+     * @param elements       Elements for current node, may be null if the training examples are not retained.
+     * @param attributeIndex Index for current attribute.
+     * @param threshold      The split threshold, NaN for a split on the attribute values.
+     */
+    public DecisionTreeNode(DecisionTreeNode parent, ClassHistogram classHistogram, Collection<Object[]> elements, int attributeIndex,
+                            double threshold) {
         this.parent = parent;
         this.attributeIndex = attributeIndex;
+        this.threshold = threshold;
+        this.classHistogram = classHistogram;
         this.elements = elements;
         splits = new HashMap<>();
     }
 
     private Collection<Object[]> elements;
 
+    /**
+     * The class counts of the training examples of this node, null for nodes that were created from elements only.
+     */
+    private ClassHistogram classHistogram;
+
     /**
      * The parent node in the decision tree.
      */
@@ -37,6 +73,11 @@ public class DecisionTreeNode {
      */
     protected int attributeIndex;
 
+    /**
+     * The threshold of a split on a numeric attribute, NaN for splits on the attribute values.
+     */
+    protected double threshold;
+
     /**
      * The checked split condition values and the nodes for these conditions.
      */
@@ -52,6 +93,48 @@ public class DecisionTreeNode {
         splits.put(Object, decisionTreeNode);
     }
 
+    /**
+     * Adds the two children of a threshold split. They are stored in the splits under the keys {@link #lessOrEqualKey(double)} and
+     * {@link #greaterKey(double)}.
+     *
+     * @param lessOrEqual the node for the examples with a value less than or equal to the threshold.
+     * @param greater     the node for the examples with a greater value.
+     */
+    public void addThresholdSplits(DecisionTreeNode lessOrEqual, DecisionTreeNode greater) {
+        addSplit(lessOrEqualKey(threshold), lessOrEqual);
+        addSplit(greaterKey(threshold), greater);
+    }
+
+    /**
+     * Returns the split key of the examples with a value less than or equal to a threshold.
+     *
+     * @param threshold the split threshold.
+     * @return the split key, e.g. "&lt;= 4.5".
+     */
+    public static String lessOrEqualKey(double threshold) {
+        return "<= " + threshold;
+    }
+
+    /**
+     * Returns the split key of the examples with a value greater than a threshold.
+     *
+     * @param threshold the split threshold.
+     * @return the split key, e.g. "&gt; 4.5".
+     */
+    public static String greaterKey(double threshold) {
+        return "> " + threshold;
+    }
+
+    /**
+     * Returns the child of a threshold split for a value.
+     *
+     * @param value the numeric value of the split attribute.
+     * @return the child node or null if the child is missing.
+     */
+    public DecisionTreeNode getThresholdChild(double value) {
+        return splits.get(value <= threshold ? lessOrEqualKey(threshold) : greaterKey(threshold));
+    }
+
     /**
      * Returns the leaf node used for classification.
      *
@@ -71,6 +154,16 @@ public class DecisionTreeNode {
                 throw new IllegalArgumentException("Invalid attribute index: " + attributeIndex);
             }
 
+            if (currentNode.isThresholdSplit()) {
+                try {
+                    currentNode = currentNode.getThresholdChild(Dataset.toNumber(example[attributeIndex]));
+                } catch (NumberFormatException e) {
+                    /* a value that is not a number has no branch */
+                    return null;
+                }
+                continue;
+            }
+
             String attributeValue = (String) example[attributeIndex];
             currentNode = currentNode.getSplits().get(attributeValue);
 
@@ -78,6 +171,35 @@ public class DecisionTreeNode {
         return null;
     }
 
+    /**
+     * Returns the leaf node used for classification of a row of an encoded dataset.
+     *
+     * @param dataset the encoded examples.
+     * @param row     the index of the row to classify.
+     * @return the leaf node.
+     */
+    protected DecisionTreeNode getClassificationNode(Dataset dataset, int row) {
+        DecisionTreeNode currentNode = this;
+
+        while (currentNode != null) {
+
+            if (currentNode.isLeafNode()) {
+                return currentNode;
+            }
+            int attributeIndex = currentNode.getAttributeIndex();
+            if (attributeIndex < 0 || attributeIndex >= dataset.getNumAttributes()) {
+                throw new IllegalArgumentException("Invalid attribute index: " + attributeIndex);
+            }
+
+            if (currentNode.isThresholdSplit()) {
+                currentNode = currentNode.getThresholdChild(dataset.getValue(row, attributeIndex));
+            } else {
+                currentNode = currentNode.getSplits().get(dataset.getSymbol(row, attributeIndex));
+            }
+        }
+        return null;
+    }
+
 
     /**
      * Returns the index of the attribute used in the current node.
@@ -88,6 +210,24 @@ public class DecisionTreeNode {
         return attributeIndex;
     }
 
+    /**
+     * Returns the threshold of a split on a numeric attribute.
+     *
+     * @return The split threshold or NaN if the node splits on the attribute values.
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Checks if current node splits a numeric attribute on a threshold.
+     *
+     * @return True, if threshold split.
+     */
+    public boolean isThresholdSplit() {
+        return !Double.isNaN(threshold);
+    }
+
     /**
      * Returns parent node of current node.
      *
@@ -109,13 +249,22 @@ public class DecisionTreeNode {
     /**
      * Returns elements of current node.
      *
-     * @return Elements of current node.
+     * @return Elements of current node or null if the training examples were not retained.
      */
 
     public Collection<Object[]> getElements() {
         return elements;
     }
 
+    /**
+     * Returns the class counts of the training examples of current node.
+     *
+     * @return The class histogram or null if the node was created from elements only.
+     */
+    public ClassHistogram getClassHistogram() {
+        return classHistogram;
+    }
+
     /**
      * Checks if current node is a leaf node.
      *
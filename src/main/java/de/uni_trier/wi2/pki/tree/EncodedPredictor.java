@@ -0,0 +1,42 @@
+package de.uni_trier.wi2.pki.tree;
+
+/**
+ * Common interface of the models that predict label ids of dictionary-encoded rows.
+ */
+public interface EncodedPredictor {
+
+    /**
+     * Predicts the label id of a dictionary-encoded row.
+     *
+     * @param row the codes of the row, indexed by attribute.
+     * @return the predicted label id or -1 if the row reaches a missing branch.
+     */
+    int predict(int[] row);
+
+    /**
+     * Predicts the label ids of a batch of dictionary-encoded rows. Batches with more than chunkSize rows are split into chunks that are
+     * predicted in parallel.
+     *
+     * @param rows      the codes of every row, indexed by [row][attribute].
+     * @param labelIds  receives the predicted label id of every row, -1 for rows that reach a missing branch. Must hold at least rows.length entries.
+     * @param chunkSize the number of rows predicted by one task.
+     * @return the filled label id array.
+     */
+    default int[] predictAll(int[][] rows, int[] labelIds, int chunkSize) {
+        BatchPrediction.checkCapacity(rows.length, labelIds);
+        BatchPrediction.forEachChunk(rows.length, chunkSize, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                labelIds[row] = predict(rows[row]);
+            }
+        });
+        return labelIds;
+    }
+
+    /**
+     * Returns the class label of a label id.
+     *
+     * @param labelId the label id.
+     * @return the class label.
+     */
+    String getLabel(int labelId);
+}
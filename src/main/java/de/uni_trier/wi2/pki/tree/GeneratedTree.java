@@ -0,0 +1,767 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Decision tree that is translated into a class at runtime. Every inner node becomes a switch on the dictionary code of its attribute and
+ * every leaf a constant return, so the JIT can inline and branch-predict the whole model. Threshold splits compare the value of the code
+ * with the threshold as a constant.
+ * <p>
+ * The class file is emitted directly and defined as a hidden class with {@link MethodHandles.Lookup#defineHiddenClassWithClassData}, so no
+ * compiler is needed at runtime and the class is unloaded together with this object. Subtrees that would make a method too large for the
+ * JIT are moved to methods of their own.
+ * <p>
+ * Generating is opt-in and {@link CompiledTree} remains the default prediction path. Every switch is an indirect jump, which the processor
+ * mispredicts when the codes of the rows vary a lot, while the flat arrays need no data-dependent branch per node. On the synthetic rows of
+ * the prediction benchmark the compiled tree is therefore faster; the generated class only pays off where most rows take the same paths.
+ */
+public class GeneratedTree implements Predictor, EncodedPredictor {
+
+    /**
+     * The maximum number of bytecode bytes that are inlined into one generated method. HotSpot does not compile methods above 8000 bytes,
+     * larger subtrees are therefore moved to methods of their own.
+     */
+    private static final int METHOD_SIZE_LIMIT = 4000;
+
+    /**
+     * The internal name of the generated class. Hidden classes must be defined in the package of the lookup class.
+     */
+    private static final String CLASS_NAME = GeneratedTree.class.getPackageName().replace('.', '/') + "/GeneratedWalker";
+
+    /**
+     * The instance of the generated class.
+     */
+    private final Walker walker;
+
+    /**
+     * The compiled tree the class was generated from, used for examples and for resolving labels.
+     */
+    private final CompiledTree compiledTree;
+
+    private GeneratedTree(Walker walker, CompiledTree compiledTree) {
+        this.walker = walker;
+        this.compiledTree = compiledTree;
+    }
+
+    /**
+     * Generates a specialized predictor for a trained decision tree.
+     *
+     * @param decisionTree the tree to translate.
+     * @param dataset      the dataset whose symbol tables define the codes.
+     * @param labelIndex   the index of the label attribute.
+     * @return the generated tree.
+     * @throws IllegalArgumentException if a node has too many branches to fit into a method.
+     */
+    public static GeneratedTree generate(DecisionTree decisionTree, Dataset dataset, int labelIndex) {
+        return generate(CompiledTree.compile(decisionTree, dataset, labelIndex));
+    }
+
+    /**
+     * Generates a specialized predictor for a compiled decision tree.
+     *
+     * @param compiledTree the tree to translate.
+     * @return the generated tree.
+     * @throws IllegalArgumentException if a node has too many branches to fit into a method.
+     */
+    public static GeneratedTree generate(CompiledTree compiledTree) {
+        byte[] classFile = new Generator(compiledTree).generate();
+        try {
+            /* the class reads the value tables of the threshold splits from its class data */
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(classFile, compiledTree.getCodeValues(), true);
+            Walker walker = (Walker) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return new GeneratedTree(walker, compiledTree);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Generated predictor could not be loaded: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Predicts the label id of a dictionary-encoded row.
+     *
+     * @param row the codes of the row, indexed by attribute.
+     * @return the predicted label id or -1 if the row reaches a missing branch.
+     */
+    @Override
+    public int predict(int[] row) {
+        return walker.walk(row);
+    }
+
+    /**
+     * Predict the class of a single example. Examples are predicted by the compiled tree, which compares numeric values that did not occur
+     * in the training data with the thresholds directly.
+     *
+     * @param example the attribute array of the example to predict.
+     * @return the predicted class as a string
+     */
+    @Override
+    public String predict(Object[] example) {
+        return compiledTree.predict(example);
+    }
+
+    /**
+     * Returns the class label of a label id.
+     *
+     * @param labelId the label id.
+     * @return the class label.
+     */
+    @Override
+    public String getLabel(int labelId) {
+        return compiledTree.getLabel(labelId);
+    }
+
+    /**
+     * The interface implemented by the generated class. It is package-private, the hidden class is a member of this package.
+     */
+    interface Walker {
+
+        /**
+         * Walks the tree for an encoded row.
+         *
+         * @param row the codes of the row, indexed by attribute.
+         * @return the predicted label id or -1 if the row reaches a missing branch.
+         */
+        int walk(int[] row);
+    }
+
+    /**
+     * Emits the class file of a compiled tree. The class has one static method per method root, starting with the root of the tree; each
+     * method inlines its subtree down to the next method roots.
+     */
+    private static class Generator {
+
+        /* opcodes */
+        private static final int ICONST_M1 = 0x02;
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int LDC_W = 0x13;
+        private static final int LDC2_W = 0x14;
+        private static final int ILOAD_1 = 0x1B;
+        private static final int ALOAD_0 = 0x2A;
+        private static final int ALOAD_1 = 0x2B;
+        private static final int IALOAD = 0x2E;
+        private static final int DALOAD = 0x31;
+        private static final int AALOAD = 0x32;
+        private static final int ISTORE_1 = 0x3C;
+        private static final int DCMPG = 0x98;
+        private static final int IFLT = 0x9B;
+        private static final int IFGT = 0x9D;
+        private static final int IF_ICMPGE = 0xA2;
+        private static final int TABLESWITCH = 0xAA;
+        private static final int LOOKUPSWITCH = 0xAB;
+        private static final int IRETURN = 0xAC;
+        private static final int RETURN = 0xB1;
+        private static final int GETSTATIC = 0xB2;
+        private static final int PUTSTATIC = 0xB3;
+        private static final int INVOKESPECIAL = 0xB7;
+        private static final int INVOKESTATIC = 0xB8;
+        private static final int ARRAYLENGTH = 0xBE;
+        private static final int CHECKCAST = 0xC0;
+
+        /* the size of a call of another method: aload_0, invokestatic, ireturn */
+        private static final int CALL_SIZE = 5;
+
+        /* the size of a missing branch: iconst_m1, ireturn */
+        private static final int MISS_SIZE = 2;
+
+        /* the size of the bounds checks and the comparison of a threshold split, without the two pushes of the attribute index */
+        private static final int THRESHOLD_SIZE = 27;
+
+        private final CompiledTree compiledTree;
+        private final ConstantPool constantPool = new ConstantPool();
+
+        /**
+         * Whether a node is the first node of a generated method.
+         */
+        private final boolean[] methodRoots;
+
+        /**
+         * The method roots in the order of their methods.
+         */
+        private final List<Integer> methods = new ArrayList<>();
+        private final Map<Integer, Integer> methodOfNode = new HashMap<>();
+
+        private final int values;
+
+        Generator(CompiledTree compiledTree) {
+            this.compiledTree = compiledTree;
+            this.methodRoots = new boolean[compiledTree.getNumNodes()];
+            this.values = constantPool.fieldRef(CLASS_NAME, "values", "[[D");
+            methodRoots[0] = true;
+            plan(0);
+            for (int node = 0; node < methodRoots.length; node++) {
+                if (methodRoots[node]) {
+                    methodOfNode.put(node, methods.size());
+                    methods.add(node);
+                }
+            }
+        }
+
+        /**
+         * Decides which nodes start a method of their own. The largest inlined children of a node become method roots until the inlined
+         * subtree fits into {@link #METHOD_SIZE_LIMIT}.
+         *
+         * @param node the root of the subtree.
+         * @return the number of bytes the subtree takes when it is inlined.
+         */
+        private int plan(int node) {
+            int attributeIndex = compiledTree.getAttributeIndex(node);
+            if (attributeIndex < 0) {
+                return pushSize(compiledTree.getLabelId(node)) + 1;
+            }
+
+            int[] children = getChildren(node);
+            int[] sizes = new int[children.length];
+            int size = pushSize(attributeIndex) + 2;
+            if (isThresholdSplit(node)) {
+                size += 2 * pushSize(attributeIndex) + THRESHOLD_SIZE;
+            } else {
+                size += switchSize(node);
+            }
+            for (int i = 0; i < children.length; i++) {
+                sizes[i] = children[i] < 0 ? MISS_SIZE : plan(children[i]);
+                size += sizes[i];
+            }
+
+            while (size > METHOD_SIZE_LIMIT) {
+                int largest = 0;
+                for (int i = 1; i < children.length; i++) {
+                    if (sizes[i] > sizes[largest]) {
+                        largest = i;
+                    }
+                }
+                if (sizes[largest] <= CALL_SIZE) {
+                    break;
+                }
+                methodRoots[children[largest]] = true;
+                size -= sizes[largest] - CALL_SIZE;
+                sizes[largest] = CALL_SIZE;
+            }
+            return size;
+        }
+
+        /**
+         * Returns the children of a node in branch order: the two sides of a threshold split, or the children of all codes that have a
+         * branch.
+         */
+        private int[] getChildren(int node) {
+            if (isThresholdSplit(node)) {
+                return new int[]{child(node, 0), child(node, 1)};
+            }
+            int[] children = new int[compiledTree.getChildCount(node)];
+            int numChildren = 0;
+            for (int code = 0; code < children.length; code++) {
+                if (compiledTree.getChild(node, code) >= 0) {
+                    children[numChildren++] = compiledTree.getChild(node, code);
+                }
+            }
+            return Arrays.copyOf(children, numChildren);
+        }
+
+        private int child(int node, int code) {
+            return code < compiledTree.getChildCount(node) ? compiledTree.getChild(node, code) : -1;
+        }
+
+        private boolean isThresholdSplit(int node) {
+            return !Double.isNaN(compiledTree.getThreshold(node));
+        }
+
+        /**
+         * Returns the codes of a categorical node that have a branch.
+         */
+        private int[] getCodes(int node) {
+            int[] codes = new int[compiledTree.getChildCount(node)];
+            int numCodes = 0;
+            for (int code = 0; code < codes.length; code++) {
+                if (compiledTree.getChild(node, code) >= 0) {
+                    codes[numCodes++] = code;
+                }
+            }
+            return Arrays.copyOf(codes, numCodes);
+        }
+
+        /**
+         * Decides between a tableswitch and a lookupswitch with the cost model of javac.
+         */
+        private static boolean useTableSwitch(int[] codes) {
+            if (codes.length == 0) {
+                return false;
+            }
+            long tableSpaceCost = 4 + ((long) codes[codes.length - 1] - codes[0] + 1);
+            long lookupSpaceCost = 3 + 2L * codes.length;
+            return tableSpaceCost + 3 * 3 <= lookupSpaceCost + 3L * codes.length;
+        }
+
+        /**
+         * Returns the largest number of bytes the switch of a categorical node takes, including the alignment padding.
+         */
+        private int switchSize(int node) {
+            int[] codes = getCodes(node);
+            if (useTableSwitch(codes)) {
+                return 1 + 3 + 12 + 4 * (codes[codes.length - 1] - codes[0] + 1);
+            }
+            return 1 + 3 + 8 + 8 * codes.length;
+        }
+
+        private int pushSize(int value) {
+            if (value >= -1 && value <= 5) {
+                return 1;
+            }
+            return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? 2 : 3;
+        }
+
+        /**
+         * Emits the class file.
+         *
+         * @return the bytes of the class file.
+         */
+        byte[] generate() {
+            int thisClass = constantPool.classRef(CLASS_NAME);
+            int superClass = constantPool.classRef("java/lang/Object");
+            int walkerInterface = constantPool.classRef(Walker.class.getName().replace('.', '/'));
+            int valuesName = constantPool.utf8("values");
+            int valuesDescriptor = constantPool.utf8("[[D");
+
+            List<byte[]> methodInfos = new ArrayList<>();
+            methodInfos.add(methodInfo(0x0008, "<clinit>", "()V", 3, 0, classInitializer()));
+            methodInfos.add(methodInfo(0x0001, "<init>", "()V", 1, 1, constructor()));
+            Code walk = new Code();
+            walk.u1(ALOAD_1);
+            walk.u1(INVOKESTATIC);
+            walk.u2(methodRef(0));
+            walk.u1(IRETURN);
+            methodInfos.add(methodInfo(0x0001, "walk", "([I)I", 1, 2, walk));
+            for (int method = 0; method < methods.size(); method++) {
+                Code code = new Code();
+                emitMethod(methods.get(method), code);
+                methodInfos.add(methodInfo(0x000A, methodName(method), "([I)I", 4, 2, code));
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(60);
+                constantPool.writeTo(out);
+                /* ACC_FINAL | ACC_SUPER */
+                out.writeShort(0x0030);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(walkerInterface);
+                /* private static final double[][] values */
+                out.writeShort(1);
+                out.writeShort(0x001A);
+                out.writeShort(valuesName);
+                out.writeShort(valuesDescriptor);
+                out.writeShort(0);
+                out.writeShort(methodInfos.size());
+                for (byte[] methodInfo : methodInfos) {
+                    out.write(methodInfo);
+                }
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Emits the static initializer, which stores the class data in the values field.
+         */
+        private Code classInitializer() {
+            Code code = new Code();
+            code.u1(INVOKESTATIC);
+            code.u2(constantPool.methodRef("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+            code.u1(LDC_W);
+            code.u2(constantPool.string("_"));
+            code.u1(LDC_W);
+            code.u2(constantPool.classRef("[[D"));
+            code.u1(INVOKESTATIC);
+            code.u2(constantPool.methodRef("java/lang/invoke/MethodHandles", "classData",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"));
+            code.u1(CHECKCAST);
+            code.u2(constantPool.classRef("[[D"));
+            code.u1(PUTSTATIC);
+            code.u2(values);
+            code.u1(RETURN);
+            return code;
+        }
+
+        private Code constructor() {
+            Code code = new Code();
+            code.u1(ALOAD_0);
+            code.u1(INVOKESPECIAL);
+            code.u2(constantPool.methodRef("java/lang/Object", "<init>", "()V"));
+            code.u1(RETURN);
+            return code;
+        }
+
+        private static String methodName(int method) {
+            return "node" + method;
+        }
+
+        private int methodRef(int method) {
+            return constantPool.methodRef(CLASS_NAME, methodName(method), "([I)I");
+        }
+
+        /**
+         * Emits the method of a method root. All branches to a missing child end in one shared block at the end of the method.
+         */
+        private void emitMethod(int node, Code code) {
+            List<int[]> misses = new ArrayList<>();
+            emitNode(node, code, misses);
+            int miss = code.size();
+            code.frames.add(miss);
+            code.u1(ICONST_M1);
+            code.u1(IRETURN);
+            for (int[] branch : misses) {
+                code.patch(branch[0], branch[1], miss - branch[0], branch[2] == 4);
+            }
+            if (code.size() > 0xFFFF) {
+                throw new IllegalArgumentException("The tree has a node with too many branches to generate a predictor.");
+            }
+        }
+
+        /**
+         * Emits a child of a node: a call if the child is a method root, a missing branch or the inlined subtree of the child.
+         */
+        private void emitChild(int child, Code code, List<int[]> misses) {
+            if (child < 0) {
+                code.u1(ICONST_M1);
+                code.u1(IRETURN);
+            } else if (methodRoots[child]) {
+                code.u1(ALOAD_0);
+                code.u1(INVOKESTATIC);
+                code.u2(methodRef(methodOfNode.get(child)));
+                code.u1(IRETURN);
+            } else {
+                emitNode(child, code, misses);
+            }
+        }
+
+        /**
+         * Emits the inlined subtree of a node.
+         *
+         * @param node   the root of the subtree.
+         * @param code   the code of the method.
+         * @param misses receives the position of the instruction, the position of the offset and the width of the offset of every branch to
+         *               the shared missing branch block.
+         */
+        private void emitNode(int node, Code code, List<int[]> misses) {
+            int attributeIndex = compiledTree.getAttributeIndex(node);
+            if (attributeIndex < 0) {
+                push(compiledTree.getLabelId(node), code);
+                code.u1(IRETURN);
+                return;
+            }
+
+            code.u1(ALOAD_0);
+            push(attributeIndex, code);
+            code.u1(IALOAD);
+            if (isThresholdSplit(node)) {
+                emitThresholdSplit(node, attributeIndex, code, misses);
+            } else {
+                emitSwitch(node, code, misses);
+            }
+        }
+
+        /**
+         * Emits a threshold split: codes without a value miss, the value of the code is compared with the threshold like in
+         * {@link CompiledTree#predict(int[])}.
+         */
+        private void emitThresholdSplit(int node, int attributeIndex, Code code, List<int[]> misses) {
+            code.u1(ISTORE_1);
+            code.u1(ILOAD_1);
+            misses.add(code.branch(IFLT));
+            code.u1(ILOAD_1);
+            code.u1(GETSTATIC);
+            code.u2(values);
+            push(attributeIndex, code);
+            code.u1(AALOAD);
+            code.u1(ARRAYLENGTH);
+            misses.add(code.branch(IF_ICMPGE));
+            code.u1(GETSTATIC);
+            code.u2(values);
+            push(attributeIndex, code);
+            code.u1(AALOAD);
+            code.u1(ILOAD_1);
+            code.u1(DALOAD);
+            code.u1(LDC2_W);
+            code.u2(constantPool.doubleConstant(compiledTree.getThreshold(node)));
+            code.u1(DCMPG);
+            int[] greater = code.branch(IFGT);
+            emitChild(child(node, 0), code, misses);
+            code.frames.add(code.size());
+            code.patch(greater[0], greater[1], code.size() - greater[0], false);
+            emitChild(child(node, 1), code, misses);
+        }
+
+        /**
+         * Emits the switch of a categorical node, followed by the blocks of its children in the order of their codes.
+         */
+        private void emitSwitch(int node, Code code, List<int[]> misses) {
+            int[] codes = getCodes(node);
+            int instruction = code.size();
+            boolean table = useTableSwitch(codes);
+            code.u1(table ? TABLESWITCH : LOOKUPSWITCH);
+            while (code.size() % 4 != 0) {
+                code.u1(0);
+            }
+            misses.add(new int[]{instruction, code.size(), 4});
+            code.u4(0);
+
+            int[] offsets = new int[codes.length];
+            if (table) {
+                int low = codes[0];
+                int high = codes[codes.length - 1];
+                code.u4(low);
+                code.u4(high);
+                int next = 0;
+                for (int value = low; value <= high; value++) {
+                    if (codes[next] == value) {
+                        offsets[next++] = code.size();
+                    } else {
+                        misses.add(new int[]{instruction, code.size(), 4});
+                    }
+                    code.u4(0);
+                }
+            } else {
+                code.u4(codes.length);
+                for (int i = 0; i < codes.length; i++) {
+                    code.u4(codes[i]);
+                    offsets[i] = code.size();
+                    code.u4(0);
+                }
+            }
+
+            for (int i = 0; i < codes.length; i++) {
+                code.frames.add(code.size());
+                code.patch(instruction, offsets[i], code.size() - instruction, true);
+                emitChild(compiledTree.getChild(node, codes[i]), code, misses);
+            }
+        }
+
+        /**
+         * Pushes an int constant with the shortest instruction.
+         */
+        private void push(int value, Code code) {
+            if (value >= -1 && value <= 5) {
+                code.u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.u1(BIPUSH);
+                code.u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.u1(SIPUSH);
+                code.u2(value);
+            } else {
+                code.u1(LDC_W);
+                code.u2(constantPool.integer(value));
+            }
+        }
+
+        /**
+         * Writes a method with a Code attribute. Every branch target has the locals of the method entry and an empty stack, so the
+         * StackMapTable consists of same frames only.
+         */
+        private byte[] methodInfo(int access, String name, String descriptor, int maxStack, int maxLocals, Code code) {
+            TreeSet<Integer> frames = code.frames;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                ByteArrayOutputStream stackMap = new ByteArrayOutputStream();
+                DataOutputStream stackMapOut = new DataOutputStream(stackMap);
+                int previous = -1;
+                for (int frame : frames) {
+                    /* same_frame_extended with the offset delta to the previous frame */
+                    stackMapOut.writeByte(251);
+                    stackMapOut.writeShort(frame - previous - 1);
+                    previous = frame;
+                }
+
+                out.writeShort(access);
+                out.writeShort(constantPool.utf8(name));
+                out.writeShort(constantPool.utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(constantPool.utf8("Code"));
+                int attributesLength = frames.isEmpty() ? 0 : 2 + 4 + 2 + stackMap.size();
+                out.writeInt(2 + 2 + 4 + code.size() + 2 + 2 + attributesLength);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.size());
+                out.write(code.bytes, 0, code.size());
+                out.writeShort(0);
+                if (frames.isEmpty()) {
+                    out.writeShort(0);
+                } else {
+                    out.writeShort(1);
+                    out.writeShort(constantPool.utf8("StackMapTable"));
+                    out.writeInt(2 + stackMap.size());
+                    out.writeShort(frames.size());
+                    stackMap.writeTo(out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * The growing bytecode of a method together with the offsets of its branch targets.
+     */
+    private static class Code {
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+        private final TreeSet<Integer> frames = new TreeSet<>();
+
+        int size() {
+            return size;
+        }
+
+        void u1(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >> 16);
+            u2(value);
+        }
+
+        /**
+         * Emits a branch instruction with an offset that is patched later.
+         *
+         * @return the position of the instruction, the position of the offset and the width of the offset.
+         */
+        int[] branch(int opcode) {
+            int instruction = size;
+            u1(opcode);
+            u2(0);
+            return new int[]{instruction, instruction + 1, 2};
+        }
+
+        /**
+         * Writes a branch offset relative to its instruction.
+         *
+         * @param instruction the position of the branch instruction.
+         * @param position    the position of the offset.
+         * @param offset      the offset to write.
+         * @param wide        whether the offset has four bytes instead of two.
+         */
+        void patch(int instruction, int position, int offset, boolean wide) {
+            if (!wide && offset > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("The tree has a node with too many branches to generate a predictor.");
+            }
+            int width = wide ? 4 : 2;
+            for (int i = 0; i < width; i++) {
+                bytes[position + i] = (byte) (offset >> (8 * (width - 1 - i)));
+            }
+        }
+    }
+
+    /**
+     * The constant pool of the generated class. Equal constants share one entry.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return add("U" + value, 1, 1, () -> out.writeUTF(value));
+        }
+
+        int integer(int value) {
+            return add("I" + value, 3, 1, () -> out.writeInt(value));
+        }
+
+        int doubleConstant(double value) {
+            /* a double takes two entries */
+            return add("D" + Double.doubleToRawLongBits(value), 6, 2, () -> out.writeDouble(value));
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return add("C" + internalName, 7, 1, () -> out.writeShort(name));
+        }
+
+        int string(String value) {
+            int utf8 = utf8(value);
+            return add("S" + value, 8, 1, () -> out.writeShort(utf8));
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerClass = classRef(owner);
+            int nameUtf8 = utf8(name);
+            int descriptorUtf8 = utf8(descriptor);
+            int nameAndType = add("N" + name + ":" + descriptor, 12, 1, () -> {
+                out.writeShort(nameUtf8);
+                out.writeShort(descriptorUtf8);
+            });
+            return add(tag + owner + "." + name + ":" + descriptor, tag, 1, () -> {
+                out.writeShort(ownerClass);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int add(String key, int tag, int slots, Entry entry) {
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            if (count + slots > 0xFFFF) {
+                throw new IllegalArgumentException("The tree has too many constants to generate a predictor.");
+            }
+            try {
+                out.writeByte(tag);
+                entry.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            index = count;
+            count += slots;
+            indices.put(key, index);
+            return index;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            out.flush();
+            bytes.writeTo(target);
+        }
+
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,637 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * One or more compiled decision trees in a versioned binary format that is scored directly from a memory mapping of the file. Nothing but
+ * the class labels is decoded when a model is opened, so even large forests load instantly, and all processes that map the same file share
+ * its pages in the page cache.
+ * <p>
+ * The file consists of a header, the label dictionary, a directory of the attributes and a directory of the trees. Every attribute with a
+ * dictionary owns an open addressing hash table from its symbols to their codes, so examples are encoded by probing the mapped table.
+ * Numeric attributes also store the value of every code for threshold splits on encoded rows. An attribute that the trees only split by
+ * thresholds is encoded by intervals instead: the sorted thresholds of all trees are the upper bounds of the intervals and a value is
+ * encoded by a binary search of the mapped bounds, so values that did not occur in the training data get the code of their interval. Every
+ * tree stores one fixed-size record per node and its child table, in the layout of {@link CompiledTree}. All trees of a model share the
+ * dictionaries; a model with several trees predicts by majority vote, ties are won by the lowest label id.
+ */
+public class MappedModel implements Predictor, EncodedPredictor {
+
+    /**
+     * The first four bytes of every model file, "PKIM" in ASCII.
+     */
+    private static final int MAGIC = 0x504B494D;
+
+    /**
+     * The version of the file format, increased with every incompatible change.
+     */
+    private static final int VERSION = 2;
+
+    /* byte offsets of the header fields */
+    private static final int HEADER_SIZE = 32;
+    private static final int NUM_ATTRIBUTES = 8;
+    private static final int NUM_LABELS = 12;
+    private static final int NUM_TREES = 16;
+    private static final int LABELS = 20;
+    private static final int ATTRIBUTES = 24;
+    private static final int TREES = 28;
+
+    /* an attribute record holds the dictionary offset, the number of symbols, the number of slots, the values offset and whether the codes
+     * are intervals, in which case the values are their ascending upper bounds */
+    private static final int ATTRIBUTE_RECORD_SIZE = 20;
+
+    /* a tree record holds the offset of its nodes and the offset of its child table */
+    private static final int TREE_RECORD_SIZE = 8;
+
+    /* a node record holds the attribute index, the child offset, the child count, the label id and the threshold */
+    private static final int NODE_RECORD_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int numAttributes;
+    private final int numTrees;
+    private final int attributes;
+    private final int trees;
+
+    /**
+     * The class labels, the only part of the file that is decoded.
+     */
+    private final String[] labels;
+
+    private MappedModel(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a model file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported model file version " + buffer.getInt(4) + ", expected " + VERSION + ".");
+        }
+        this.buffer = buffer;
+        this.numAttributes = buffer.getInt(NUM_ATTRIBUTES);
+        this.numTrees = buffer.getInt(NUM_TREES);
+        this.attributes = buffer.getInt(ATTRIBUTES);
+        this.trees = buffer.getInt(TREES);
+        this.labels = new String[buffer.getInt(NUM_LABELS)];
+        int labelTable = buffer.getInt(LABELS);
+        for (int labelId = 0; labelId < labels.length; labelId++) {
+            labels[labelId] = readString(buffer.getInt(labelTable + labelId * Integer.BYTES));
+        }
+    }
+
+    /**
+     * Maps a model file. The file must stay unchanged while the model is used.
+     *
+     * @param path the path of the model file.
+     * @return the mapped model.
+     * @throws IOException if the file cannot be mapped or is not a model file of a supported version.
+     */
+    public static MappedModel map(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB.");
+            }
+            return new MappedModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Wraps a model that is already in memory, for example one read from a stream.
+     *
+     * @param buffer the bytes of a model file, from position 0.
+     * @return the model.
+     * @throws IOException if the bytes are not a model file of a supported version.
+     */
+    public static MappedModel wrap(ByteBuffer buffer) throws IOException {
+        return new MappedModel(buffer.duplicate());
+    }
+
+    /**
+     * Writes a model of a single compiled tree.
+     *
+     * @param path         the path to write to.
+     * @param compiledTree the tree to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(String path, CompiledTree compiledTree) throws IOException {
+        write(path, List.of(compiledTree));
+    }
+
+    /**
+     * Writes a model of several compiled trees, for example the trees of a random forest. The trees must have been compiled with the same
+     * symbol tables, i.e. against the same dataset or read from the same XML file.
+     *
+     * @param path          the path to write to.
+     * @param compiledTrees the trees to write, at least one.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(String path, List<CompiledTree> compiledTrees) throws IOException {
+        byte[] model = toBytes(compiledTrees);
+        Files.write(Path.of(path), model);
+    }
+
+    /**
+     * Serializes compiled trees in the model format.
+     *
+     * @param compiledTrees the trees to serialize, at least one, all compiled with the same symbol tables.
+     * @return the bytes of the model file.
+     */
+    public static byte[] toBytes(List<CompiledTree> compiledTrees) {
+        if (compiledTrees.isEmpty()) {
+            throw new IllegalArgumentException("A model needs at least one tree.");
+        }
+        CompiledTree first = compiledTrees.get(0);
+        int numAttributes = first.getNumAttributes();
+
+        /* trees read from the same XML file share growing label tables, so the tree with the most labels knows all of them */
+        CompiledTree labelSource = first;
+        for (CompiledTree compiledTree : compiledTrees) {
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                if (compiledTree.getNumAttributes() != numAttributes
+                        || compiledTree.getSymbolTable(attributeIndex) != first.getSymbolTable(attributeIndex)) {
+                    throw new IllegalArgumentException("All trees of a model must share their symbol tables.");
+                }
+            }
+            if (compiledTree.getNumLabels() > labelSource.getNumLabels()) {
+                labelSource = compiledTree;
+            }
+        }
+        for (CompiledTree compiledTree : compiledTrees) {
+            for (int labelId = 0; labelId < compiledTree.getNumLabels(); labelId++) {
+                if (!compiledTree.getLabel(labelId).equals(labelSource.getLabel(labelId))) {
+                    throw new IllegalArgumentException("All trees of a model must share their label ids.");
+                }
+            }
+        }
+
+        ModelBuffer out = new ModelBuffer();
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(numAttributes);
+        out.putInt(labelSource.getNumLabels());
+        out.putInt(compiledTrees.size());
+        out.skip(HEADER_SIZE - out.size());
+
+        /* labels: the offset of every label string, then the strings */
+        out.putIntAt(LABELS, out.size());
+        int labelOffsets = out.reserve(labelSource.getNumLabels() * Integer.BYTES);
+        for (int labelId = 0; labelId < labelSource.getNumLabels(); labelId++) {
+            out.putIntAt(labelOffsets + labelId * Integer.BYTES, out.putString(labelSource.getLabel(labelId)));
+        }
+
+        /* attributes: one record per attribute, then the hash tables and value tables */
+        out.putIntAt(ATTRIBUTES, out.size());
+        int attributeRecords = out.reserve(numAttributes * ATTRIBUTE_RECORD_SIZE);
+        double[][] intervalBounds = getIntervalBounds(compiledTrees, numAttributes);
+        double[][] codeValues = new double[numAttributes][];
+        for (CompiledTree compiledTree : compiledTrees) {
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                double[] values = compiledTree.getCodeValues()[attributeIndex];
+                if (values != null && (codeValues[attributeIndex] == null || values.length > codeValues[attributeIndex].length)) {
+                    codeValues[attributeIndex] = values;
+                }
+            }
+        }
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            int record = attributeRecords + attributeIndex * ATTRIBUTE_RECORD_SIZE;
+            String[] symbols = new String[first.getSymbolTable(attributeIndex).size()];
+            if (intervalBounds[attributeIndex] != null) {
+                /* the symbol of an interval names its upper bound, like in trees read from XML */
+                codeValues[attributeIndex] = intervalBounds[attributeIndex];
+                symbols = new String[intervalBounds[attributeIndex].length];
+                for (int code = 0; code < symbols.length; code++) {
+                    symbols[code] = DecisionTreeNode.lessOrEqualKey(intervalBounds[attributeIndex][code]);
+                }
+            } else {
+                for (int code = 0; code < symbols.length; code++) {
+                    symbols[code] = first.getSymbolTable(attributeIndex).getSymbol(code);
+                }
+            }
+
+            int numSlots = Integer.highestOneBit(Math.max(1, symbols.length) * 2) * 2;
+            int slots = out.reserve(numSlots * Integer.BYTES);
+            for (int code = 0; code < symbols.length; code++) {
+                String symbol = symbols[code];
+                int entry = out.size();
+                out.putInt(code);
+                out.putString(symbol);
+                int slot = spread(symbol.hashCode()) & (numSlots - 1);
+                while (out.getIntAt(slots + slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & (numSlots - 1);
+                }
+                out.putIntAt(slots + slot * Integer.BYTES, entry);
+            }
+            out.putIntAt(record, slots);
+            out.putIntAt(record + 4, symbols.length);
+            out.putIntAt(record + 8, numSlots);
+            out.putIntAt(record + 12, -1);
+            out.putIntAt(record + 16, intervalBounds[attributeIndex] != null ? 1 : 0);
+            if (codeValues[attributeIndex] != null) {
+                out.putIntAt(record + 12, out.size());
+                for (int code = 0; code < symbols.length; code++) {
+                    out.putDouble(code < codeValues[attributeIndex].length ? codeValues[attributeIndex][code] : Double.NaN);
+                }
+            }
+        }
+
+        /* trees: one record per tree, then the node records and child tables */
+        out.putIntAt(TREES, out.size());
+        int treeRecords = out.reserve(compiledTrees.size() * TREE_RECORD_SIZE);
+        for (int tree = 0; tree < compiledTrees.size(); tree++) {
+            CompiledTree compiledTree = compiledTrees.get(tree);
+            int nodes = out.reserve(compiledTree.getNumNodes() * NODE_RECORD_SIZE);
+            int children = out.size();
+            int nextChild = 0;
+            for (int node = 0; node < compiledTree.getNumNodes(); node++) {
+                int record = nodes + node * NODE_RECORD_SIZE;
+                boolean inner = compiledTree.getAttributeIndex(node) >= 0;
+                out.putIntAt(record, compiledTree.getAttributeIndex(node));
+                out.putIntAt(record + 4, nextChild);
+                out.putIntAt(record + 8, inner ? compiledTree.getChildCount(node) : 0);
+                out.putIntAt(record + 12, compiledTree.getLabelId(node));
+                out.putDoubleAt(record + 16, compiledTree.getThreshold(node));
+                if (inner) {
+                    for (int code = 0; code < compiledTree.getChildCount(node); code++) {
+                        out.putInt(compiledTree.getChild(node, code));
+                    }
+                    nextChild += compiledTree.getChildCount(node);
+                }
+            }
+            out.putIntAt(treeRecords + tree * TREE_RECORD_SIZE, nodes);
+            out.putIntAt(treeRecords + tree * TREE_RECORD_SIZE + 4, children);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Finds the interval bounds of every attribute that the trees only split by thresholds. Trees read from XML already encode such
+     * attributes by intervals; for all other trees the bounds are the sorted distinct thresholds of all trees followed by positive
+     * infinity.
+     *
+     * @param compiledTrees the trees of the model.
+     * @param numAttributes the number of attributes.
+     * @return the ascending bounds of each interval encoded attribute, null for all other attributes.
+     */
+    private static double[][] getIntervalBounds(List<CompiledTree> compiledTrees, int numAttributes) {
+        double[][] intervalBounds = new double[numAttributes][];
+        List<TreeSet<Double>> thresholds = new ArrayList<>();
+        boolean[] splitByValues = new boolean[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            thresholds.add(new TreeSet<>());
+        }
+        for (CompiledTree compiledTree : compiledTrees) {
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                if (compiledTree.getIntervalBounds()[attributeIndex] != null) {
+                    intervalBounds[attributeIndex] = compiledTree.getIntervalBounds()[attributeIndex];
+                }
+            }
+            for (int node = 0; node < compiledTree.getNumNodes(); node++) {
+                int attributeIndex = compiledTree.getAttributeIndex(node);
+                if (attributeIndex < 0) {
+                    continue;
+                }
+                if (Double.isNaN(compiledTree.getThreshold(node))) {
+                    splitByValues[attributeIndex] = true;
+                } else {
+                    thresholds.get(attributeIndex).add(compiledTree.getThreshold(node));
+                }
+            }
+        }
+
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            if (intervalBounds[attributeIndex] != null || splitByValues[attributeIndex] || thresholds.get(attributeIndex).isEmpty()) {
+                continue;
+            }
+            double[] bounds = new double[thresholds.get(attributeIndex).size() + 1];
+            int interval = 0;
+            for (double threshold : thresholds.get(attributeIndex)) {
+                bounds[interval++] = threshold;
+            }
+            bounds[interval] = Double.POSITIVE_INFINITY;
+            intervalBounds[attributeIndex] = bounds;
+        }
+        return intervalBounds;
+    }
+
+    /**
+     * Predict the class of a single example. The categorical values are looked up in the mapped dictionaries once, the values of numeric
+     * attributes are compared with the thresholds directly.
+     *
+     * @param example the attribute array of the example to predict.
+     * @return the predicted class as a string, {@link DecisionTree#NO_LEAF_NODE} if no tree reaches a leaf node.
+     */
+    @Override
+    public String predict(Object[] example) {
+        int[] codes = encode(example);
+        double[] values = new double[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            values[attributeIndex] = Double.NaN;
+            if (hasValues(attributeIndex)) {
+                try {
+                    values[attributeIndex] = Dataset.toNumber(example[attributeIndex]);
+                } catch (NumberFormatException e) {
+                    /* NaN marks a value that cannot be compared */
+                }
+            }
+        }
+
+        int labelId = vote(codes, values);
+        return labelId < 0 ? DecisionTree.NO_LEAF_NODE : labels[labelId];
+    }
+
+    /**
+     * Predicts the label id of a row that is encoded with the dictionaries of this model. Threshold splits look up the value of a code in
+     * the mapped value tables.
+     *
+     * @param row the codes of the row, indexed by attribute.
+     * @return the predicted label id or -1 if no tree reaches a leaf node.
+     */
+    @Override
+    public int predict(int[] row) {
+        return vote(row, null);
+    }
+
+    /**
+     * Encodes an example with the dictionaries of this model. Interval encoded attributes get the code of the interval that contains their
+     * value. Unknown symbols and values that are not numbers are encoded as -1.
+     *
+     * @param example the example to encode.
+     * @return the codes of the example, indexed by attribute.
+     */
+    public int[] encode(Object[] example) {
+        int[] codes = new int[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            if (isIntervalEncoded(attributeIndex)) {
+                codes[attributeIndex] = getInterval(attributeIndex, example[attributeIndex]);
+            } else {
+                codes[attributeIndex] = getCode(attributeIndex, example[attributeIndex].toString());
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the code of the interval of a numeric value by a binary search of the mapped upper bounds, the first bound that is not less
+     * than the value.
+     *
+     * @param attributeIndex the index of an interval encoded attribute.
+     * @param value          the value to encode.
+     * @return the code of the interval or -1 if the value is not a number.
+     */
+    private int getInterval(int attributeIndex, Object value) {
+        double number;
+        try {
+            number = Dataset.toNumber(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (Double.isNaN(number)) {
+            return -1;
+        }
+        int record = attributes + attributeIndex * ATTRIBUTE_RECORD_SIZE;
+        int bounds = buffer.getInt(record + 12);
+        int low = 0;
+        int high = buffer.getInt(record + 4) - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getDouble(bounds + middle * Double.BYTES) < number) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the code of a symbol by probing the mapped hash table of the attribute.
+     *
+     * @param attributeIndex the attribute index.
+     * @param symbol         the symbol to look up.
+     * @return the code of the symbol or -1 if the symbol is unknown.
+     */
+    public int getCode(int attributeIndex, String symbol) {
+        int record = attributes + attributeIndex * ATTRIBUTE_RECORD_SIZE;
+        int slots = buffer.getInt(record);
+        int mask = buffer.getInt(record + 8) - 1;
+        byte[] bytes = null;
+        for (int slot = spread(symbol.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(slots + slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (bytes == null) {
+                bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            }
+            if (matches(entry + Integer.BYTES, bytes)) {
+                return buffer.getInt(entry);
+            }
+        }
+    }
+
+    @Override
+    public String getLabel(int labelId) {
+        return labels[labelId];
+    }
+
+    /**
+     * Returns the number of trees.
+     *
+     * @return the number of trees.
+     */
+    public int getNumTrees() {
+        return numTrees;
+    }
+
+    /**
+     * Walks one tree.
+     *
+     * @param tree   the index of the tree.
+     * @param codes  the codes of the row.
+     * @param values the numeric values of the row, null to take them from the value tables of the model.
+     * @return the label id of the reached leaf or -1 if the row reaches a missing branch.
+     */
+    private int predictTree(int tree, int[] codes, double[] values) {
+        int nodes = buffer.getInt(trees + tree * TREE_RECORD_SIZE);
+        int children = buffer.getInt(trees + tree * TREE_RECORD_SIZE + 4);
+        int record = nodes;
+        int attributeIndex = buffer.getInt(record);
+        while (attributeIndex >= 0) {
+            double threshold = buffer.getDouble(record + 16);
+            int code = codes[attributeIndex];
+            if (!Double.isNaN(threshold)) {
+                double value = values != null ? values[attributeIndex] : codeValue(attributeIndex, code);
+                if (Double.isNaN(value)) {
+                    return -1;
+                }
+                code = value <= threshold ? 0 : 1;
+            }
+            if (code < 0 || code >= buffer.getInt(record + 8)) {
+                return -1;
+            }
+            int child = buffer.getInt(children + (buffer.getInt(record + 4) + code) * Integer.BYTES);
+            if (child < 0) {
+                return -1;
+            }
+            record = nodes + child * NODE_RECORD_SIZE;
+            attributeIndex = buffer.getInt(record);
+        }
+        return buffer.getInt(record + 12);
+    }
+
+    /**
+     * Returns the label id that most trees predict, the lowest one on ties.
+     */
+    private int vote(int[] codes, double[] values) {
+        if (numTrees == 1) {
+            return predictTree(0, codes, values);
+        }
+        int[] votes = new int[labels.length];
+        for (int tree = 0; tree < numTrees; tree++) {
+            int labelId = predictTree(tree, codes, values);
+            if (labelId >= 0) {
+                votes[labelId]++;
+            }
+        }
+        int best = -1;
+        for (int labelId = 0; labelId < votes.length; labelId++) {
+            if (votes[labelId] > 0 && (best == -1 || votes[labelId] > votes[best])) {
+                best = labelId;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasValues(int attributeIndex) {
+        return buffer.getInt(attributes + attributeIndex * ATTRIBUTE_RECORD_SIZE + 12) >= 0;
+    }
+
+    private boolean isIntervalEncoded(int attributeIndex) {
+        return buffer.getInt(attributes + attributeIndex * ATTRIBUTE_RECORD_SIZE + 16) != 0;
+    }
+
+    /**
+     * Returns the numeric value of a code from the value table of an attribute, NaN if the code or the table is missing.
+     */
+    private double codeValue(int attributeIndex, int code) {
+        int record = attributes + attributeIndex * ATTRIBUTE_RECORD_SIZE;
+        int values = buffer.getInt(record + 12);
+        if (values < 0 || code < 0 || code >= buffer.getInt(record + 4)) {
+            return Double.NaN;
+        }
+        return buffer.getDouble(values + code * Double.BYTES);
+    }
+
+    private boolean matches(int string, byte[] bytes) {
+        if (buffer.getInt(string) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(string + Integer.BYTES + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString(int string) {
+        byte[] bytes = new byte[buffer.getInt(string)];
+        buffer.get(string + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Spreads the bits of a string hash code, so similar symbols do not fill neighboring slots.
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+
+    /**
+     * Growable big-endian byte buffer that allows patching offsets after the data they point to is written.
+     */
+    private static class ModelBuffer {
+
+        private ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+
+        int size() {
+            return bytes.position();
+        }
+
+        int reserve(int length) {
+            int offset = size();
+            skip(length);
+            return offset;
+        }
+
+        void skip(int length) {
+            ensureCapacity(length);
+            bytes.position(bytes.position() + length);
+        }
+
+        void putInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            bytes.putInt(value);
+        }
+
+        void putDouble(double value) {
+            ensureCapacity(Double.BYTES);
+            bytes.putDouble(value);
+        }
+
+        /**
+         * Appends a string as its length followed by its UTF-8 bytes.
+         *
+         * @return the offset of the string.
+         */
+        int putString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int offset = size();
+            putInt(encoded.length);
+            ensureCapacity(encoded.length);
+            bytes.put(encoded);
+            return offset;
+        }
+
+        void putIntAt(int offset, int value) {
+            bytes.putInt(offset, value);
+        }
+
+        void putDoubleAt(int offset, double value) {
+            bytes.putDouble(offset, value);
+        }
+
+        int getIntAt(int offset) {
+            return bytes.getInt(offset);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes.array(), bytes.position());
+        }
+
+        private void ensureCapacity(int length) {
+            if (bytes.remaining() < length) {
+                long capacity = Math.max((long) bytes.capacity() * 2, (long) bytes.position() + length);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("A model must be smaller than 2 GB.");
+                }
+                ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+                bytes.flip();
+                grown.put(bytes);
+                bytes = grown;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.uni_trier.wi2.pki.tree;
+
+/**
+ * Common interface of the models that predict the class of a single example.
+ */
+public interface Predictor {
+
+    /**
+     * Predict the class of a single example.
+     *
+     * @param example the attribute array of the example to predict.
+     * @return the predicted class as a string
+     */
+    String predict(Object[] example);
+}
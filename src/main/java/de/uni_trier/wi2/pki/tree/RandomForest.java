@@ -0,0 +1,131 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ensemble of decision trees that were trained on bootstrap samples of the same dataset. The forest predicts the class that most trees vote
+ * for; trees that do not reach a leaf node do not vote.
+ */
+public class RandomForest implements Predictor {
+
+    /**
+     * The trees of the forest.
+     */
+    private final List<DecisionTree> trees;
+
+    /**
+     * The classes in the order of their label ids, which decides ties.
+     */
+    private final SymbolTable labels;
+
+    /**
+     * Constructor for a random forest.
+     *
+     * @param trees  The trained trees, at least one.
+     * @param labels The classes of the training data, the code of a class is its label id.
+     */
+    public RandomForest(List<DecisionTree> trees, SymbolTable labels) {
+        if (trees.isEmpty()) {
+            throw new IllegalArgumentException("A random forest needs at least one tree.");
+        }
+        this.trees = List.copyOf(trees);
+
+        /* a private copy, so interning into the table of the training data cannot change the label ids */
+        String[] symbols = new String[labels.size()];
+        for (int labelId = 0; labelId < symbols.length; labelId++) {
+            symbols[labelId] = labels.getSymbol(labelId);
+        }
+        this.labels = SymbolTable.of(symbols);
+    }
+
+    /**
+     * Predict the class of a single example by majority vote. On ties the class with the lowest label id wins, like in
+     * {@link #predictAll(Dataset, int, int[], int)}.
+     *
+     * @param example the attribute array of the example to predict.
+     * @return the predicted class as a string, {@link DecisionTree#NO_LEAF_NODE} if no tree reaches a leaf node.
+     */
+    @Override
+    public String predict(Object[] example) {
+        int[] votes = new int[labels.size()];
+        for (DecisionTree tree : trees) {
+            int labelId = labels.getCode(tree.predict(example));
+            if (labelId >= 0) {
+                votes[labelId]++;
+            }
+        }
+
+        int best = -1;
+        for (int labelId = 0; labelId < votes.length; labelId++) {
+            if (votes[labelId] > 0 && (best == -1 || votes[labelId] > votes[best])) {
+                best = labelId;
+            }
+        }
+        return best == -1 ? DecisionTree.NO_LEAF_NODE : labels.getSymbol(best);
+    }
+
+    /**
+     * Predict the label ids of all rows of an encoded dataset by majority vote. Every tree is compiled once, then the rows are predicted in
+     * parallel chunks. On ties the class with the lowest label id wins.
+     *
+     * @param dataset    the encoded examples.
+     * @param labelIndex the index of the label attribute, the label ids are the codes of its symbol table.
+     * @param labelIds   receives the predicted label id of every row, -1 for rows that no tree classifies. Must hold at least dataset.size()
+     *                   entries.
+     * @param chunkSize  the number of rows predicted by one task.
+     * @return the filled label id array.
+     */
+    public int[] predictAll(Dataset dataset, int labelIndex, int[] labelIds, int chunkSize) {
+        BatchPrediction.checkCapacity(dataset.size(), labelIds);
+        CompiledTree[] compiledTrees = new CompiledTree[trees.size()];
+        for (int i = 0; i < compiledTrees.length; i++) {
+            compiledTrees[i] = trees.get(i).compile(dataset, labelIndex);
+        }
+
+        int numLabels = dataset.getCardinality(labelIndex);
+        BatchPrediction.forEachChunk(dataset.size(), chunkSize, (from, to) -> {
+            int[] votes = new int[numLabels];
+            for (int row = from; row < to; row++) {
+                for (CompiledTree compiledTree : compiledTrees) {
+                    int labelId = compiledTree.predict(dataset, row);
+                    if (labelId >= 0) {
+                        votes[labelId]++;
+                    }
+                }
+
+                /* pick the majority and reset the counts for the next row */
+                int best = -1;
+                for (int labelId = 0; labelId < numLabels; labelId++) {
+                    if (votes[labelId] > 0 && (best == -1 || votes[labelId] > votes[best])) {
+                        best = labelId;
+                    }
+                }
+                labelIds[row] = best;
+                Arrays.fill(votes, 0);
+            }
+        });
+        return labelIds;
+    }
+
+    /**
+     * Returns the trees of the forest.
+     *
+     * @return an unmodifiable list of the trees.
+     */
+    public List<DecisionTree> getTrees() {
+        return trees;
+    }
+
+    /**
+     * Returns the number of trees.
+     *
+     * @return the number of trees.
+     */
+    public int size() {
+        return trees.size();
+    }
+}
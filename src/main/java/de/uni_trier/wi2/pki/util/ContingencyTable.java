@@ -0,0 +1,162 @@
+package de.uni_trier.wi2.pki.util;
+
+import java.util.Arrays;
+
+/**
+ * Attribute value x class count table that is used to compute split measures.
+ * The storage is kept between calls of {@link #reset(int, int)}, so one table can be reused for every attribute of a node.
+ */
+public class ContingencyTable {
+
+    /**
+     * The number of distinct attribute values (rows of the table).
+     */
+    private int numValues;
+
+    /**
+     * The number of distinct classes (columns of the table).
+     */
+    private int numClasses;
+
+    /**
+     * The counts in row-major order, i.e. the count of value v and class c is stored at v * numClasses + c.
+     */
+    private int[] counts = new int[0];
+
+    /**
+     * The number of examples per attribute value.
+     */
+    private int[] valueTotals = new int[0];
+
+    /**
+     * The number of examples per class.
+     */
+    private int[] classTotals = new int[0];
+
+    /**
+     * The total number of counted examples.
+     */
+    private int total;
+
+    /**
+     * Constructor for an empty contingency table.
+     *
+     * @param numValues  The number of distinct attribute values.
+     * @param numClasses The number of distinct classes.
+     */
+    public ContingencyTable(int numValues, int numClasses) {
+        reset(numValues, numClasses);
+    }
+
+    /**
+     * Clears the table and resizes it to the given dimensions. The backing arrays are only reallocated if they are too small.
+     *
+     * @param numValues  The number of distinct attribute values.
+     * @param numClasses The number of distinct classes.
+     */
+    public void reset(int numValues, int numClasses) {
+        this.numValues = numValues;
+        this.numClasses = numClasses;
+        this.total = 0;
+
+        int cells = numValues * numClasses;
+        if (counts.length < cells) {
+            counts = new int[cells];
+        } else {
+            Arrays.fill(counts, 0, cells, 0);
+        }
+        if (valueTotals.length < numValues) {
+            valueTotals = new int[numValues];
+        } else {
+            Arrays.fill(valueTotals, 0, numValues, 0);
+        }
+        if (classTotals.length < numClasses) {
+            classTotals = new int[numClasses];
+        } else {
+            Arrays.fill(classTotals, 0, numClasses, 0);
+        }
+    }
+
+    /**
+     * Enlarges the table to at least the given dimensions while keeping all counts. Used by learners whose dictionaries grow while they count.
+     *
+     * @param numValues  The minimum number of distinct attribute values.
+     * @param numClasses The minimum number of distinct classes.
+     */
+    public void grow(int numValues, int numClasses) {
+        if (numValues <= this.numValues && numClasses <= this.numClasses) {
+            return;
+        }
+        int newNumValues = Math.max(numValues, this.numValues);
+        int newNumClasses = Math.max(numClasses, this.numClasses);
+
+        /* the cells are laid out by value and class, so a new class count moves every row of the table */
+        int[] newCounts = new int[newNumValues * newNumClasses];
+        for (int value = 0; value < this.numValues; value++) {
+            System.arraycopy(counts, value * this.numClasses, newCounts, value * newNumClasses, this.numClasses);
+        }
+        counts = newCounts;
+        valueTotals = Arrays.copyOf(valueTotals, Math.max(valueTotals.length, newNumValues));
+        classTotals = Arrays.copyOf(classTotals, Math.max(classTotals.length, newNumClasses));
+        this.numValues = newNumValues;
+        this.numClasses = newNumClasses;
+    }
+
+    /**
+     * Counts a single example.
+     *
+     * @param value The code of the attribute value of the example.
+     * @param label The code of the class of the example.
+     */
+    public void add(int value, int label) {
+        counts[value * numClasses + label]++;
+        valueTotals[value]++;
+        classTotals[label]++;
+        total++;
+    }
+
+    /**
+     * Moves a counted example to another attribute value, e.g. from the right to the left side of a threshold split.
+     *
+     * @param fromValue The code of the attribute value the example was counted for.
+     * @param toValue   The code of the new attribute value of the example.
+     * @param label     The code of the class of the example.
+     */
+    public void move(int fromValue, int toValue, int label) {
+        counts[fromValue * numClasses + label]--;
+        valueTotals[fromValue]--;
+        counts[toValue * numClasses + label]++;
+        valueTotals[toValue]++;
+    }
+
+    public int getNumValues() {
+        return numValues;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    /**
+     * Returns the number of examples with the given attribute value and class.
+     *
+     * @param value The code of the attribute value.
+     * @param label The code of the class.
+     * @return the count of the cell.
+     */
+    public int getCount(int value, int label) {
+        return counts[value * numClasses + label];
+    }
+
+    public int getValueTotal(int value) {
+        return valueTotals[value];
+    }
+
+    public int getClassTotal(int label) {
+        return classTotals[label];
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
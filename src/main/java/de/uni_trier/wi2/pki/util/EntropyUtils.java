@@ -1,13 +1,35 @@
 package de.uni_trier.wi2.pki.util;
 
+import de.uni_trier.wi2.pki.data.Dataset;
+
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Contains methods that help with computing the entropy.
  */
 public class EntropyUtils {
+
+    /**
+     * The natural logarithm of 2, used to convert to log2.
+     */
+    static final double LOG_2 = Math.log(2);
+
+    /**
+     * The default number of entries of the n * log2(n) lookup table.
+     */
+    public static final int DEFAULT_LOOKUP_TABLE_SIZE = 1 << 16;
+
+    /**
+     * n * log2(n) for every count n below the table size. The array is never modified after it was published, a new size replaces it.
+     */
+    private static volatile double[] nLog2NTable = createNLog2NTable(DEFAULT_LOOKUP_TABLE_SIZE);
+
+    /**
+     * The criterion of the information gain methods.
+     */
+    static final SplitCriterion INFORMATION_GAIN = new InformationGain();
+
     /**
      * Calculates the information gain for all attributes
      *
@@ -18,19 +40,218 @@ public class EntropyUtils {
      */
     public static List<Double> calcInformationGain(Collection<Object[]> matrix, int labelIndex) {
         List<Double> informationGains = new ArrayList<>();
+        for (double gain : calcInformationGainPerAttribute(matrix, labelIndex)) {
+            informationGains.add(gain);
+        }
+
+        informationGains.remove(labelIndex);
+
+        return informationGains;
+    }
+
+    /**
+     * Calculates the information gain for all attributes. In contrast to {@link #calcInformationGain(Collection, int)} the array is indexed by the
+     * attribute index, the entry of the label attribute is -1.
+     *
+     * @param matrix     Matrix of the training data (example data), e.g. ArrayList<String[]>
+     * @param labelIndex the index of the attribute that contains the class.
+     * @return the information gain for each attribute index
+     */
+    public static double[] calcInformationGainPerAttribute(Collection<Object[]> matrix, int labelIndex) {
+        return calcScorePerAttribute(matrix, labelIndex, INFORMATION_GAIN);
+    }
+
+    /**
+     * Scores all attributes with a split criterion, the array is indexed by the attribute index.
+     *
+     * @param matrix     Matrix of the training data (example data), e.g. ArrayList<String[]>
+     * @param labelIndex the index of the attribute that contains the class.
+     * @param criterion  the split criterion to score the attributes with.
+     * @return the score for each attribute index, the entry of the label attribute is -1
+     */
+    public static double[] calcScorePerAttribute(Collection<Object[]> matrix, int labelIndex, SplitCriterion criterion) {
         int numAttributes = matrix.iterator().next().length;
+        double[] scores = new double[numAttributes];
+
+        /* the labels are encoded once and reused for the tables of all attributes */
+        Map<Object, Integer> labelCodes = new HashMap<>();
+        int[] labels = encodeColumn(matrix, labelIndex, labelCodes);
+        ContingencyTable table = new ContingencyTable(0, labelCodes.size());
+
         for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
             if (attributeIndex != labelIndex) {
-                double gain = calcInformationGainForAttribute(attributeIndex, matrix, labelIndex);
-                informationGains.add(gain);
+                fillContingencyTable(table, matrix, attributeIndex, labels, labelCodes.size());
+                scores[attributeIndex] = criterion.score(table);
             } else {
-                informationGains.add(-1.0);
+                scores[attributeIndex] = -1.0;
             }
         }
 
-        informationGains.remove(labelIndex);
+        return scores;
+    }
 
-        return informationGains;
+    /**
+     * Calculates the information gain for all attributes of the given rows of an encoded dataset.
+     *
+     * @param dataset    the encoded training data.
+     * @param rows       the row indices of the examples.
+     * @param from       the first position in rows (inclusive).
+     * @param to         the last position in rows (exclusive).
+     * @param labelIndex the index of the attribute that contains the class.
+     * @return the information gain for each attribute index, the entry of the label attribute is -1
+     */
+    public static double[] calcInformationGainPerAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex) {
+        return calcInformationGainPerAttribute(dataset, rows, from, to, labelIndex, false);
+    }
+
+    /**
+     * Calculates the information gain for all attributes of the given rows of an encoded dataset, optionally scoring the attributes concurrently.
+     * The parallel evaluation runs as a parallel stream, i.e. on the fork/join pool of the calling task or on the common pool. Called from a
+     * subtree task it therefore shares the workers with the subtree parallelism instead of starting additional threads.
+     * Numeric attributes are split on thresholds instead of their values and are scored by
+     * {@link #calcBestThreshold(Dataset, int[], int, int, int, int, double[])}, their entry is -1 like the entry of the label attribute.
+     *
+     * @param dataset    the encoded training data.
+     * @param rows       the row indices of the examples.
+     * @param from       the first position in rows (inclusive).
+     * @param to         the last position in rows (exclusive).
+     * @param labelIndex the index of the attribute that contains the class.
+     * @param parallel   whether the attributes are scored concurrently.
+     * @return the information gain for each attribute index, the entry of the label attribute is -1
+     */
+    public static double[] calcInformationGainPerAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex, boolean parallel) {
+        return calcInformationGainPerAttribute(dataset, rows, from, to, labelIndex, null, parallel);
+    }
+
+    /**
+     * Calculates the information gain for the candidate attributes of the given rows of an encoded dataset, see
+     * {@link #calcInformationGainPerAttribute(Dataset, int[], int, int, int, boolean)}. The entries of all other attributes are -1.
+     *
+     * @param dataset    the encoded training data.
+     * @param rows       the row indices of the examples.
+     * @param from       the first position in rows (inclusive).
+     * @param to         the last position in rows (exclusive).
+     * @param labelIndex the index of the attribute that contains the class.
+     * @param candidates whether each attribute is scored, null to score all attributes.
+     * @param parallel   whether the attributes are scored concurrently.
+     * @return the information gain for each attribute index, the entry of the label attribute is -1
+     */
+    public static double[] calcInformationGainPerAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex, boolean[] candidates,
+                                                           boolean parallel) {
+        return calcScorePerAttribute(dataset, rows, from, to, labelIndex, INFORMATION_GAIN, candidates, parallel);
+    }
+
+    /**
+     * Scores the candidate attributes of the given rows of an encoded dataset with a split criterion, see
+     * {@link #calcInformationGainPerAttribute(Dataset, int[], int, int, int, boolean)}. The entries of all other attributes are -1.
+     *
+     * @param dataset    the encoded training data.
+     * @param rows       the row indices of the examples.
+     * @param from       the first position in rows (inclusive).
+     * @param to         the last position in rows (exclusive).
+     * @param labelIndex the index of the attribute that contains the class.
+     * @param criterion  the split criterion to score the attributes with.
+     * @param candidates whether each attribute is scored, null to score all attributes.
+     * @param parallel   whether the attributes are scored concurrently.
+     * @return the score for each attribute index, the entry of the label attribute is -1
+     */
+    public static double[] calcScorePerAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex, SplitCriterion criterion,
+                                                 boolean[] candidates, boolean parallel) {
+        double[] scores = new double[dataset.getNumAttributes()];
+
+        if (parallel) {
+            /* every attribute gets its own table, the workers only write their own gain entry */
+            IntStream.range(0, scores.length).parallel().forEach(attributeIndex -> {
+                if (attributeIndex != labelIndex && !dataset.isNumeric(attributeIndex) && (candidates == null || candidates[attributeIndex])) {
+                    ContingencyTable table = new ContingencyTable(0, dataset.getCardinality(labelIndex));
+                    fillContingencyTable(table, dataset, rows, from, to, attributeIndex, labelIndex);
+                    scores[attributeIndex] = criterion.score(table);
+                } else {
+                    scores[attributeIndex] = -1.0;
+                }
+            });
+            return scores;
+        }
+
+        ContingencyTable table = new ContingencyTable(0, dataset.getCardinality(labelIndex));
+        for (int attributeIndex = 0; attributeIndex < scores.length; attributeIndex++) {
+            if (attributeIndex != labelIndex && !dataset.isNumeric(attributeIndex) && (candidates == null || candidates[attributeIndex])) {
+                fillContingencyTable(table, dataset, rows, from, to, attributeIndex, labelIndex);
+                scores[attributeIndex] = criterion.score(table);
+            } else {
+                scores[attributeIndex] = -1.0;
+            }
+        }
+
+        return scores;
+    }
+
+    /**
+     * Finds the threshold of the binary split value &lt;= threshold with the highest information gain on a numeric attribute, see
+     * {@link #calcBestThreshold(Dataset, int[], int, int, int, int, SplitCriterion, double[])}.
+     *
+     * @param dataset        the encoded training data.
+     * @param sortedRows     the row indices, sorted ascending by the value of the attribute in [from, to).
+     * @param from           the first position in sortedRows (inclusive).
+     * @param to             the last position in sortedRows (exclusive).
+     * @param attributeIndex the index of a numeric attribute.
+     * @param labelIndex     the index of the attribute that contains the class.
+     * @param result         receives the information gain at index 0 and the threshold at index 1, -1 and NaN if all values are equal.
+     */
+    public static void calcBestThreshold(Dataset dataset, int[] sortedRows, int from, int to, int attributeIndex, int labelIndex, double[] result) {
+        calcBestThreshold(dataset, sortedRows, from, to, attributeIndex, labelIndex, INFORMATION_GAIN, result);
+    }
+
+    /**
+     * Finds the threshold of the binary split value &lt;= threshold with the highest score on a numeric attribute. The rows must be sorted by
+     * the value of the attribute, so all candidate thresholds are scored in one scan that moves the rows one at a time from the second to the
+     * first row of a two-row contingency table. The candidates are the midpoints between consecutive distinct values; on ties the lowest
+     * threshold wins.
+     *
+     * @param dataset        the encoded training data.
+     * @param sortedRows     the row indices, sorted ascending by the value of the attribute in [from, to).
+     * @param from           the first position in sortedRows (inclusive).
+     * @param to             the last position in sortedRows (exclusive).
+     * @param attributeIndex the index of a numeric attribute.
+     * @param labelIndex     the index of the attribute that contains the class.
+     * @param criterion      the split criterion to score the thresholds with.
+     * @param result         receives the score at index 0 and the threshold at index 1, -1 and NaN if all values are equal.
+     */
+    public static void calcBestThreshold(Dataset dataset, int[] sortedRows, int from, int to, int attributeIndex, int labelIndex,
+                                         SplitCriterion criterion, double[] result) {
+        double[] values = dataset.getNumericColumn(attributeIndex);
+        int[] labels = dataset.getColumn(labelIndex);
+
+        /* value 0 of the table is the side less than or equal to the threshold, value 1 the greater side */
+        ContingencyTable table = new ContingencyTable(2, dataset.getCardinality(labelIndex));
+        for (int i = from; i < to; i++) {
+            table.add(1, labels[sortedRows[i]]);
+        }
+
+        /* move one row at a time from the right to the left side, a threshold is only possible between two distinct values */
+        double bestScore = -1.0;
+        double bestThreshold = Double.NaN;
+        for (int i = from; i < to - 1; i++) {
+            table.move(1, 0, labels[sortedRows[i]]);
+            double value = values[sortedRows[i]];
+            double nextValue = values[sortedRows[i + 1]];
+            if (!(value < nextValue)) {
+                continue;
+            }
+
+            double score = criterion.score(table);
+            if (score > bestScore) {
+                bestScore = score;
+                bestThreshold = value + (nextValue - value) / 2;
+                /* the midpoint of two neighbouring doubles may round up to the larger one */
+                if (!(bestThreshold >= value && bestThreshold < nextValue)) {
+                    bestThreshold = value;
+                }
+            }
+        }
+
+        result[0] = bestScore;
+        result[1] = bestThreshold;
     }
 
     /**
@@ -44,12 +265,117 @@ public class EntropyUtils {
      */
 
     public static double calcInformationGainForAttribute(int attributeIndex, Collection<Object[]> matrix, int labelIndex) {
-        Map<Object, Long> labelCounts = groupByLabelIndexOrAttribute(matrix, labelIndex);
+        return calcInformationGain(buildContingencyTable(matrix, attributeIndex, labelIndex));
+    }
 
-        long[] counts = labelCounts.values().stream().mapToLong(Long::longValue).toArray();
-        double totalEntropy = calculateEntropy(counts);
-        double restEntropy = calculateRestEntropyForAttribute(attributeIndex, matrix, labelIndex);
-        return totalEntropy - restEntropy;
+    /**
+     * Calculates the information gain of a split from its contingency table, i.e. the entropy of the class totals minus the weighted entropy of every
+     * attribute value row. With f(n) = n * log2(n) this is (f(N) - sum(f(n_c)) - sum(f(n_v)) + sum(f(n_vc))) / N, so the gain is computed in one
+     * pass over the table with lookups and additions only.
+     *
+     * @param table the attribute value x class count table of the split.
+     * @return the information gain of the split
+     */
+    public static double calcInformationGain(ContingencyTable table) {
+        int total = table.getTotal();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        double sum = nLog2N(total);
+        for (int label = 0; label < table.getNumClasses(); label++) {
+            sum -= nLog2N(table.getClassTotal(label));
+        }
+        for (int value = 0; value < table.getNumValues(); value++) {
+            if (table.getValueTotal(value) == 0) {
+                continue;
+            }
+            sum -= nLog2N(table.getValueTotal(value));
+            for (int label = 0; label < table.getNumClasses(); label++) {
+                sum += nLog2N(table.getCount(value, label));
+            }
+        }
+        return sum / total;
+    }
+
+    /**
+     * Calculates the entropy of the class distribution of a contingency table.
+     *
+     * @param table the attribute value x class count table.
+     * @return the entropy of the class totals
+     */
+    public static double calculateTotalEntropy(ContingencyTable table) {
+        int total = table.getTotal();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        double sum = nLog2N(total);
+        for (int label = 0; label < table.getNumClasses(); label++) {
+            sum -= nLog2N(table.getClassTotal(label));
+        }
+        return sum / total;
+    }
+
+    /**
+     * Calculates the rest entropy of a contingency table, i.e. the entropy of every attribute value weighted by its relative frequency.
+     *
+     * @param table the attribute value x class count table.
+     * @return the rest entropy of the split
+     */
+    public static double calculateRestEntropy(ContingencyTable table) {
+        int total = table.getTotal();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        /* the weight n_v / N cancels the 1 / n_v of the entropy of every value */
+        double sum = 0.0;
+        for (int value = 0; value < table.getNumValues(); value++) {
+            if (table.getValueTotal(value) == 0) {
+                continue;
+            }
+            sum += nLog2N(table.getValueTotal(value));
+            for (int label = 0; label < table.getNumClasses(); label++) {
+                sum -= nLog2N(table.getCount(value, label));
+            }
+        }
+        return sum / total;
+    }
+
+    /**
+     * Calculates the split information of a contingency table, i.e. the entropy of the distribution of the attribute values.
+     *
+     * @param table the attribute value x class count table.
+     * @return the entropy of the value totals
+     */
+    public static double calculateSplitInformation(ContingencyTable table) {
+        int total = table.getTotal();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        double sum = nLog2N(total);
+        for (int value = 0; value < table.getNumValues(); value++) {
+            sum -= nLog2N(table.getValueTotal(value));
+        }
+        return sum / total;
+    }
+
+    /**
+     * Builds the attribute value x class count table for a single attribute in one pass over the matrix.
+     *
+     * @param matrix         Matrix of the training data (example data), e.g. ArrayList<String[]>
+     * @param attributeIndex the index of the attribute to count.
+     * @param labelIndex     the index of the attribute that contains the class.
+     * @return the filled contingency table
+     */
+    public static ContingencyTable buildContingencyTable(Collection<Object[]> matrix, int attributeIndex, int labelIndex) {
+        Map<Object, Integer> labelCodes = new HashMap<>();
+        int[] labels = encodeColumn(matrix, labelIndex, labelCodes);
+        ContingencyTable table = new ContingencyTable(0, labelCodes.size());
+        fillContingencyTable(table, matrix, attributeIndex, labels, labelCodes.size());
+        return table;
     }
 
     /**
@@ -94,12 +420,16 @@ public class EntropyUtils {
      */
 
     public static double calculateEntropy(long[] counts) {
-        double entropy = 0.0;
-        int size = Math.toIntExact(Arrays.stream(counts).sum());
+        long size = Arrays.stream(counts).sum();
+        if (size == 0) {
+            return 0.0;
+        }
+
+        double sum = nLog2N(size);
         for (long count : counts) {
-            entropy = entropy - ((double) count / size) * (Math.log((double) count / size) / Math.log(2));
+            sum -= nLog2N(count);
         }
-        return entropy;
+        return sum / size;
     }
 
     /**
@@ -113,41 +443,119 @@ public class EntropyUtils {
      */
 
     public static double calculateRestEntropyForAttribute(int attributeIndex, Collection<Object[]> matrix, int labelIndex) {
-        Map<Object, Long> labelCounts = groupByLabelIndexOrAttribute(matrix, attributeIndex);
-        double[] entropies = new double[labelCounts.size()];
-        long[] temp = new long[labelCounts.size()];
-        int count = 0;
-        double restEntropy = 0;
+        return calculateRestEntropy(buildContingencyTable(matrix, attributeIndex, labelIndex));
+    }
+
+    /**
+     * Fills the given table with the counts of a single attribute of an encoded dataset. The dictionary codes are used as table indices.
+     *
+     * @param table          the table to reset and fill.
+     * @param dataset        the encoded training data.
+     * @param rows           the row indices of the examples.
+     * @param from           the first position in rows (inclusive).
+     * @param to             the last position in rows (exclusive).
+     * @param attributeIndex the index of the attribute to count.
+     * @param labelIndex     the index of the attribute that contains the class.
+     */
+    public static void fillContingencyTable(ContingencyTable table, Dataset dataset, int[] rows, int from, int to, int attributeIndex, int labelIndex) {
+        int[] values = dataset.getColumn(attributeIndex);
+        int[] labels = dataset.getColumn(labelIndex);
 
-        for (int i = 0; i < labelCounts.size(); i++) {
-            Object value = labelCounts.keySet().toArray()[i];
-            entropies[i] = calculateEntropyForAttributeValue(attributeIndex, matrix, value, labelIndex);
+        table.reset(dataset.getCardinality(attributeIndex), dataset.getCardinality(labelIndex));
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            table.add(values[row], labels[row]);
         }
+    }
+
+    /**
+     * Fills the given table with the counts of a single attribute. The attribute values are coded in the order of their first occurrence.
+     *
+     * @param table          the table to reset and fill.
+     * @param matrix         Matrix of the training data (example data), e.g. ArrayList<String[]>
+     * @param attributeIndex the index of the attribute to count.
+     * @param labels         the class codes of the rows of the matrix.
+     * @param numClasses     the number of distinct classes.
+     */
+    private static void fillContingencyTable(ContingencyTable table, Collection<Object[]> matrix, int attributeIndex, int[] labels, int numClasses) {
+        Map<Object, Integer> valueCodes = new HashMap<>();
+        int[] values = encodeColumn(matrix, attributeIndex, valueCodes);
 
-        for (long value : labelCounts.values()){
-            temp[count] = value;
-            count++;
+        table.reset(valueCodes.size(), numClasses);
+        for (int i = 0; i < values.length; i++) {
+            table.add(values[i], labels[i]);
         }
+    }
 
-        for (int i = 0; i < entropies.length; i++) {
-            restEntropy = restEntropy + (((double) temp[i] /matrix.size())* entropies[i]);
+    /**
+     * Replaces the values of a column by dense integer codes.
+     *
+     * @param matrix      Matrix of the training data (example data), e.g. ArrayList<String[]>
+     * @param columnIndex the index of the column to encode.
+     * @param codes       the map that receives the code of every distinct value.
+     * @return the codes of the column in row order
+     */
+    private static int[] encodeColumn(Collection<Object[]> matrix, int columnIndex, Map<Object, Integer> codes) {
+        int[] encoded = new int[matrix.size()];
+        int i = 0;
+        for (Object[] row : matrix) {
+            Integer code = codes.get(row[columnIndex]);
+            if (code == null) {
+                code = codes.size();
+                codes.put(row[columnIndex], code);
+            }
+            encoded[i++] = code;
         }
+        return encoded;
+    }
 
-        return restEntropy;
+    /**
+     * Computes n * log2(n), which is 0 for n = 0. Counts below the size of the lookup table are looked up, larger counts are computed.
+     * The entropy of counts n_1, ..., n_k with N = sum(n_i) is (f(N) - sum(f(n_i))) / N for f(n) = n * log2(n).
+     *
+     * @param n a count, at least 0.
+     * @return n * log2(n)
+     */
+    static double nLog2N(long n) {
+        double[] table = nLog2NTable;
+        if (n < table.length) {
+            return table[(int) n];
+        }
+        return n * (Math.log(n) / LOG_2);
     }
 
     /**
-     * Groups the matrix by the label index or attribute.
+     * Sets the number of counts whose value of n * log2(n) is looked up instead of computed. The table is rebuilt once; it takes 8 bytes per
+     * entry and should cover the typical node sizes of the trained data.
      *
-     * @param matrix     Matrix of the training data (example data), e.g. ArrayList<String[]>
-     * @param labelIndex the index of the attribute that contains the class. If the dataset is [Temperature,Weather,PlayFootball] and you want to predict playing
-     *                   football, than labelIndex is 2
-     * @return a map with the counts of the labels or attributes
+     * @param size the number of entries, at least 1.
      */
+    public static void setLookupTableSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The lookup table needs at least one entry.");
+        }
+        if (size != nLog2NTable.length) {
+            nLog2NTable = createNLog2NTable(size);
+        }
+    }
 
-    private static Map<Object, Long> groupByLabelIndexOrAttribute(Collection<Object[]> matrix, int labelIndex) {
-        return matrix.stream()
-                .map(row -> row[labelIndex])
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    /**
+     * Returns the number of counts whose value of n * log2(n) is looked up.
+     *
+     * @return the number of entries of the lookup table.
+     */
+    public static int getLookupTableSize() {
+        return nLog2NTable.length;
+    }
+
+    /**
+     * Computes n * log2(n) for every count below the given size, in the same way as counts above the table are computed.
+     */
+    private static double[] createNLog2NTable(int size) {
+        double[] table = new double[size];
+        for (int n = 1; n < size; n++) {
+            table[n] = n * (Math.log(n) / LOG_2);
+        }
+        return table;
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package de.uni_trier.wi2.pki.util;
+
+/**
+ * Split criterion of the C4.5 algorithm: the information gain divided by the entropy of the attribute value distribution. This penalizes
+ * attributes with many values, which the information gain prefers.
+ */
+public class GainRatio implements SplitCriterion {
+
+    /**
+     * Scores the split described by a contingency table. A split with a single non-empty value does not separate anything and scores 0.
+     *
+     * @param table the attribute value x class count table of the split.
+     * @return the gain ratio of the split.
+     */
+    @Override
+    public double score(ContingencyTable table) {
+        double splitInformation = EntropyUtils.calculateSplitInformation(table);
+        if (splitInformation <= 0.0) {
+            return 0.0;
+        }
+        return EntropyUtils.calcInformationGain(table) / splitInformation;
+    }
+}
@@ -0,0 +1,46 @@
+package de.uni_trier.wi2.pki.util;
+
+/**
+ * Split criterion of the CART algorithm: the decrease of the Gini impurity 1 - sum(p_c^2) from the class distribution to the weighted class
+ * distributions of the attribute values. It only needs multiplications, no logarithms.
+ */
+public class GiniImpurity implements SplitCriterion {
+
+    /**
+     * Scores the split described by a contingency table. With N examples, n_v examples of value v and n_vc examples of value v and class c
+     * the decrease is sum_v(sum_c(n_vc^2) / n_v) / N - sum_c(n_c^2) / N^2.
+     *
+     * @param table the attribute value x class count table of the split.
+     * @return the Gini gain of the split.
+     */
+    @Override
+    public double score(ContingencyTable table) {
+        int total = table.getTotal();
+        if (total == 0) {
+            return 0.0;
+        }
+
+        double classSquares = 0.0;
+        for (int label = 0; label < table.getNumClasses(); label++) {
+            double count = table.getClassTotal(label);
+            classSquares += count * count;
+        }
+
+        double valueSquares = 0.0;
+        for (int value = 0; value < table.getNumValues(); value++) {
+            int valueTotal = table.getValueTotal(value);
+            if (valueTotal == 0) {
+                continue;
+            }
+            double squares = 0.0;
+            for (int label = 0; label < table.getNumClasses(); label++) {
+                double count = table.getCount(value, label);
+                squares += count * count;
+            }
+            valueSquares += squares / valueTotal;
+        }
+
+        /* rounding may leave a tiny negative value for splits without any gain */
+        return Math.max(0.0, valueSquares / total - classSquares / ((double) total * total));
+    }
+}
@@ -0,0 +1,398 @@
+package de.uni_trier.wi2.pki.util;
+
+import de.uni_trier.wi2.pki.data.SymbolTable;
+import de.uni_trier.wi2.pki.tree.ClassHistogram;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Streaming decision tree learner (Hoeffding tree / VFDT) for categorical examples. Every example is read once and only updates the counts
+ * along its path: the leaves keep the attribute value x class counts of the examples that reached them, and a leaf is split as soon as the
+ * Hoeffding bound guarantees with probability 1 - delta that its best attribute is also the best attribute on the whole stream. The memory
+ * therefore depends on the size of the tree and the dictionaries, not on the number of examples.
+ * <p>
+ * The learner is not thread-safe.
+ */
+public class HoeffdingTreeLearner {
+
+    /**
+     * The default probability that a split attribute is not the best attribute.
+     */
+    public static final double DEFAULT_DELTA = 1e-7;
+
+    /**
+     * The default bound below which two attributes are considered equally good and the split is made anyway.
+     */
+    public static final double DEFAULT_TIE_THRESHOLD = 0.05;
+
+    /**
+     * The default number of examples a leaf collects between two split evaluations.
+     */
+    public static final int DEFAULT_GRACE_PERIOD = 200;
+
+    private final int labelIndex;
+    private final int maximumDepth;
+    private final double delta;
+    private final double tieThreshold;
+    private final int gracePeriod;
+
+    /**
+     * The symbol table of every attribute.
+     */
+    private final SymbolTable[] symbolTables;
+
+    /**
+     * Scratch array for the codes of the current example.
+     */
+    private final int[] codes;
+
+    private final Node root;
+    private long numExamples = 0;
+
+    /**
+     * Constructor for a Hoeffding tree learner with the default parameters.
+     *
+     * @param numAttributes The number of attributes of the examples, including the label.
+     * @param labelIndex    The index of the label attribute.
+     * @param maximumDepth  Maximum depth of tree, -1 for no limit.
+     */
+    public HoeffdingTreeLearner(int numAttributes, int labelIndex, int maximumDepth) {
+        this(numAttributes, labelIndex, maximumDepth, DEFAULT_DELTA, DEFAULT_TIE_THRESHOLD, DEFAULT_GRACE_PERIOD);
+    }
+
+    /**
+     * Constructor for a Hoeffding tree learner.
+     *
+     * @param numAttributes The number of attributes of the examples, including the label.
+     * @param labelIndex    The index of the label attribute.
+     * @param maximumDepth  Maximum depth of tree, -1 for no limit.
+     * @param delta         The probability that a split attribute is not the best attribute.
+     * @param tieThreshold  The bound below which two attributes are considered equally good.
+     * @param gracePeriod   The number of examples a leaf collects between two split evaluations.
+     */
+    public HoeffdingTreeLearner(int numAttributes, int labelIndex, int maximumDepth, double delta, double tieThreshold, int gracePeriod) {
+        if (labelIndex < 0 || labelIndex >= numAttributes) {
+            throw new IllegalArgumentException("Invalid label index: " + labelIndex);
+        }
+        if (delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Delta must be between 0 and 1: " + delta);
+        }
+        if (gracePeriod <= 0) {
+            throw new IllegalArgumentException("Invalid grace period: " + gracePeriod);
+        }
+        this.labelIndex = labelIndex;
+        this.maximumDepth = maximumDepth;
+        this.delta = delta;
+        this.tieThreshold = tieThreshold;
+        this.gracePeriod = gracePeriod;
+        this.symbolTables = new SymbolTable[numAttributes];
+        this.codes = new int[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            symbolTables[attributeIndex] = new SymbolTable();
+        }
+        this.root = new Node(1, new boolean[numAttributes], new int[0]);
+    }
+
+    /**
+     * Reads all examples of a stream once and learns from them.
+     *
+     * @param examples the examples to learn from.
+     */
+    public void train(Iterator<Object[]> examples) {
+        while (examples.hasNext()) {
+            add(examples.next());
+        }
+    }
+
+    /**
+     * Learns from a single example. The example is routed to its leaf, which counts it and checks for a split after every grace period.
+     * Each value is converted to its string representation before it is interned.
+     *
+     * @param example the example to learn from, with one value per attribute.
+     */
+    public void add(Object[] example) {
+        if (example.length != symbolTables.length) {
+            throw new IllegalArgumentException("Expected " + symbolTables.length + " attributes, but the example has " + example.length + ".");
+        }
+        for (int attributeIndex = 0; attributeIndex < codes.length; attributeIndex++) {
+            codes[attributeIndex] = symbolTables[attributeIndex].intern(example[attributeIndex].toString());
+        }
+        int label = codes[labelIndex];
+        numExamples++;
+
+        /* the inner nodes only keep their class counts, values without a branch get a new leaf */
+        Node node = root;
+        while (!node.isLeaf()) {
+            node.countClass(label);
+            int code = codes[node.attributeIndex];
+            Node child = node.getChild(code);
+            if (child == null) {
+                child = new Node(node.depth + 1, node.getChildUsedAttributes(), new int[0]);
+                node.setChild(code, child);
+            }
+            node = child;
+        }
+
+        node.count(codes, label);
+        if (node.seenSinceEvaluation >= gracePeriod) {
+            node.seenSinceEvaluation = 0;
+            attemptSplit(node);
+        }
+    }
+
+    /**
+     * Returns the number of examples read so far.
+     *
+     * @return the number of examples.
+     */
+    public long getNumExamples() {
+        return numExamples;
+    }
+
+    /**
+     * Creates a decision tree from the current state of the learner. The tree is a snapshot, it is not affected by examples that are added later.
+     *
+     * @return the decision tree.
+     * @throws IllegalStateException if the root has not been split yet, i.e. the tree would be a single leaf.
+     */
+    public DecisionTree getTree() {
+        if (root.isLeaf()) {
+            throw new IllegalStateException("The root has not been split yet, the tree would be a single leaf.");
+        }
+
+        SymbolTable labelTable = symbolTables[labelIndex];
+        String[] labels = new String[labelTable.size()];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = labelTable.getSymbol(code);
+        }
+        return (DecisionTree) createNode(root, null, labels);
+    }
+
+    /**
+     * Splits a leaf on its best attribute if the Hoeffding bound separates it from the second best attribute, or if the two can no longer be
+     * told apart and the bound is below the tie threshold.
+     *
+     * @param leaf the leaf to evaluate.
+     */
+    private void attemptSplit(Node leaf) {
+        if (leaf.depth == maximumDepth || leaf.isPure()) {
+            return;
+        }
+
+        int bestAttributeIndex = -1;
+        double bestGain = 0.0;
+        double secondBestGain = 0.0;
+        for (int attributeIndex = 0; attributeIndex < leaf.tables.length; attributeIndex++) {
+            if (leaf.tables[attributeIndex] == null) {
+                continue;
+            }
+            double gain = EntropyUtils.calcInformationGain(leaf.tables[attributeIndex]);
+            if (bestAttributeIndex == -1 || gain > bestGain) {
+                secondBestGain = bestAttributeIndex == -1 ? 0.0 : bestGain;
+                bestAttributeIndex = attributeIndex;
+                bestGain = gain;
+            } else if (gain > secondBestGain) {
+                secondBestGain = gain;
+            }
+        }
+
+        /* a split that does not separate any classes is never made, which also covers attributes with a single value */
+        if (bestAttributeIndex == -1 || bestGain <= 0.0) {
+            return;
+        }
+
+        /* only the examples counted in the tables are evidence, the class counts a new leaf inherits from its parent are not */
+        double bound = hoeffdingBound(leaf.getNumClasses(), leaf.tables[bestAttributeIndex].getTotal());
+        if (bestGain - secondBestGain > bound || bound < tieThreshold) {
+            split(leaf, bestAttributeIndex);
+        }
+    }
+
+    /**
+     * Computes the Hoeffding bound for the information gain, whose range is log2 of the number of classes.
+     *
+     * @param numClasses  the number of classes seen at the leaf.
+     * @param numExamples the number of examples seen at the leaf.
+     * @return the bound.
+     */
+    private double hoeffdingBound(int numClasses, int numExamples) {
+        double range = Math.log(numClasses) / EntropyUtils.LOG_2;
+        return Math.sqrt(range * range * Math.log(1.0 / delta) / (2.0 * numExamples));
+    }
+
+    /**
+     * Turns a leaf into an inner node with one leaf per value of the attribute. The new leaves start with the class counts the leaf has seen
+     * for their value, so they predict sensibly before they have collected examples of their own.
+     *
+     * @param leaf           the leaf to split.
+     * @param attributeIndex the attribute to split on.
+     */
+    private void split(Node leaf, int attributeIndex) {
+        ContingencyTable table = leaf.tables[attributeIndex];
+        leaf.attributeIndex = attributeIndex;
+        boolean[] usedAttributes = leaf.getChildUsedAttributes();
+        for (int value = 0; value < table.getNumValues(); value++) {
+            if (table.getValueTotal(value) > 0) {
+                int[] classCounts = new int[table.getNumClasses()];
+                for (int label = 0; label < classCounts.length; label++) {
+                    classCounts[label] = table.getCount(value, label);
+                }
+                leaf.setChild(value, new Node(leaf.depth + 1, usedAttributes, classCounts));
+            }
+        }
+
+        /* the statistics of an inner node are no longer needed */
+        Arrays.fill(leaf.tables, null);
+    }
+
+    /**
+     * Converts a subtree into decision tree nodes.
+     *
+     * @param node   the root of the subtree.
+     * @param parent the parent of the created node, null for the root.
+     * @param labels the class labels indexed by their code.
+     * @return the created node.
+     */
+    private DecisionTreeNode createNode(Node node, DecisionTreeNode parent, String[] labels) {
+        ClassHistogram classHistogram = new ClassHistogram(labels, Arrays.copyOf(node.classCounts, labels.length));
+        if (node.isLeaf()) {
+            return new DecisionTreeLeafNode(parent, classHistogram, null, classHistogram.getMajorityLabel());
+        }
+
+        DecisionTreeNode currentNode;
+        if (parent == null) {
+            currentNode = new DecisionTree(node.attributeIndex, classHistogram, null);
+        } else {
+            currentNode = new DecisionTreeNode(parent, classHistogram, null, node.attributeIndex);
+        }
+        for (int code = 0; code < node.children.length; code++) {
+            if (node.children[code] != null) {
+                currentNode.addSplit(symbolTables[node.attributeIndex].getSymbol(code), createNode(node.children[code], currentNode, labels));
+            }
+        }
+        return currentNode;
+    }
+
+    /**
+     * A node of the Hoeffding tree. Leaves keep the sufficient statistics for the split decision, inner nodes only their class counts.
+     */
+    private class Node {
+        private final int depth;
+
+        /**
+         * The attributes split on by the ancestors of this node, they cannot separate the examples of this node any further.
+         */
+        private final boolean[] usedAttributes;
+
+        /**
+         * The attribute value x class counts of a leaf for every attribute that may still be split on, null otherwise.
+         */
+        private final ContingencyTable[] tables;
+
+        /**
+         * The number of examples per class code.
+         */
+        private int[] classCounts;
+        private int seenSinceEvaluation = 0;
+
+        /**
+         * The attribute this node splits on, -1 for leaves.
+         */
+        private int attributeIndex = -1;
+
+        /**
+         * The children of an inner node indexed by the code of their value, null for values without a branch.
+         */
+        private Node[] children;
+
+        Node(int depth, boolean[] usedAttributes, int[] classCounts) {
+            this.depth = depth;
+            this.usedAttributes = usedAttributes;
+            this.classCounts = classCounts;
+            this.tables = new ContingencyTable[symbolTables.length];
+            for (int index = 0; index < tables.length; index++) {
+                if (index != labelIndex && !usedAttributes[index]) {
+                    tables[index] = new ContingencyTable(symbolTables[index].size(), symbolTables[labelIndex].size());
+                }
+            }
+        }
+
+        boolean isLeaf() {
+            return attributeIndex == -1;
+        }
+
+        /**
+         * Returns the attributes that the children of this inner node cannot split on: the ones used by its ancestors and its own.
+         *
+         * @return a new array of used attributes.
+         */
+        boolean[] getChildUsedAttributes() {
+            boolean[] childUsedAttributes = Arrays.copyOf(usedAttributes, usedAttributes.length);
+            childUsedAttributes[attributeIndex] = true;
+            return childUsedAttributes;
+        }
+
+        /**
+         * Counts the class of an example that passes an inner node.
+         *
+         * @param label the class code.
+         */
+        void countClass(int label) {
+            if (label >= classCounts.length) {
+                classCounts = Arrays.copyOf(classCounts, symbolTables[labelIndex].size());
+            }
+            classCounts[label]++;
+        }
+
+        /**
+         * Counts an example in the statistics of a leaf. The tables grow with the dictionaries.
+         *
+         * @param codes the codes of the example.
+         * @param label the class code.
+         */
+        void count(int[] codes, int label) {
+            countClass(label);
+            seenSinceEvaluation++;
+            for (int index = 0; index < tables.length; index++) {
+                ContingencyTable table = tables[index];
+                if (table != null) {
+                    if (codes[index] >= table.getNumValues() || label >= table.getNumClasses()) {
+                        table.grow(symbolTables[index].size(), classCounts.length);
+                    }
+                    table.add(codes[index], label);
+                }
+            }
+        }
+
+        boolean isPure() {
+            return getNumClasses() <= 1;
+        }
+
+        int getNumClasses() {
+            int numClasses = 0;
+            for (int count : classCounts) {
+                if (count > 0) {
+                    numClasses++;
+                }
+            }
+            return numClasses;
+        }
+
+        Node getChild(int code) {
+            return children == null || code >= children.length ? null : children[code];
+        }
+
+        void setChild(int code, Node child) {
+            if (children == null) {
+                children = new Node[symbolTables[attributeIndex].size()];
+            } else if (code >= children.length) {
+                children = Arrays.copyOf(children, symbolTables[attributeIndex].size());
+            }
+            children[code] = child;
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package de.uni_trier.wi2.pki.util;
 
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.settings.ID3Settings;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
 import de.uni_trier.wi2.pki.tree.DecisionTree;
 import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
 import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+import de.uni_trier.wi2.pki.tree.RandomForest;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static de.uni_trier.wi2.pki.util.EntropyUtils.calcInformationGain;
+import static de.uni_trier.wi2.pki.util.EntropyUtils.calcInformationGainPerAttribute;
 import static de.uni_trier.wi2.pki.util.Helpers.printCollectionOfObjectArrays;
 import static de.uni_trier.wi2.pki.util.Helpers.printListLikeMapEntries;
 
@@ -36,7 +42,7 @@ public class ID3Utils {
      * @return The root node of the decision tree
      */
     public static DecisionTree createTree(Collection<Object[]> examples, int labelIndex, int maximumDepth) {
-        return (DecisionTree) createTree(examples, labelIndex, maximumDepth, 1, null);
+        return asTree(createTree(examples, labelIndex, maximumDepth, 1, null));
     }
 
     private static DecisionTreeNode createTree(Collection<Object[]> examples, int labelIndex, int maximumDepth, int currentDepth, DecisionTreeNode parent) {
@@ -87,6 +93,195 @@ public class ID3Utils {
         return currentNode;
     }
 
+    /**
+     * Create the decision tree given the encoded examples and the index of the label attribute.
+     *
+     * @param dataset    The encoded examples to train with.
+     * @param labelIndex The label of the attribute that should be used as an index.
+     * @return The root node of the decision tree
+     */
+    public static DecisionTree createTree(Dataset dataset, int labelIndex) {
+        return createTree(dataset, labelIndex, -1);
+    }
+
+    /**
+     * Create the decision tree given the encoded examples and the index of the label attribute.
+     *
+     * @param dataset      The encoded examples to train with.
+     * @param labelIndex   The label of the attribute that should be used as an index.
+     * @param maximumDepth Maximum depth of tree.
+     * @return The root node of the decision tree
+     */
+    public static DecisionTree createTree(Dataset dataset, int labelIndex, int maximumDepth) {
+        return createTree(dataset, labelIndex, maximumDepth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create the decision tree given the encoded examples and the index of the label attribute. Subtrees of partitions with at least
+     * parallelThreshold rows are built as separate tasks on the common fork/join pool, smaller partitions are built inline. The resulting tree
+     * is identical to the sequentially built one.
+     *
+     * @param dataset           The encoded examples to train with.
+     * @param labelIndex        The label of the attribute that should be used as an index.
+     * @param maximumDepth      Maximum depth of tree.
+     * @param parallelThreshold The minimum number of rows of a partition to build its subtree in parallel.
+     * @return The root node of the decision tree
+     */
+    public static DecisionTree createTree(Dataset dataset, int labelIndex, int maximumDepth, int parallelThreshold) {
+        return createTree(dataset, labelIndex, maximumDepth, parallelThreshold, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create the decision tree given the encoded examples and the index of the label attribute. Subtrees are built in parallel as in
+     * {@link #createTree(Dataset, int, int, int)}; in addition the attributes of nodes with at least gainParallelThreshold rows are scored
+     * concurrently. Both levels run on the same fork/join pool, so the pool is not oversubscribed.
+     *
+     * @param dataset               The encoded examples to train with.
+     * @param labelIndex            The label of the attribute that should be used as an index.
+     * @param maximumDepth          Maximum depth of tree.
+     * @param parallelThreshold     The minimum number of rows of a partition to build its subtree in parallel.
+     * @param gainParallelThreshold The minimum number of rows of a node to score its attributes in parallel.
+     * @return The root node of the decision tree
+     */
+    public static DecisionTree createTree(Dataset dataset, int labelIndex, int maximumDepth, int parallelThreshold, int gainParallelThreshold) {
+        return createTree(dataset, labelIndex, maximumDepth, parallelThreshold, gainParallelThreshold, false, EntropyUtils.INFORMATION_GAIN);
+    }
+
+    /**
+     * Create the decision tree given the encoded examples and the index of the label attribute with the split criterion, parallelism and debug
+     * options of the given settings.
+     *
+     * @param dataset      The encoded examples to train with.
+     * @param labelIndex   The label of the attribute that should be used as an index.
+     * @param maximumDepth Maximum depth of tree.
+     * @param settings     The settings to read the thresholds and options from.
+     * @return The root node of the decision tree
+     */
+    public static DecisionTree createTree(Dataset dataset, int labelIndex, int maximumDepth, ID3Settings settings) {
+        return createTree(dataset, labelIndex, maximumDepth, settings.getParallelThreshold(), settings.getGainParallelThreshold(),
+                settings.isRetainRows(), settings.getSplitCriterion());
+    }
+
+    /**
+     * Create a random forest of decision trees on the encoded examples. Every tree is trained on a bootstrap sample and every node only
+     * considers the square root of the number of attributes as split candidates.
+     *
+     * @param dataset      The encoded examples to train with.
+     * @param labelIndex   The label of the attribute that should be used as an index.
+     * @param maximumDepth Maximum depth of the trees.
+     * @param numTrees     The number of trees.
+     * @param seed         The seed of the bootstrap samples and attribute draws.
+     * @return the random forest.
+     */
+    public static RandomForest createForest(Dataset dataset, int labelIndex, int maximumDepth, int numTrees, long seed) {
+        return createForest(dataset, labelIndex, maximumDepth, numTrees, getDefaultAttributesPerSplit(dataset), seed);
+    }
+
+    /**
+     * Returns the usual number of split candidates of the nodes of a random forest, the rounded square root of the number of attributes.
+     *
+     * @param dataset The encoded examples to train with.
+     * @return the number of split candidates, at least 1.
+     */
+    public static int getDefaultAttributesPerSplit(Dataset dataset) {
+        return (int) Math.max(1, Math.round(Math.sqrt(dataset.getNumAttributes() - 1)));
+    }
+
+    /**
+     * Create a random forest of decision trees on the encoded examples. Every tree is trained on a bootstrap sample, which is an array of row
+     * indices drawn with replacement, so the dataset itself is never copied. Every node of a tree only considers attributesPerSplit attributes
+     * drawn at random as split candidates.
+     * The trees are trained in parallel on the common fork/join pool, each of them sequentially. The forest only depends on the seed.
+     *
+     * @param dataset            The encoded examples to train with.
+     * @param labelIndex         The label of the attribute that should be used as an index.
+     * @param maximumDepth       Maximum depth of the trees.
+     * @param numTrees           The number of trees.
+     * @param attributesPerSplit The number of split candidates of every node, 0 to consider all attributes.
+     * @param seed               The seed of the bootstrap samples and attribute draws.
+     * @return the random forest.
+     */
+    public static RandomForest createForest(Dataset dataset, int labelIndex, int maximumDepth, int numTrees, int attributesPerSplit, long seed) {
+        return createForest(dataset, labelIndex, maximumDepth, numTrees, attributesPerSplit, EntropyUtils.INFORMATION_GAIN, seed);
+    }
+
+    /**
+     * Create a random forest of decision trees on the encoded examples whose nodes are scored with the given split criterion, see
+     * {@link #createForest(Dataset, int, int, int, int, long)}.
+     *
+     * @param dataset            The encoded examples to train with.
+     * @param labelIndex         The label of the attribute that should be used as an index.
+     * @param maximumDepth       Maximum depth of the trees.
+     * @param numTrees           The number of trees.
+     * @param attributesPerSplit The number of split candidates of every node, 0 to consider all attributes.
+     * @param criterion          The measure the attributes of every node are scored with.
+     * @param seed               The seed of the bootstrap samples and attribute draws.
+     * @return the random forest.
+     */
+    public static RandomForest createForest(Dataset dataset, int labelIndex, int maximumDepth, int numTrees, int attributesPerSplit,
+                                            SplitCriterion criterion, long seed) {
+        if (numTrees <= 0) {
+            throw new IllegalArgumentException("The number of trees must be positive.");
+        }
+        if (dataset.size() == 0) {
+            throw new IllegalArgumentException("Cannot train a random forest without examples.");
+        }
+
+        /* the generators are split off in tree order, so the result does not depend on the scheduling */
+        SplittableRandom seedRandom = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[numTrees];
+        for (int tree = 0; tree < numTrees; tree++) {
+            randoms[tree] = seedRandom.split();
+        }
+
+        List<DecisionTree> trees = IntStream.range(0, numTrees).parallel().mapToObj(tree -> {
+            SplittableRandom random = randoms[tree];
+            int[] rows = new int[dataset.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = random.nextInt(rows.length);
+            }
+
+            SubtreeTask rootTask = new SubtreeTask(dataset, rows, labelIndex, maximumDepth, Integer.MAX_VALUE, Integer.MAX_VALUE, false,
+                    criterion, attributesPerSplit, random);
+            /* a bootstrap sample of a single class gives a leaf, which still votes for its class */
+            return asTree(rootTask.compute());
+        }).collect(Collectors.toList());
+
+        return new RandomForest(trees, dataset.getSymbolTable(labelIndex));
+    }
+
+    /**
+     * Create the decision tree given the encoded examples. The nodes only keep the class counts of their examples unless retainRows is set.
+     */
+    private static DecisionTree createTree(Dataset dataset, int labelIndex, int maximumDepth, int parallelThreshold, int gainParallelThreshold,
+                                           boolean retainRows, SplitCriterion criterion) {
+        int[] rows = new int[dataset.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+
+        SubtreeTask rootTask = new SubtreeTask(dataset, rows, labelIndex, maximumDepth, parallelThreshold, gainParallelThreshold, retainRows,
+                criterion, 0, null);
+        if (rows.length < parallelThreshold) {
+            return asTree(rootTask.compute());
+        }
+        return asTree(ForkJoinPool.commonPool().invoke(rootTask));
+    }
+
+    /**
+     * Returns the root node of a trained tree as a decision tree. The root is a leaf node if the examples did not need a split, e.g. because
+     * they all have the same class; such a leaf is wrapped into a tree of a single leaf.
+     *
+     * @param root The root node created by the ID3 algorithm.
+     * @return the decision tree.
+     */
+    private static DecisionTree asTree(DecisionTreeNode root) {
+        if (root instanceof DecisionTree) {
+            return (DecisionTree) root;
+        }
+        return new DecisionTree((DecisionTreeLeafNode) root);
+    }
+
     /**
      * Checks if all labels are the same.
      *
@@ -127,10 +322,83 @@ public class ID3Utils {
      * @return the index of the attribute to select next.
      */
     public static int selectEfficientAttribute(Collection<Object[]> examples, int labelIndex) {
-        List<Double> infGain = calcInformationGain(examples, labelIndex);
-        double max = Collections.max(infGain);
+        return selectBestAttribute(calcInformationGainPerAttribute(examples, labelIndex), labelIndex);
+    }
 
-        return infGain.indexOf(max);
+    /**
+     * Selects the attribute with the highest score of the given split criterion.
+     *
+     * @param examples   The examples to train with. This is a collection of arrays.
+     * @param labelIndex The label of the attribute that should be used as an index.
+     * @param criterion  The measure the attributes are scored with.
+     * @return the index of the attribute to select next.
+     */
+    public static int selectEfficientAttribute(Collection<Object[]> examples, int labelIndex, SplitCriterion criterion) {
+        return selectBestAttribute(EntropyUtils.calcScorePerAttribute(examples, labelIndex, criterion), labelIndex);
+    }
+
+    /**
+     * Selects the most efficient attribute for the given rows of an encoded dataset.
+     *
+     * @param dataset    The encoded examples to train with.
+     * @param rows       The row indices of the examples.
+     * @param from       The first position in rows (inclusive).
+     * @param to         The last position in rows (exclusive).
+     * @param labelIndex The label of the attribute that should be used as an index.
+     * @return the index of the attribute to select next.
+     */
+    public static int selectEfficientAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex) {
+        return selectEfficientAttribute(dataset, rows, from, to, labelIndex, false);
+    }
+
+    /**
+     * Selects the most efficient attribute for the given rows of an encoded dataset, optionally scoring the attributes concurrently.
+     *
+     * @param dataset    The encoded examples to train with.
+     * @param rows       The row indices of the examples.
+     * @param from       The first position in rows (inclusive).
+     * @param to         The last position in rows (exclusive).
+     * @param labelIndex The label of the attribute that should be used as an index.
+     * @param parallel   Whether the attributes are scored concurrently.
+     * @return the index of the attribute to select next.
+     */
+    public static int selectEfficientAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex, boolean parallel) {
+        return selectEfficientAttribute(dataset, rows, from, to, labelIndex, EntropyUtils.INFORMATION_GAIN, parallel);
+    }
+
+    /**
+     * Selects the attribute with the highest score of the given split criterion for the given rows of an encoded dataset. Numeric attributes
+     * are not scored, see {@link EntropyUtils#calcScorePerAttribute(Dataset, int[], int, int, int, SplitCriterion, boolean[], boolean)}.
+     *
+     * @param dataset    The encoded examples to train with.
+     * @param rows       The row indices of the examples.
+     * @param from       The first position in rows (inclusive).
+     * @param to         The last position in rows (exclusive).
+     * @param labelIndex The label of the attribute that should be used as an index.
+     * @param criterion  The measure the attributes are scored with.
+     * @param parallel   Whether the attributes are scored concurrently.
+     * @return the index of the attribute to select next.
+     */
+    public static int selectEfficientAttribute(Dataset dataset, int[] rows, int from, int to, int labelIndex, SplitCriterion criterion,
+                                               boolean parallel) {
+        return selectBestAttribute(EntropyUtils.calcScorePerAttribute(dataset, rows, from, to, labelIndex, criterion, null, parallel), labelIndex);
+    }
+
+    /**
+     * Selects the first attribute with the highest gain, the label attribute is skipped.
+     *
+     * @param infGain    The information gain for each attribute index.
+     * @param labelIndex The index of the label attribute.
+     * @return the index of the attribute with the highest gain.
+     */
+    static int selectBestAttribute(double[] infGain, int labelIndex) {
+        int bestAttributeIndex = -1;
+        for (int attributeIndex = 0; attributeIndex < infGain.length; attributeIndex++) {
+            if (attributeIndex != labelIndex && (bestAttributeIndex == -1 || infGain[attributeIndex] > infGain[bestAttributeIndex])) {
+                bestAttributeIndex = attributeIndex;
+            }
+        }
+        return bestAttributeIndex;
     }
 
     /**
@@ -150,6 +418,35 @@ public class ID3Utils {
                 .map(Map.Entry::getKey).orElse(null);
     }
 
+    /**
+     * Determines the dominant label type for the given rows of an encoded dataset.
+     *
+     * @param dataset    the encoded examples.
+     * @param rows       the row indices of the examples.
+     * @param from       the first position in rows (inclusive).
+     * @param to         the last position in rows (exclusive).
+     * @param labelIndex the label index
+     * @return the class name of the dominant class.
+     */
+    public static String getDominantClass(Dataset dataset, int[] rows, int from, int to, int labelIndex) {
+        int[] labels = dataset.getColumn(labelIndex);
+        int[] counts = new int[dataset.getCardinality(labelIndex)];
+        int dominantLabel = -1;
+
+        for (int i = from; i < to; i++) {
+            counts[labels[rows[i]]]++;
+        }
+
+        /* on ties the label with the lowest code, i.e. the first one seen in the dataset, wins */
+        for (int label = 0; label < counts.length; label++) {
+            if (counts[label] > 0 && (dominantLabel == -1 || counts[label] > counts[dominantLabel])) {
+                dominantLabel = label;
+            }
+        }
+
+        return dominantLabel == -1 ? null : dataset.getSymbolTable(labelIndex).getSymbol(dominantLabel);
+    }
+
     /**
      * Compute the classification accuracy for the given decision tree and the examples.
      *
@@ -174,4 +471,63 @@ public class ID3Utils {
         /* Return the classification accuracy as ratio of correct predictions to total predictions */
         return (double) correctPredictions / validationExamples.size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Compute the classification accuracy for the given decision tree and the encoded examples.
+     *
+     * @param decisionTree       the decision tree to use for predictions.
+     * @param validationExamples the encoded examples to evaluate.
+     * @param labelIndex         the index of the label attribute.
+     * @return the classification accuracy.
+     */
+    public static double getClassificationAccuracy(DecisionTree decisionTree, Dataset validationExamples, int labelIndex) {
+        return getClassificationAccuracy(decisionTree, validationExamples, labelIndex, CompiledTree.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Compute the classification accuracy for the given decision tree and the encoded examples. The examples are predicted as one batch, so
+     * large validation sets are split into chunks that are predicted in parallel.
+     *
+     * @param decisionTree       the decision tree to use for predictions.
+     * @param validationExamples the encoded examples to evaluate.
+     * @param labelIndex         the index of the label attribute.
+     * @param chunkSize          the number of examples predicted by one task.
+     * @return the classification accuracy.
+     */
+    public static double getClassificationAccuracy(DecisionTree decisionTree, Dataset validationExamples, int labelIndex, int chunkSize) {
+        /* Predict the label ids of all examples; they are codes of the label column, so they can be compared to the actual codes directly */
+        int[] labelIds = decisionTree.predictAll(validationExamples, labelIndex, new int[validationExamples.size()], chunkSize);
+        return getClassificationAccuracy(labelIds, validationExamples, labelIndex);
+    }
+
+    /**
+     * Compute the classification accuracy of the majority vote of a random forest for the encoded examples. The examples are predicted as one
+     * batch in parallel chunks.
+     *
+     * @param randomForest       the random forest to use for predictions.
+     * @param validationExamples the encoded examples to evaluate.
+     * @param labelIndex         the index of the label attribute.
+     * @param chunkSize          the number of examples predicted by one task.
+     * @return the classification accuracy.
+     */
+    public static double getClassificationAccuracy(RandomForest randomForest, Dataset validationExamples, int labelIndex, int chunkSize) {
+        int[] labelIds = randomForest.predictAll(validationExamples, labelIndex, new int[validationExamples.size()], chunkSize);
+        return getClassificationAccuracy(labelIds, validationExamples, labelIndex);
+    }
+
+    /**
+     * Compares predicted label ids with the label codes of the encoded examples.
+     */
+    private static double getClassificationAccuracy(int[] labelIds, Dataset validationExamples, int labelIndex) {
+        int correctPredictions = 0;
+        int[] actualLabelIds = validationExamples.getColumn(labelIndex);
+        for (int row = 0; row < labelIds.length; row++) {
+            if (labelIds[row] == actualLabelIds[row]) {
+                correctPredictions++;
+            }
+        }
+
+        /* Return the classification accuracy as ratio of correct predictions to total predictions */
+        return (double) correctPredictions / validationExamples.size();
+    }
+}
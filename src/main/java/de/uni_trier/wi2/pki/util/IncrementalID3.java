@@ -0,0 +1,468 @@
+package de.uni_trier.wi2.pki.util;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.data.SymbolTable;
+import de.uni_trier.wi2.pki.tree.ClassHistogram;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Incremental ID3 learner in the spirit of ID5R. Every node keeps the attribute value x class counts of the examples below it, so a new example
+ * only updates the counts along its path, and a batch of examples updates every node on its paths once. A subtree is only rebuilt if the
+ * attribute chosen at its root changes, which is rare once the counts have settled. The examples themselves are stored once in a growing column
+ * store and referenced by the leaves.
+ * <p>
+ * After any number of added examples, {@link #getTree()} returns the same tree as
+ * {@link ID3Utils#createTree(Dataset, int, int)} on {@link #getDataset()}: the splits are chosen from the same counts with the same tie-breaking,
+ * and the dictionary codes are assigned in the order in which the examples were added, like {@link Dataset#fromRows(Collection)} does.
+ * <p>
+ * The learner is not thread-safe.
+ */
+public class IncrementalID3 {
+
+    private final int labelIndex;
+    private final int maximumDepth;
+
+    /**
+     * The symbol table of every column, shared with the datasets returned by {@link #getDataset()}.
+     */
+    private final SymbolTable[] symbolTables;
+
+    /**
+     * The dictionary codes of all added examples, indexed by [attribute][row]. Only the first size entries of each column are used.
+     */
+    private int[][] columns;
+    private int size = 0;
+
+    /**
+     * Scratch array for the information gain of every attribute.
+     */
+    private final double[] gains;
+
+    private Node root;
+
+    /**
+     * Constructor for an empty incremental learner.
+     *
+     * @param numAttributes The number of attributes of the examples, including the label.
+     * @param labelIndex    The index of the label attribute.
+     * @param maximumDepth  Maximum depth of tree, -1 for no limit.
+     */
+    public IncrementalID3(int numAttributes, int labelIndex, int maximumDepth) {
+        if (labelIndex < 0 || labelIndex >= numAttributes) {
+            throw new IllegalArgumentException("Invalid label index: " + labelIndex);
+        }
+        this.labelIndex = labelIndex;
+        this.maximumDepth = maximumDepth;
+        this.symbolTables = new SymbolTable[numAttributes];
+        this.columns = new int[numAttributes][16];
+        this.gains = new double[numAttributes];
+        for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+            symbolTables[attributeIndex] = new SymbolTable();
+        }
+    }
+
+    /**
+     * Adds a labelled example and updates the tree. Each value is converted to its string representation before it is interned.
+     *
+     * @param example the example to add, with one value per attribute.
+     */
+    public void add(Object[] example) {
+        update(new int[]{append(example)});
+    }
+
+    /**
+     * Adds labelled examples in iteration order and updates the tree. The examples are passed down the tree together, so every node on their
+     * paths is only evaluated once; the result is the same as adding them one by one.
+     *
+     * @param examples the examples to add.
+     */
+    public void addAll(Collection<Object[]> examples) {
+        int[] rows = new int[examples.size()];
+        int i = 0;
+        for (Object[] example : examples) {
+            rows[i++] = append(example);
+        }
+        if (rows.length > 0) {
+            update(rows);
+        }
+    }
+
+    /**
+     * Returns the number of added examples.
+     *
+     * @return the number of examples.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns all added examples as an encoded dataset. The columns are copied, the symbol tables are shared with the learner and keep growing
+     * when further examples are added.
+     *
+     * @return the encoded examples in the order they were added.
+     */
+    public Dataset getDataset() {
+        int[][] copies = new int[columns.length][];
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            copies[attributeIndex] = Arrays.copyOf(columns[attributeIndex], size);
+        }
+        return new Dataset(copies, symbolTables);
+    }
+
+    /**
+     * Creates a decision tree from the current state of the learner. The tree is a snapshot, it is not affected by examples that are added later.
+     *
+     * @return the decision tree.
+     * @throws IllegalStateException if no example was added or the examples do not need a split, i.e. the tree would be a single leaf.
+     */
+    public DecisionTree getTree() {
+        if (root == null || root.attributeIndex == -1) {
+            throw new IllegalStateException("The examples do not need a split, the tree would be a single leaf.");
+        }
+
+        SymbolTable labelTable = symbolTables[labelIndex];
+        String[] labels = new String[labelTable.size()];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = labelTable.getSymbol(code);
+        }
+        return (DecisionTree) createNode(root, null, labels);
+    }
+
+    /**
+     * Appends an example to the column store.
+     *
+     * @param example the example to append.
+     * @return the row index of the example.
+     */
+    private int append(Object[] example) {
+        if (example.length != symbolTables.length) {
+            throw new IllegalArgumentException("Expected " + symbolTables.length + " attributes, but the example has " + example.length + ".");
+        }
+
+        if (size == columns[0].length) {
+            for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+                columns[attributeIndex] = Arrays.copyOf(columns[attributeIndex], size * 2);
+            }
+        }
+        int row = size++;
+        for (int attributeIndex = 0; attributeIndex < columns.length; attributeIndex++) {
+            columns[attributeIndex][row] = symbolTables[attributeIndex].intern(example[attributeIndex].toString());
+        }
+        return row;
+    }
+
+    /**
+     * Adds appended rows to the tree.
+     *
+     * @param rows the rows to add.
+     */
+    private void update(int[] rows) {
+        if (root == null) {
+            root = new Node(1);
+        }
+        update(root, rows);
+    }
+
+    /**
+     * Counts new rows in a subtree. If the attribute chosen at a node changes, the subtree of the node is rebuilt from its rows, otherwise the
+     * rows are passed on to the children of their values.
+     *
+     * @param node    the root of the subtree.
+     * @param newRows the rows to add.
+     */
+    private void update(Node node, int[] newRows) {
+        for (int row : newRows) {
+            node.count(row);
+        }
+        int efficientAttributeIndex = selectAttribute(node);
+
+        if (efficientAttributeIndex != node.attributeIndex) {
+            IntList rows = collectRows(node, new IntList());
+            for (int row : newRows) {
+                rows.add(row);
+            }
+            split(node, efficientAttributeIndex, rows.toArray());
+            return;
+        }
+
+        if (node.isLeaf()) {
+            for (int row : newRows) {
+                node.addRow(row);
+            }
+            return;
+        }
+
+        IntList[] partitions = partition(newRows, efficientAttributeIndex);
+        for (int code = 0; code < partitions.length; code++) {
+            if (partitions[code] != null) {
+                Node child = node.getChild(code);
+                if (child == null) {
+                    child = new Node(node.depth + 1);
+                    node.setChild(code, child);
+                }
+                update(child, partitions[code].toArray());
+            }
+        }
+    }
+
+    /**
+     * Groups rows by their value of an attribute.
+     *
+     * @param rows           the rows to group.
+     * @param attributeIndex the attribute to group by.
+     * @return the rows of every value indexed by its code, null for values without rows.
+     */
+    private IntList[] partition(int[] rows, int attributeIndex) {
+        int[] values = columns[attributeIndex];
+        IntList[] partitions = new IntList[symbolTables[attributeIndex].size()];
+        for (int row : rows) {
+            if (partitions[values[row]] == null) {
+                partitions[values[row]] = new IntList();
+            }
+            partitions[values[row]].add(row);
+        }
+        return partitions;
+    }
+
+    /**
+     * Turns a node with counted rows into a leaf or an inner node and builds its subtree from the rows.
+     *
+     * @param node           the node.
+     * @param attributeIndex the attribute to split on or -1 for a leaf.
+     * @param rows           the rows of the node.
+     */
+    private void split(Node node, int attributeIndex, int[] rows) {
+        node.attributeIndex = attributeIndex;
+        node.children = null;
+        node.rows = null;
+        node.numRows = 0;
+
+        if (attributeIndex == -1) {
+            node.rows = rows;
+            node.numRows = rows.length;
+            return;
+        }
+
+        /* the children are built after all of their rows are counted */
+        IntList[] partitions = partition(rows, attributeIndex);
+        for (int code = 0; code < partitions.length; code++) {
+            if (partitions[code] != null) {
+                Node child = new Node(node.depth + 1);
+                node.setChild(code, child);
+                int[] childRows = partitions[code].toArray();
+                for (int row : childRows) {
+                    child.count(row);
+                }
+                split(child, selectAttribute(child), childRows);
+            }
+        }
+    }
+
+    /**
+     * Decides how a node is built from its counts, with the same rules as the batch learner.
+     *
+     * @param node the node with counted rows.
+     * @return the attribute to split on or -1 if the node is a leaf.
+     */
+    private int selectAttribute(Node node) {
+        /* If all examples have the same label, or the maximum depth of the tree is reached, the node is a leaf */
+        int numClasses = 0;
+        for (int count : node.classCounts) {
+            if (count > 0) {
+                numClasses++;
+            }
+        }
+        if (numClasses == 1 || node.depth == maximumDepth) {
+            return -1;
+        }
+
+        for (int attributeIndex = 0; attributeIndex < gains.length; attributeIndex++) {
+            gains[attributeIndex] = attributeIndex == labelIndex ? -1.0 : EntropyUtils.calcInformationGain(node.tables[attributeIndex]);
+        }
+        int efficientAttributeIndex = ID3Utils.selectBestAttribute(gains, labelIndex);
+
+        /* If the best attribute has only one value, the examples cannot be split */
+        ContingencyTable table = node.tables[efficientAttributeIndex];
+        int numPartitions = 0;
+        for (int value = 0; value < table.getNumValues(); value++) {
+            if (table.getValueTotal(value) > 0) {
+                numPartitions++;
+            }
+        }
+        return numPartitions == 1 ? -1 : efficientAttributeIndex;
+    }
+
+    /**
+     * Collects the rows stored in the leaves of a subtree.
+     *
+     * @param node   the root of the subtree.
+     * @param target the list to add the rows to.
+     * @return the filled list.
+     */
+    private IntList collectRows(Node node, IntList target) {
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.numRows; i++) {
+                target.add(node.rows[i]);
+            }
+        } else {
+            for (Node child : node.children) {
+                if (child != null) {
+                    collectRows(child, target);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Converts a subtree into decision tree nodes.
+     *
+     * @param node   the root of the subtree.
+     * @param parent the parent of the created node, null for the root.
+     * @param labels the class labels indexed by their code.
+     * @return the created node.
+     */
+    private DecisionTreeNode createNode(Node node, DecisionTreeNode parent, String[] labels) {
+        ClassHistogram classHistogram = new ClassHistogram(labels, Arrays.copyOf(node.classCounts, labels.length));
+        if (node.isLeaf()) {
+            return new DecisionTreeLeafNode(parent, classHistogram, null, classHistogram.getMajorityLabel());
+        }
+
+        DecisionTreeNode currentNode;
+        if (parent == null) {
+            currentNode = new DecisionTree(node.attributeIndex, classHistogram, null);
+        } else {
+            currentNode = new DecisionTreeNode(parent, classHistogram, null, node.attributeIndex);
+        }
+        for (int code = 0; code < node.children.length; code++) {
+            if (node.children[code] != null) {
+                currentNode.addSplit(symbolTables[node.attributeIndex].getSymbol(code), createNode(node.children[code], currentNode, labels));
+            }
+        }
+        return currentNode;
+    }
+
+    /**
+     * A node of the incremental tree with the sufficient statistics of its examples.
+     */
+    private class Node {
+        private final int depth;
+
+        /**
+         * The attribute value x class counts of the examples of this node for every attribute, null for the label attribute.
+         */
+        private final ContingencyTable[] tables;
+
+        /**
+         * The number of examples per class code.
+         */
+        private int[] classCounts;
+
+        /**
+         * The attribute this node splits on, -1 for leaves.
+         */
+        private int attributeIndex = -1;
+
+        /**
+         * The children of an inner node indexed by the code of their value, null for values without examples.
+         */
+        private Node[] children;
+
+        /**
+         * The rows of a leaf, only the first numRows entries are used.
+         */
+        private int[] rows;
+        private int numRows;
+
+        Node(int depth) {
+            this.depth = depth;
+            this.tables = new ContingencyTable[symbolTables.length];
+            for (int index = 0; index < tables.length; index++) {
+                if (index != labelIndex) {
+                    tables[index] = new ContingencyTable(symbolTables[index].size(), symbolTables[labelIndex].size());
+                }
+            }
+            this.classCounts = new int[symbolTables[labelIndex].size()];
+        }
+
+        boolean isLeaf() {
+            return attributeIndex == -1;
+        }
+
+        /**
+         * Counts a row in the statistics of this node. The tables grow with the dictionaries.
+         *
+         * @param row the row to count.
+         */
+        void count(int row) {
+            int label = columns[labelIndex][row];
+            if (label >= classCounts.length) {
+                classCounts = Arrays.copyOf(classCounts, symbolTables[labelIndex].size());
+            }
+            classCounts[label]++;
+
+            for (int index = 0; index < tables.length; index++) {
+                if (index != labelIndex) {
+                    int value = columns[index][row];
+                    ContingencyTable table = tables[index];
+                    if (value >= table.getNumValues() || label >= table.getNumClasses()) {
+                        table.grow(symbolTables[index].size(), classCounts.length);
+                    }
+                    table.add(value, label);
+                }
+            }
+        }
+
+        /**
+         * Stores a row in a leaf.
+         *
+         * @param row the row to store.
+         */
+        void addRow(int row) {
+            if (rows == null) {
+                rows = new int[4];
+            } else if (numRows == rows.length) {
+                rows = Arrays.copyOf(rows, numRows * 2);
+            }
+            rows[numRows++] = row;
+        }
+
+        Node getChild(int code) {
+            return children == null || code >= children.length ? null : children[code];
+        }
+
+        void setChild(int code, Node child) {
+            if (children == null) {
+                children = new Node[symbolTables[attributeIndex].size()];
+            } else if (code >= children.length) {
+                children = Arrays.copyOf(children, symbolTables[attributeIndex].size());
+            }
+            children[code] = child;
+        }
+    }
+
+    /**
+     * Growable list of row indices.
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package de.uni_trier.wi2.pki.util;
+
+/**
+ * Split criterion of the ID3 algorithm: the entropy of the class distribution minus the weighted entropy of the class distribution of every
+ * attribute value.
+ */
+public class InformationGain implements SplitCriterion {
+
+    @Override
+    public double score(ContingencyTable table) {
+        return EntropyUtils.calcInformationGain(table);
+    }
+}
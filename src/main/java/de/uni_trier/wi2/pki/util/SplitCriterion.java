@@ -0,0 +1,17 @@
+package de.uni_trier.wi2.pki.util;
+
+/**
+ * Measure for the quality of splitting examples on an attribute. The tree builders choose the attribute with the highest score.
+ * Implementations compute the score from the counts of a contingency table only and must not allocate, since they are evaluated for every
+ * attribute and every candidate threshold of every node.
+ */
+public interface SplitCriterion {
+
+    /**
+     * Scores the split described by a contingency table.
+     *
+     * @param table the attribute value x class count table of the split.
+     * @return the score of the split, at least 0; higher is better.
+     */
+    double score(ContingencyTable table);
+}
@@ -0,0 +1,522 @@
+package de.uni_trier.wi2.pki.util;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.tree.ClassHistogram;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Creates the decision tree node for the rows in rows[from, to) of an encoded dataset with the ID3 algorithm.
+ * All tasks of a tree share one row index array, which is reordered in place so that the rows of every child form a contiguous range inside the
+ * range of their parent. Sibling tasks therefore never touch the same positions and can run in parallel.
+ * Numeric attributes are split on thresholds. For each of them the tasks share a second row index array that is sorted by the attribute value
+ * once at the root and then partitioned stably together with the rows, so the range of every task stays sorted and the thresholds of a node
+ * are found in a single scan.
+ * For random forests the rows may contain duplicates, e.g. a bootstrap sample, and every node may only consider a random subset of the attributes.
+ */
+class SubtreeTask extends RecursiveTask<DecisionTreeNode> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Dataset dataset;
+    private final int[] rows;
+
+    /**
+     * The row index arrays sorted by value for every numeric attribute, null for categorical attributes. The range [from, to) of each array
+     * holds the same rows as the range of rows.
+     */
+    private final int[][] sortedRows;
+
+    /**
+     * Buffer for the stable partitioning of the sorted row index arrays, every task only uses its own range.
+     */
+    private final int[] scratch;
+    private final boolean hasNumericAttributes;
+    private final int from;
+    private final int to;
+    private final int labelIndex;
+    private final int maximumDepth;
+
+    /**
+     * The minimum number of rows of a partition to fork a separate task for its subtree.
+     */
+    private final int parallelThreshold;
+
+    /**
+     * The minimum number of rows of a node to score its attributes in parallel.
+     */
+    private final int gainParallelThreshold;
+
+    /**
+     * Whether the nodes keep a view on their training rows. This is meant for debugging, it keeps the whole dataset reachable from the tree.
+     */
+    private final boolean retainRows;
+
+    /**
+     * The measure the attributes of every node are scored with.
+     */
+    private final SplitCriterion criterion;
+
+    /**
+     * The number of attributes drawn at random as split candidates of every node, 0 to consider all attributes.
+     */
+    private final int attributesPerSplit;
+
+    /**
+     * The random generator of this task, null if all attributes are considered. Every child task gets a generator split off from the one of
+     * its parent, so the tree only depends on the seed and not on the scheduling.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The class labels indexed by their code, shared by the class histograms of all nodes.
+     */
+    private final String[] labels;
+    private final int currentDepth;
+    private final DecisionTreeNode parent;
+
+    /**
+     * Constructor for the task that creates the root of the tree from all given rows.
+     *
+     * @param dataset               The encoded examples to train with.
+     * @param rows                  The row index array shared by all tasks of the tree.
+     * @param labelIndex            The index of the label attribute.
+     * @param maximumDepth          Maximum depth of tree.
+     * @param parallelThreshold     The minimum number of rows of a partition to fork a separate task for its subtree.
+     * @param gainParallelThreshold The minimum number of rows of a node to score its attributes in parallel.
+     * @param retainRows            Whether the nodes keep a view on their training rows.
+     */
+    SubtreeTask(Dataset dataset, int[] rows, int labelIndex, int maximumDepth, int parallelThreshold, int gainParallelThreshold, boolean retainRows) {
+        this(dataset, rows, labelIndex, maximumDepth, parallelThreshold, gainParallelThreshold, retainRows, EntropyUtils.INFORMATION_GAIN, 0,
+                null);
+    }
+
+    /**
+     * Constructor for the task that creates the root of a tree whose nodes are scored with the given split criterion and may only consider a
+     * random subset of the attributes.
+     *
+     * @param dataset               The encoded examples to train with.
+     * @param rows                  The row index array shared by all tasks of the tree, may contain a row several times.
+     * @param labelIndex            The index of the label attribute.
+     * @param maximumDepth          Maximum depth of tree.
+     * @param parallelThreshold     The minimum number of rows of a partition to fork a separate task for its subtree.
+     * @param gainParallelThreshold The minimum number of rows of a node to score its attributes in parallel.
+     * @param retainRows            Whether the nodes keep a view on their training rows.
+     * @param criterion             The measure the attributes of every node are scored with.
+     * @param attributesPerSplit    The number of attributes drawn as split candidates of every node, 0 to consider all attributes.
+     * @param random                The random generator for drawing the attributes, may be null if all attributes are considered.
+     */
+    SubtreeTask(Dataset dataset, int[] rows, int labelIndex, int maximumDepth, int parallelThreshold, int gainParallelThreshold, boolean retainRows,
+                SplitCriterion criterion, int attributesPerSplit, SplittableRandom random) {
+        this.dataset = dataset;
+        this.rows = rows;
+        this.sortedRows = presortNumericAttributes(dataset, rows, labelIndex);
+        this.hasNumericAttributes = Arrays.stream(sortedRows).anyMatch(Objects::nonNull);
+        this.scratch = hasNumericAttributes ? new int[rows.length] : null;
+        this.from = 0;
+        this.to = rows.length;
+        this.labelIndex = labelIndex;
+        this.maximumDepth = maximumDepth;
+        this.parallelThreshold = parallelThreshold;
+        this.gainParallelThreshold = gainParallelThreshold;
+        this.retainRows = retainRows;
+        this.criterion = criterion;
+        this.attributesPerSplit = attributesPerSplit;
+        this.random = random;
+        this.labels = new String[dataset.getCardinality(labelIndex)];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = dataset.getSymbolTable(labelIndex).getSymbol(code);
+        }
+        this.currentDepth = 1;
+        this.parent = null;
+    }
+
+    /**
+     * Constructor for the task of a child node, the settings are taken from the task of the parent node.
+     *
+     * @param parentTask The task of the parent node.
+     * @param from       The first position of this subtree in rows (inclusive).
+     * @param to         The last position of this subtree in rows (exclusive).
+     * @param parent     The parent node.
+     */
+    private SubtreeTask(SubtreeTask parentTask, int from, int to, DecisionTreeNode parent) {
+        this.dataset = parentTask.dataset;
+        this.rows = parentTask.rows;
+        this.sortedRows = parentTask.sortedRows;
+        this.scratch = parentTask.scratch;
+        this.hasNumericAttributes = parentTask.hasNumericAttributes;
+        this.from = from;
+        this.to = to;
+        this.labelIndex = parentTask.labelIndex;
+        this.maximumDepth = parentTask.maximumDepth;
+        this.parallelThreshold = parentTask.parallelThreshold;
+        this.gainParallelThreshold = parentTask.gainParallelThreshold;
+        this.retainRows = parentTask.retainRows;
+        this.criterion = parentTask.criterion;
+        this.attributesPerSplit = parentTask.attributesPerSplit;
+        this.random = parentTask.random == null ? null : parentTask.random.split();
+        this.labels = parentTask.labels;
+        this.currentDepth = parentTask.currentDepth + 1;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates the node. Every node keeps the class histogram of its rows. If the rows are retained, the elements of a node are a view on its
+     * range; reordering inside the range by deeper levels does not change which rows the view contains.
+     *
+     * @return the created node.
+     */
+    @Override
+    protected DecisionTreeNode compute() {
+        ClassHistogram classHistogram = countClasses();
+        List<Object[]> elements = retainRows ? dataset.asRows(rows, from, to) : null;
+        int[] bounds;
+
+        /* If the examples are empty, return a leaf node with the dominant class of the parent node */
+        if (from == to) {
+            return new DecisionTreeLeafNode(parent, classHistogram, elements, parent.getClassHistogram().getMajorityLabel());
+        }
+
+        /* If all examples have the same label, return a leaf node with the corresponding label */
+        if (classHistogram.isPure()) {
+            return new DecisionTreeLeafNode(parent, classHistogram, elements, classHistogram.getMajorityLabel());
+        }
+
+        /* If the maximum depth of the tree is reached, return a leaf node with the most common label */
+        if (currentDepth == maximumDepth) {
+            return new DecisionTreeLeafNode(parent, classHistogram, elements, classHistogram.getMajorityLabel());
+        }
+
+        /* Otherwise, recursively create a new decision tree node */
+        boolean parallel = to - from >= gainParallelThreshold;
+        boolean[] candidates = drawCandidates();
+        double[] gains = EntropyUtils.calcScorePerAttribute(dataset, rows, from, to, labelIndex, criterion, candidates, parallel);
+        double[] thresholds = scoreNumericAttributes(gains, candidates, parallel);
+        if (candidates != null) {
+            /* attributes that were not drawn must not be selected, even if no candidate has a gain */
+            for (int attributeIndex = 0; attributeIndex < gains.length; attributeIndex++) {
+                if (!candidates[attributeIndex]) {
+                    gains[attributeIndex] = Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+        int efficientAttributeIndex = ID3Utils.selectBestAttribute(gains, labelIndex);
+        double threshold = thresholds == null ? Double.NaN : thresholds[efficientAttributeIndex];
+
+        /* A numeric attribute without a threshold has a single value, the examples cannot be split */
+        if (dataset.isNumeric(efficientAttributeIndex) && Double.isNaN(threshold)) {
+            return new DecisionTreeLeafNode(parent, classHistogram, elements, classHistogram.getMajorityLabel());
+        }
+
+        bounds = Double.isNaN(threshold) ? partitionRows(efficientAttributeIndex) : partitionRowsByThreshold(efficientAttributeIndex, threshold);
+        if (hasNumericAttributes) {
+            partitionSortedRows(efficientAttributeIndex, threshold, bounds);
+        }
+        int numPartitions = 0;
+        for (int code = 0; code < bounds.length - 1; code++) {
+            if (bounds[code] < bounds[code + 1]) {
+                numPartitions++;
+            }
+        }
+
+        /* If there is only one partition, return a leaf node with the most common label */
+        if (numPartitions == 1) {
+            return new DecisionTreeLeafNode(parent, classHistogram, elements, classHistogram.getMajorityLabel());
+        }
+
+        /* Only create a root node if the parent is null */
+        DecisionTreeNode currentNode;
+        if (parent == null) {
+            currentNode = new DecisionTree(efficientAttributeIndex, threshold, classHistogram, elements);
+        } else {
+            currentNode = new DecisionTreeNode(parent, classHistogram, elements, efficientAttributeIndex, threshold);
+        }
+
+        /* There are multiple partitions, create a new split for each partition */
+        DecisionTreeNode[] children = buildChildren(bounds, currentNode);
+
+        /* the splits are added in code order by this task only, so the tree does not depend on the scheduling */
+        if (currentNode.isThresholdSplit()) {
+            currentNode.addThresholdSplits(children[0], children[1]);
+            return currentNode;
+        }
+        for (int code = 0; code < children.length; code++) {
+            if (children[code] != null) {
+                String attribute = dataset.getSymbolTable(efficientAttributeIndex).getSymbol(code);
+                currentNode.addSplit(attribute, children[code]);
+            }
+        }
+
+        return currentNode;
+    }
+
+    /**
+     * Counts the classes of the rows of this task.
+     *
+     * @return the class histogram of the rows.
+     */
+    private ClassHistogram countClasses() {
+        int[] labelColumn = dataset.getColumn(labelIndex);
+        int[] counts = new int[labels.length];
+        for (int i = from; i < to; i++) {
+            counts[labelColumn[rows[i]]]++;
+        }
+        return new ClassHistogram(labels, counts);
+    }
+
+    /**
+     * Draws the split candidates of this node without replacement.
+     *
+     * @return whether each attribute is a candidate, null if all attributes are considered.
+     */
+    private boolean[] drawCandidates() {
+        int numAttributes = dataset.getNumAttributes() - 1;
+        if (attributesPerSplit <= 0 || attributesPerSplit >= numAttributes) {
+            return null;
+        }
+
+        /* partial Fisher-Yates shuffle of the attribute indices without the label */
+        int[] attributes = new int[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            attributes[i] = i < labelIndex ? i : i + 1;
+        }
+        boolean[] candidates = new boolean[numAttributes + 1];
+        for (int i = 0; i < attributesPerSplit; i++) {
+            int j = i + random.nextInt(numAttributes - i);
+            int attributeIndex = attributes[j];
+            attributes[j] = attributes[i];
+            candidates[attributeIndex] = true;
+        }
+        return candidates;
+    }
+
+    /**
+     * Finds the best threshold of every numeric candidate attribute and stores its score in the score array.
+     *
+     * @param gains      the score of every attribute, the entries of the numeric attributes are replaced.
+     * @param candidates whether each attribute is scored, null to score all attributes.
+     * @param parallel   whether the attributes are scored concurrently.
+     * @return the best threshold of every attribute, NaN for categorical attributes and numeric attributes with a single value; null if the
+     * dataset has no numeric attributes.
+     */
+    private double[] scoreNumericAttributes(double[] gains, boolean[] candidates, boolean parallel) {
+        if (!hasNumericAttributes) {
+            return null;
+        }
+
+        double[] thresholds = new double[gains.length];
+        Arrays.fill(thresholds, Double.NaN);
+        IntStream attributes = IntStream.range(0, gains.length)
+                .filter(attributeIndex -> sortedRows[attributeIndex] != null && (candidates == null || candidates[attributeIndex]));
+        if (parallel) {
+            attributes = attributes.parallel();
+        }
+
+        /* every attribute only writes its own entries */
+        attributes.forEach(attributeIndex -> {
+            double[] result = new double[2];
+            EntropyUtils.calcBestThreshold(dataset, sortedRows[attributeIndex], from, to, attributeIndex, labelIndex, criterion, result);
+            gains[attributeIndex] = result[0];
+            thresholds[attributeIndex] = result[1];
+        });
+        return thresholds;
+    }
+
+    /**
+     * Builds the subtrees of all non-empty partitions. Large partitions are forked first, so they run while the small ones are built inline.
+     *
+     * @param bounds      the bounds of the partitions, see {@link #partitionRows(int)}.
+     * @param currentNode the parent node of the subtrees.
+     * @return the root of each subtree indexed by the dictionary code, null for empty partitions.
+     */
+    private DecisionTreeNode[] buildChildren(int[] bounds, DecisionTreeNode currentNode) {
+        SubtreeTask[] tasks = new SubtreeTask[bounds.length - 1];
+        DecisionTreeNode[] children = new DecisionTreeNode[bounds.length - 1];
+
+        for (int code = 0; code < tasks.length; code++) {
+            if (bounds[code] < bounds[code + 1]) {
+                tasks[code] = new SubtreeTask(this, bounds[code], bounds[code + 1], currentNode);
+                if (isForked(tasks[code])) {
+                    tasks[code].fork();
+                }
+            }
+        }
+
+        for (int code = 0; code < tasks.length; code++) {
+            if (tasks[code] != null && !isForked(tasks[code])) {
+                children[code] = tasks[code].compute();
+            }
+        }
+
+        for (int code = 0; code < tasks.length; code++) {
+            if (tasks[code] != null && isForked(tasks[code])) {
+                children[code] = tasks[code].join();
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * Checks whether a child task is large enough to run as a separate task.
+     *
+     * @param task the child task.
+     * @return true if the task is forked, false if it is computed inline.
+     */
+    private boolean isForked(SubtreeTask task) {
+        return task.to - task.from >= parallelThreshold;
+    }
+
+    /**
+     * Reorders rows[from, to) in place so that the rows with a value less than or equal to the threshold come first.
+     *
+     * @param efficientAttributeIndex The index of the numeric attribute to partition by.
+     * @param threshold               The split threshold.
+     * @return the bounds of the two partitions, see {@link #partitionRows(int)}.
+     */
+    private int[] partitionRowsByThreshold(int efficientAttributeIndex, double threshold) {
+        double[] values = dataset.getNumericColumn(efficientAttributeIndex);
+        int left = from;
+        int right = to - 1;
+        while (left <= right) {
+            if (values[rows[left]] <= threshold) {
+                left++;
+            } else {
+                int row = rows[left];
+                rows[left] = rows[right];
+                rows[right--] = row;
+            }
+        }
+        return new int[]{from, left, to};
+    }
+
+    /**
+     * Partitions the range of every sorted row index array like the rows. The partitioning is stable, so every partition stays sorted by value.
+     *
+     * @param efficientAttributeIndex The index of the attribute the rows were partitioned by.
+     * @param threshold               The split threshold, NaN if the rows were partitioned by dictionary code.
+     * @param bounds                  The bounds of the partitions.
+     */
+    private void partitionSortedRows(int efficientAttributeIndex, double threshold, int[] bounds) {
+        int[] codes = dataset.getColumn(efficientAttributeIndex);
+        double[] values = dataset.getNumericColumn(efficientAttributeIndex);
+        boolean byThreshold = !Double.isNaN(threshold);
+
+        for (int[] sorted : sortedRows) {
+            if (sorted == null) {
+                continue;
+            }
+            int[] next = Arrays.copyOf(bounds, bounds.length - 1);
+            for (int i = from; i < to; i++) {
+                int row = sorted[i];
+                int partition = byThreshold ? (values[row] <= threshold ? 0 : 1) : codes[row];
+                scratch[next[partition]++] = row;
+            }
+            System.arraycopy(scratch, from, sorted, from, to - from);
+        }
+    }
+
+    /**
+     * Sorts the rows by value for every numeric attribute except the label.
+     *
+     * @param dataset    The encoded examples.
+     * @param rows       The rows to sort.
+     * @param labelIndex The index of the label attribute.
+     * @return the sorted row index arrays, null for categorical attributes.
+     */
+    private static int[][] presortNumericAttributes(Dataset dataset, int[] rows, int labelIndex) {
+        int[][] sortedRows = new int[dataset.getNumAttributes()][];
+        for (int attributeIndex = 0; attributeIndex < sortedRows.length; attributeIndex++) {
+            if (attributeIndex != labelIndex && dataset.isNumeric(attributeIndex)) {
+                sortedRows[attributeIndex] = sortByValue(dataset, rows, attributeIndex);
+            }
+        }
+        return sortedRows;
+    }
+
+    /**
+     * Sorts rows by the value of a numeric attribute. Only the distinct values are compared, the rows are then placed by a counting sort on their
+     * dictionary code.
+     *
+     * @param dataset        The encoded examples.
+     * @param rows           The rows to sort.
+     * @param attributeIndex The index of the numeric attribute.
+     * @return the sorted rows.
+     */
+    private static int[] sortByValue(Dataset dataset, int[] rows, int attributeIndex) {
+        int[] codes = dataset.getColumn(attributeIndex);
+        double[] values = dataset.getNumericColumn(attributeIndex);
+        int cardinality = dataset.getCardinality(attributeIndex);
+
+        /* every code stands for one value, codes that do not occur in the rows are never placed */
+        double[] codeValues = new double[cardinality];
+        int[] starts = new int[cardinality];
+        for (int row : rows) {
+            codeValues[codes[row]] = values[row];
+            starts[codes[row]]++;
+        }
+        Integer[] order = new Integer[cardinality];
+        for (int code = 0; code < cardinality; code++) {
+            order[code] = code;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(codeValues[a], codeValues[b]));
+
+        int position = 0;
+        for (int code : order) {
+            int count = starts[code];
+            starts[code] = position;
+            position += count;
+        }
+        int[] sorted = new int[rows.length];
+        for (int row : rows) {
+            sorted[starts[codes[row]]++] = row;
+        }
+        return sorted;
+    }
+
+    /**
+     * Reorders rows[from, to) in place so that the rows are grouped by the dictionary code of the given attribute (American flag sort).
+     *
+     * @param efficientAttributeIndex The index of the attribute to partition by.
+     * @return the bounds of the partitions, the rows with code c are stored in rows[bounds[c], bounds[c + 1]).
+     */
+    private int[] partitionRows(int efficientAttributeIndex) {
+        int[] values = dataset.getColumn(efficientAttributeIndex);
+        int cardinality = dataset.getCardinality(efficientAttributeIndex);
+        int[] bounds = new int[cardinality + 1];
+
+        /* count the rows per code and turn the counts into start positions */
+        for (int i = from; i < to; i++) {
+            bounds[values[rows[i]] + 1]++;
+        }
+        bounds[0] = from;
+        for (int code = 0; code < cardinality; code++) {
+            bounds[code + 1] += bounds[code];
+        }
+
+        /* swap every row into the next free slot of its partition until each partition is filled */
+        int[] next = Arrays.copyOf(bounds, cardinality);
+        for (int code = 0; code < cardinality; code++) {
+            while (next[code] < bounds[code + 1]) {
+                int row = rows[next[code]];
+                int target = values[row];
+                if (target == code) {
+                    next[code]++;
+                } else {
+                    rows[next[code]] = rows[next[target]];
+                    rows[next[target]++] = row;
+                }
+            }
+        }
+
+        return bounds;
+    }
+}
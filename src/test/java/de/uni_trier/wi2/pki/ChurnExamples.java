@@ -0,0 +1,38 @@
+package de.uni_trier.wi2.pki;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic churn examples with two numeric and one categorical attribute, shared by the tests of models with threshold splits.
+ */
+public final class ChurnExamples {
+
+    public static final String[] HEADER = {"age", "balance", "country", "churn"};
+    public static final int LABEL_INDEX = 3;
+    public static final boolean[] IS_NUMERIC = {true, true, false, false};
+
+    private ChurnExamples() {
+    }
+
+    /**
+     * Creates examples whose label depends on the age, the balance and the country. Every fifth label is drawn at random, so an unpruned
+     * tree overfits. The numeric values are drawn from a wide range, so most values of a second call do not occur in the first one.
+     *
+     * @param numExamples the number of examples.
+     * @param random      the random generator to draw from.
+     * @return the examples, with the label at {@link #LABEL_INDEX}.
+     */
+    public static List<Object[]> create(int numExamples, Random random) {
+        List<Object[]> examples = new ArrayList<>(numExamples);
+        for (int i = 0; i < numExamples; i++) {
+            int age = 18 + random.nextInt(60);
+            double balance = random.nextInt(1000000) / 100.0;
+            int country = random.nextInt(3);
+            boolean churn = random.nextInt(5) == 0 ? random.nextBoolean() : (age < 40 ^ country == 2) || balance > 9000;
+            examples.add(new Object[]{String.valueOf(age), String.valueOf(balance), "c" + country, churn ? "yes" : "no"});
+        }
+        return examples;
+    }
+}
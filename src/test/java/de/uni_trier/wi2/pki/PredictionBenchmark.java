@@ -0,0 +1,115 @@
+package de.uni_trier.wi2.pki;
+
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.EncodedPredictor;
+import de.uni_trier.wi2.pki.tree.GeneratedTree;
+import de.uni_trier.wi2.pki.util.ID3Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the prediction speed of the interpreted node walk of {@link DecisionTree}, the flat arrays of {@link CompiledTree} and the
+ * generated class of {@link GeneratedTree} on a synthetic categorical dataset. It is a standalone program, not a unit test, and is kept
+ * with the test sources so it does not ship.
+ * <p>
+ * Usage: PredictionBenchmark [rows] [attributes] [values per attribute] [maximum depth]
+ */
+public class PredictionBenchmark {
+
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int numAttributes = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int numValues = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int maximumDepth = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int labelIndex = numAttributes;
+
+        Dataset dataset = Dataset.fromRows(createExamples(numRows, numAttributes, numValues, new Random(42)));
+        DecisionTree tree = ID3Utils.createTree(dataset, labelIndex, maximumDepth);
+        CompiledTree compiledTree = tree.compile(dataset, labelIndex);
+        GeneratedTree generatedTree = GeneratedTree.generate(compiledTree);
+
+        int[][] encodedRows = new int[dataset.size()][dataset.getNumAttributes()];
+        for (int row = 0; row < encodedRows.length; row++) {
+            dataset.getCodes(row, encodedRows[row]);
+        }
+
+        for (int[] row : encodedRows) {
+            if (generatedTree.predict(row) != compiledTree.predict(row)) {
+                throw new IllegalStateException("The generated tree predicts differently than the compiled tree.");
+            }
+        }
+
+        System.out.println("Rows: " + numRows + ", attributes: " + numAttributes + ", values: " + numValues + ", nodes: "
+                + compiledTree.getNumNodes());
+
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runInterpreted(tree, dataset) + runEncoded(compiledTree, encodedRows) + runEncoded(generatedTree, encodedRows);
+        }
+
+        long interpreted = 0;
+        long compiled = 0;
+        long generated = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += runInterpreted(tree, dataset);
+            interpreted += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum += runEncoded(compiledTree, encodedRows);
+            compiled += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum += runEncoded(generatedTree, encodedRows);
+            generated += System.nanoTime() - start;
+        }
+
+        long predictions = (long) MEASURED_ROUNDS * numRows;
+        System.out.printf("Interpreted node walk: %.1f ns/row%n", (double) interpreted / predictions);
+        System.out.printf("Compiled tree:         %.1f ns/row%n", (double) compiled / predictions);
+        System.out.printf("Generated tree:        %.1f ns/row%n", (double) generated / predictions);
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+    /**
+     * Creates random examples whose label depends on the first attributes, so the tree has some structure.
+     */
+    private static List<Object[]> createExamples(int numRows, int numAttributes, int numValues, Random random) {
+        List<Object[]> examples = new ArrayList<>();
+        for (int i = 0; i < numRows; i++) {
+            Object[] example = new Object[numAttributes + 1];
+            int sum = 0;
+            for (int attributeIndex = 0; attributeIndex < numAttributes; attributeIndex++) {
+                int value = random.nextInt(numValues);
+                sum += value * (attributeIndex % 3);
+                example[attributeIndex] = "v" + value;
+            }
+            example[numAttributes] = "c" + ((sum + random.nextInt(2)) % 4);
+            examples.add(example);
+        }
+        return examples;
+    }
+
+    private static long runInterpreted(DecisionTree tree, Dataset dataset) {
+        long sum = 0;
+        for (int row = 0; row < dataset.size(); row++) {
+            sum += tree.predict(dataset, row).length();
+        }
+        return sum;
+    }
+
+    private static long runEncoded(EncodedPredictor predictor, int[][] rows) {
+        long sum = 0;
+        for (int[] row : rows) {
+            sum += predictor.predict(row);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,68 @@
+package de.uni_trier.wi2.pki.io;
+
+import de.uni_trier.wi2.pki.ChurnExamples;
+import de.uni_trier.wi2.pki.Main;
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.RandomForest;
+import de.uni_trier.wi2.pki.util.ID3Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static de.uni_trier.wi2.pki.ChurnExamples.HEADER;
+import static de.uni_trier.wi2.pki.ChurnExamples.IS_NUMERIC;
+import static de.uni_trier.wi2.pki.ChurnExamples.LABEL_INDEX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that models with threshold splits predict the same after a round trip through XML, for examples as well as for encoded rows.
+ */
+public class XMLReaderTest {
+
+    @Test
+    public void reloadedThresholdTreePredictsEncodedRowsLikeExamples() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(42);
+        DecisionTree tree = ID3Utils.createTree(Dataset.fromRows(ChurnExamples.create(2000, random), IS_NUMERIC), LABEL_INDEX);
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLWriter.writeXML(xml, tree);
+        CompiledTree reloaded = XMLReader.readTrees(new ByteArrayInputStream(xml.toByteArray()), HEADER).get(0);
+
+        for (Object[] example : ChurnExamples.create(1000, random)) {
+            assertEquals(tree.predict(example), reloaded.predict(example));
+            assertEquals(reloaded.predict(example), predictEncoded(reloaded, example));
+        }
+    }
+
+    @Test
+    public void reloadedForestTreesShareTheIntervalsOfAllThresholds() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(7);
+        Dataset trainingData = Dataset.fromRows(ChurnExamples.create(2000, random), IS_NUMERIC);
+        RandomForest forest = ID3Utils.createForest(trainingData, LABEL_INDEX, 6, 4, 2, 1);
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLWriter.writeXML(xml, forest);
+        List<CompiledTree> reloaded = XMLReader.readTrees(new ByteArrayInputStream(xml.toByteArray()), HEADER);
+        assertEquals(forest.size(), reloaded.size());
+
+        for (Object[] example : ChurnExamples.create(1000, random)) {
+            for (int tree = 0; tree < reloaded.size(); tree++) {
+                assertEquals(forest.getTrees().get(tree).predict(example), reloaded.get(tree).predict(example));
+                assertEquals(reloaded.get(tree).predict(example), predictEncoded(reloaded.get(tree), example));
+            }
+        }
+    }
+
+    private static String predictEncoded(CompiledTree compiledTree, Object[] example) {
+        int labelId = compiledTree.predict(compiledTree.encode(example));
+        return labelId < 0 ? DecisionTree.NO_LEAF_NODE : compiledTree.getLabel(labelId);
+    }
+}
@@ -0,0 +1,73 @@
+package de.uni_trier.wi2.pki.postprocess;
+
+import de.uni_trier.wi2.pki.ChurnExamples;
+import de.uni_trier.wi2.pki.Main;
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.io.XMLReader;
+import de.uni_trier.wi2.pki.io.XMLWriter;
+import de.uni_trier.wi2.pki.tree.CompiledTree;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+import de.uni_trier.wi2.pki.util.ID3Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static de.uni_trier.wi2.pki.ChurnExamples.HEADER;
+import static de.uni_trier.wi2.pki.ChurnExamples.IS_NUMERIC;
+import static de.uni_trier.wi2.pki.ChurnExamples.LABEL_INDEX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that a pruned tree with threshold splits keeps a valid structure.
+ */
+public class ReducedErrorPrunerTest {
+
+    @Test
+    public void prunedThresholdTreeCanBeExportedAndReloaded() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(42);
+        List<Object[]> trainingExamples = ChurnExamples.create(2000, random);
+        List<Object[]> validationExamples = ChurnExamples.create(1000, random);
+
+        DecisionTree tree = ID3Utils.createTree(Dataset.fromRows(trainingExamples, IS_NUMERIC), LABEL_INDEX);
+        int nodesBefore = countNodes(tree);
+        new ReducedErrorPruner().prune(tree, Dataset.fromRows(validationExamples, IS_NUMERIC), LABEL_INDEX);
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLWriter.writeXML(xml, tree);
+        List<CompiledTree> reloaded = XMLReader.readTrees(new ByteArrayInputStream(xml.toByteArray()), HEADER);
+        assertEquals(1, reloaded.size());
+
+        for (Object[] example : validationExamples) {
+            assertEquals(tree.predict(example), reloaded.get(0).predict(example));
+        }
+        assertTrue(countNodes(tree) < nodesBefore, "the noisy tree should have been pruned");
+    }
+
+    @Test
+    public void pruningDoesNotLowerTheValidationAccuracy() {
+        Main.HEADER = HEADER;
+        Random random = new Random(7);
+        List<Object[]> trainingExamples = ChurnExamples.create(2000, random);
+        List<Object[]> validationExamples = ChurnExamples.create(1000, random);
+
+        DecisionTree tree = ID3Utils.createTree(trainingExamples, LABEL_INDEX);
+        double accuracyBefore = ID3Utils.getClassificationAccuracy(tree, validationExamples, LABEL_INDEX);
+        new ReducedErrorPruner().prune(tree, validationExamples, LABEL_INDEX);
+        assertTrue(ID3Utils.getClassificationAccuracy(tree, validationExamples, LABEL_INDEX) >= accuracyBefore);
+    }
+
+    private static int countNodes(DecisionTreeNode node) {
+        int count = 1;
+        for (DecisionTreeNode child : node.getSplits().values()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,83 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.ChurnExamples;
+import de.uni_trier.wi2.pki.Main;
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.io.XMLReader;
+import de.uni_trier.wi2.pki.io.XMLWriter;
+import de.uni_trier.wi2.pki.util.ID3Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static de.uni_trier.wi2.pki.ChurnExamples.HEADER;
+import static de.uni_trier.wi2.pki.ChurnExamples.IS_NUMERIC;
+import static de.uni_trier.wi2.pki.ChurnExamples.LABEL_INDEX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the generated class predicts every encoded row like the compiled tree it was generated from, including rows with unknown
+ * codes and trees that are too large for a single generated method.
+ */
+public class GeneratedTreeTest {
+
+    @Test
+    public void largeCategoricalTreePredictsLikeTheCompiledTree() {
+        Random random = new Random(42);
+        List<Object[]> examples = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Object[] example = new Object[9];
+            int sum = 0;
+            for (int attributeIndex = 0; attributeIndex < 8; attributeIndex++) {
+                int value = random.nextInt(6);
+                sum += value * (attributeIndex % 3);
+                example[attributeIndex] = "v" + value;
+            }
+            example[8] = "c" + ((sum + random.nextInt(2)) % 4);
+            examples.add(example);
+        }
+        Dataset dataset = Dataset.fromRows(examples);
+        CompiledTree compiledTree = ID3Utils.createTree(dataset, 8).compile(dataset, 8);
+        GeneratedTree generatedTree = GeneratedTree.generate(compiledTree);
+
+        int[] row = new int[dataset.getNumAttributes()];
+        for (int i = 0; i < dataset.size(); i++) {
+            dataset.getCodes(i, row);
+            assertEquals(compiledTree.predict(row), generatedTree.predict(row));
+            /* unknown and out of range codes reach a missing branch */
+            row[i % 8] = i % 2 == 0 ? -1 : 6 + i % 3;
+            assertEquals(compiledTree.predict(row), generatedTree.predict(row));
+        }
+    }
+
+    @Test
+    public void thresholdTreesPredictLikeTheCompiledTree() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(7);
+        Dataset dataset = Dataset.fromRows(ChurnExamples.create(2000, random), IS_NUMERIC);
+        DecisionTree tree = ID3Utils.createTree(dataset, LABEL_INDEX);
+        CompiledTree compiledTree = tree.compile(dataset, LABEL_INDEX);
+        GeneratedTree generatedTree = GeneratedTree.generate(compiledTree);
+
+        int[] row = new int[dataset.getNumAttributes()];
+        for (int i = 0; i < dataset.size(); i++) {
+            dataset.getCodes(i, row);
+            assertEquals(compiledTree.predict(row), generatedTree.predict(row));
+        }
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLWriter.writeXML(xml, tree);
+        CompiledTree reloaded = XMLReader.readTrees(new ByteArrayInputStream(xml.toByteArray()), HEADER).get(0);
+        GeneratedTree generatedReloaded = GeneratedTree.generate(reloaded);
+        for (Object[] example : ChurnExamples.create(1000, random)) {
+            int[] encoded = reloaded.encode(example);
+            assertEquals(reloaded.predict(encoded), generatedReloaded.predict(encoded));
+            assertEquals(tree.predict(example), generatedReloaded.predict(example));
+        }
+    }
+}
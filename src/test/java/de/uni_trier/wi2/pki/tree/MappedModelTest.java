@@ -0,0 +1,79 @@
+package de.uni_trier.wi2.pki.tree;
+
+import de.uni_trier.wi2.pki.ChurnExamples;
+import de.uni_trier.wi2.pki.Main;
+import de.uni_trier.wi2.pki.data.Dataset;
+import de.uni_trier.wi2.pki.io.XMLReader;
+import de.uni_trier.wi2.pki.io.XMLWriter;
+import de.uni_trier.wi2.pki.util.ID3Utils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static de.uni_trier.wi2.pki.ChurnExamples.HEADER;
+import static de.uni_trier.wi2.pki.ChurnExamples.IS_NUMERIC;
+import static de.uni_trier.wi2.pki.ChurnExamples.LABEL_INDEX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that a forest with threshold splits predicts the same after a round trip through a mapped model file, for examples as well as
+ * for rows encoded by the model, on values that did not occur in the training data.
+ */
+public class MappedModelTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void mappedForestPredictsUnseenValuesLikeTheForest() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(42);
+        Dataset trainingData = Dataset.fromRows(ChurnExamples.create(2000, random), IS_NUMERIC);
+        RandomForest forest = ID3Utils.createForest(trainingData, LABEL_INDEX, 6, 5, 2, 1);
+        List<CompiledTree> compiledTrees = new ArrayList<>();
+        for (DecisionTree tree : forest.getTrees()) {
+            compiledTrees.add(tree.compile(trainingData, LABEL_INDEX));
+        }
+
+        MappedModel model = writeAndMap(compiledTrees);
+        assertEquals(forest.size(), model.getNumTrees());
+        for (Object[] example : ChurnExamples.create(1000, random)) {
+            assertEquals(forest.predict(example), model.predict(example));
+            assertEquals(model.predict(example), predictEncoded(model, example));
+        }
+    }
+
+    @Test
+    public void mappedForestReadFromXMLPredictsUnseenValuesLikeTheForest() throws IOException {
+        Main.HEADER = HEADER;
+        Random random = new Random(7);
+        Dataset trainingData = Dataset.fromRows(ChurnExamples.create(2000, random), IS_NUMERIC);
+        RandomForest forest = ID3Utils.createForest(trainingData, LABEL_INDEX, 6, 5, 2, 1);
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLWriter.writeXML(xml, forest);
+        MappedModel model = writeAndMap(XMLReader.readTrees(new ByteArrayInputStream(xml.toByteArray()), HEADER));
+        for (Object[] example : ChurnExamples.create(1000, random)) {
+            assertEquals(forest.predict(example), model.predict(example));
+            assertEquals(model.predict(example), predictEncoded(model, example));
+        }
+    }
+
+    private MappedModel writeAndMap(List<CompiledTree> compiledTrees) throws IOException {
+        String path = directory.resolve("model.bin").toString();
+        MappedModel.write(path, compiledTrees);
+        return MappedModel.map(path);
+    }
+
+    private static String predictEncoded(MappedModel model, Object[] example) {
+        int labelId = model.predict(model.encode(example));
+        return labelId < 0 ? DecisionTree.NO_LEAF_NODE : model.getLabel(labelId);
+    }
+}
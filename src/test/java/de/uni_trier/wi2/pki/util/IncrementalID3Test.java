@@ -0,0 +1,95 @@
+package de.uni_trier.wi2.pki.util;
+
+import de.uni_trier.wi2.pki.tree.ClassHistogram;
+import de.uni_trier.wi2.pki.tree.DecisionTree;
+import de.uni_trier.wi2.pki.tree.DecisionTreeLeafNode;
+import de.uni_trier.wi2.pki.tree.DecisionTreeNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests that the incremental learner returns the tree that the batch learner builds on the same examples after every batch.
+ */
+public class IncrementalID3Test {
+
+    private static final int NUM_ATTRIBUTES = 5;
+    private static final int LABEL_INDEX = 4;
+
+    /* batches of very different size, including single examples */
+    private static final int[] BATCH_SIZES = {40, 1, 1, 7, 120, 3, 1, 500, 13, 60, 1, 250};
+
+    @Test
+    public void unlimitedTreeEqualsTheBatchTreeAfterEveryBatch() {
+        assertEqualsBatchTreeAfterEveryBatch(-1, new Random(42));
+    }
+
+    @Test
+    public void depthLimitedTreeEqualsTheBatchTreeAfterEveryBatch() {
+        assertEqualsBatchTreeAfterEveryBatch(3, new Random(7));
+    }
+
+    private static void assertEqualsBatchTreeAfterEveryBatch(int maximumDepth, Random random) {
+        IncrementalID3 learner = new IncrementalID3(NUM_ATTRIBUTES, LABEL_INDEX, maximumDepth);
+        for (int batch = 0; batch < BATCH_SIZES.length; batch++) {
+            List<Object[]> examples = createExamples(BATCH_SIZES[batch], batch, random);
+            if (batch % 2 == 0) {
+                learner.addAll(examples);
+            } else {
+                for (Object[] example : examples) {
+                    learner.add(example);
+                }
+            }
+
+            DecisionTree expected = ID3Utils.createTree(learner.getDataset(), LABEL_INDEX, maximumDepth);
+            assertSameNode(expected, learner.getTree(), "batch " + batch + ": root");
+        }
+    }
+
+    /**
+     * Creates examples whose attributes get new values in later batches, so the dictionaries grow while the tree is learned. The label
+     * depends on the first two attributes, every fourth label is drawn at random.
+     */
+    private static List<Object[]> createExamples(int numExamples, int batch, Random random) {
+        List<Object[]> examples = new ArrayList<>(numExamples);
+        for (int i = 0; i < numExamples; i++) {
+            int color = random.nextInt(2 + batch / 2);
+            int size = random.nextInt(3);
+            int shape = random.nextInt(2 + batch);
+            int weight = random.nextInt(4);
+            boolean label = random.nextInt(4) == 0 ? random.nextBoolean() : color % 2 == 0 ^ size == 1;
+            examples.add(new Object[]{"color" + color, "size" + size, "shape" + shape, "weight" + weight, label ? "yes" : "no"});
+        }
+        return examples;
+    }
+
+    private static void assertSameNode(DecisionTreeNode expected, DecisionTreeNode actual, String path) {
+        assertEquals(expected.isLeafNode(), actual.isLeafNode(), path + " is a leaf");
+        assertSameHistogram(expected.getClassHistogram(), actual.getClassHistogram(), path);
+        if (expected.isLeafNode()) {
+            assertEquals(((DecisionTreeLeafNode) expected).getLabelClass(), ((DecisionTreeLeafNode) actual).getLabelClass(),
+                    path + " label");
+            return;
+        }
+
+        assertEquals(expected.getAttributeIndex(), actual.getAttributeIndex(), path + " attribute");
+        assertEquals(expected.getSplits().keySet(), actual.getSplits().keySet(), path + " split values");
+        for (Map.Entry<String, DecisionTreeNode> split : expected.getSplits().entrySet()) {
+            assertSameNode(split.getValue(), actual.getSplits().get(split.getKey()), path + " -> " + split.getKey());
+        }
+    }
+
+    private static void assertSameHistogram(ClassHistogram expected, ClassHistogram actual, String path) {
+        assertNotNull(actual, path + " histogram");
+        for (int label = 0; label < expected.getLabels().length; label++) {
+            assertEquals(expected.getLabels()[label], actual.getLabels()[label], path + " label " + label);
+            assertEquals(expected.getCount(label), actual.getCount(label), path + " count of " + expected.getLabels()[label]);
+        }
+    }
+}